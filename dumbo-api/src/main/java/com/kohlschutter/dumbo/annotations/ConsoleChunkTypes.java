@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the types of objects (other than strings) the annotated application or extension adds
+ * to its consoles.
+ *
+ * When consoles are connected across nodes via a message bus (see
+ * {@code DumboServerBuilder#withMessageBus}), chunks are exchanged in serialized form, and only
+ * instances of the declared types (and their subclasses) are accepted from other nodes; other
+ * chunks are kept local to the node that queued them.
+ *
+ * @author Christian Kohlschütter
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface ConsoleChunkTypes {
+  /**
+   * The chunk types.
+   *
+   * @return The types.
+   */
+  Class<?>[] value();
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies how many concurrent pages (pageIds) should be maintained per HTTP session for the
+ * annotated application; once the limit is reached, the oldest page of that session is removed.
+ *
+ * Without this annotation, the system property {@code dumbo.pages-per-session} (default: 16)
+ * applies.
+ *
+ * @author Christian Kohlschütter
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface MaximumPagesPerSession {
+  /**
+   * The maximum number of pages, {@code -1} for unlimited, {@code 0} for none.
+   *
+   * @return The maximum.
+   */
+  int value();
+}
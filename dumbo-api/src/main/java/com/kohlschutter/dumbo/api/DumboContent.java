@@ -28,6 +28,15 @@ public interface DumboContent {
 
   Path[] toContentPaths();
 
+  /**
+   * Returns the path to a single-file packed archive of the static content, or {@code null} if no
+   * such archive exists.
+   *
+   * @return The archive path, or {@code null}.
+   * @see DumboContentBuilder#withPackedArchive(boolean)
+   */
+  Path getPackedArchivePath();
+
   static DumboContent openExisting(Path path) throws IOException {
     return DumboContentBuilder.begin().openExisting(path);
   }
@@ -55,6 +55,19 @@ public interface DumboContentBuilder {
 
   DumboContentBuilder withJspClassOutputPath(Path outputPath);
 
+  /**
+   * If set, the static content is additionally stored in a single indexed archive file, which can
+   * be memory-mapped and served directly by a {@link DumboServer} (including precompressed
+   * variants).
+   *
+   * If not set, an archive left behind by a previous build in the same output path is removed.
+   *
+   * @param enabled Enabled if true.
+   * @return This builder.
+   * @see DumboContent#getPackedArchivePath()
+   */
+  DumboContentBuilder withPackedArchive(boolean enabled);
+
   DumboContent openExisting(Path outputPath) throws IOException;
 
   /**
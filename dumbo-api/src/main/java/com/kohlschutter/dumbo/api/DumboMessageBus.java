@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * A publish/subscribe message bus that connects multiple Dumbo server nodes, so that console output
+ * produced on one node can also be delivered by other nodes that know the same page.
+ *
+ * Messages are opaque byte arrays, published to a topic (the page ID). Delivery is best-effort,
+ * and messages published by a node may or may not be delivered to that node's own subscribers.
+ * Implementations must be thread-safe. Listeners may be called from any thread, but never while
+ * the publisher is still in {@link #publish(String, byte[])}.
+ *
+ * Messages may carry serialized Java objects, so only trusted nodes must be able to publish.
+ *
+ * @author Christian Kohlschütter
+ * @see DumboServerBuilder#withMessageBus(DumboMessageBus)
+ */
+public interface DumboMessageBus extends Closeable {
+  /**
+   * Publishes a message to all subscribers of the given topic.
+   *
+   * @param topic The topic.
+   * @param message The message.
+   * @throws IOException if the message could not be sent or queued for sending.
+   */
+  void publish(String topic, byte[] message) throws IOException;
+
+  /**
+   * Subscribes to the given topic.
+   *
+   * @param topic The topic.
+   * @param listener The listener to be called for every message received.
+   * @return The subscription.
+   */
+  Subscription subscribe(String topic, Consumer<byte[]> listener);
+
+  /**
+   * A subscription to a topic.
+   */
+  @FunctionalInterface
+  interface Subscription {
+    /**
+     * Cancels the subscription; the listener won't be called for new messages afterwards.
+     */
+    void cancel();
+  }
+
+  @Override
+  default void close() throws IOException {
+  }
+}
@@ -18,6 +18,7 @@ package com.kohlschutter.dumbo.api;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 /**
  * A Dumbo server is something that exposes a {@link DumboApplication} via HTTP, etc.
@@ -57,4 +58,19 @@ public interface DumboServer {
    * @return The URI.
    */
   URI getLocalURI();
+
+  /**
+   * Returns the phases of this server's startup completed so far, in order of completion.
+   *
+   * @return The startup timeline.
+   */
+  List<DumboStartupPhase> getStartupTimeline();
+
+  /**
+   * Returns a snapshot of this server's runtime statistics (sessions, pages, consoles, threads,
+   * JSP caching and JSON-RPC throughput).
+   *
+   * @return The statistics.
+   */
+  DumboServerStats getStats();
 }
@@ -66,8 +66,107 @@ public interface DumboServerBuilder {
 
   DumboServerBuilder withContent(DumboContent content);
 
+  /**
+   * Serves static content from the given packed archive (memory-mapped), before looking at any
+   * other content.
+   *
+   * @param archive The archive file, or {@code null} to disable.
+   * @return This builder.
+   * @see DumboContentBuilder#withPackedArchive(boolean)
+   */
+  DumboServerBuilder withPackedContent(Path archive);
+
+  /**
+   * Serves JSPs from the given directory of precompiled classes, instead of compiling them at
+   * runtime. JSPs without a precompiled class are still compiled, unless
+   * {@code dumbo.jsp.precompiled-only=true} is set.
+   *
+   * @param classesDir The directory, or {@code null} to disable.
+   * @return This builder.
+   * @see DumboContentBuilder#withJspClassOutputPath(Path)
+   */
+  DumboServerBuilder withPrecompiledJsp(Path classesDir);
+
   DumboServerBuilder withSocketPath(String socketPath);
 
+  /**
+   * Serves the server's statistics (see {@link DumboServer#getStats()}) as JSON at the given
+   * absolute URL path, e.g., {@code /.dumbo/stats}.
+   *
+   * The endpoint is not access-controlled, so it should only be enabled if the path is not
+   * reachable from untrusted networks (e.g., when serving via a UNIX socket behind a proxy).
+   *
+   * @param path The URL path, or {@code null} to disable (default).
+   * @return This builder.
+   */
+  DumboServerBuilder withStatsPath(String path);
+
+  /**
+   * Appends an access log (in NCSA common log format, followed by the request latency and, for
+   * JSON-RPC requests, the method called) to the given file.
+   *
+   * Entries are buffered in memory and written by a background thread, so logging does not add
+   * synchronous I/O to requests. See {@code dumbo.access-log.*} system properties for further
+   * options.
+   *
+   * @param logFile The log file, or {@code null} to disable (default).
+   * @return This builder.
+   */
+  DumboServerBuilder withAccessLog(Path logFile);
+
+  /**
+   * Stores page and session attributes in the given store, instead of the heap (default).
+   *
+   * @param store The store, or {@code null} to use the default.
+   * @return This builder.
+   */
+  DumboServerBuilder withStateStore(DumboStateStore store);
+
+  /**
+   * Stores page and session attributes in memory-mapped files in the given directory, so they
+   * survive a server restart, along with the HTTP session IDs of their pages. Attributes are only
+   * loaded into the heap while their page or session is being accessed (e.g., during an RPC call),
+   * and only modified attributes are written back.
+   *
+   * Attribute values that are not {@link java.io.Serializable} are kept on the heap instead. See
+   * {@code dumbo.state-store.*} system properties for further options.
+   *
+   * The directory is locked when the server is built, and released when it is shut down; it
+   * cannot be shared by concurrently running processes.
+   *
+   * @param directory The directory, or {@code null} to use the default store.
+   * @return This builder.
+   * @throws IOException on error.
+   */
+  DumboServerBuilder withStateStoreDirectory(Path directory) throws IOException;
+
+  /**
+   * Connects the consoles of this server to those of other nodes via the given message bus, so
+   * console output for a page is also delivered by the other nodes that already know that page.
+   *
+   * The bus does not make pages or HTTP sessions known to other nodes: a page is only known to the
+   * node that created it (or restored it from its state store after a restart), so requests for a
+   * page still need to reach such a node (i.e., session affinity is still required). The bus is
+   * closed when the server shuts down.
+   *
+   * @param bus The message bus, or {@code null} to keep console output local (default).
+   * @return This builder.
+   */
+  DumboServerBuilder withMessageBus(DumboMessageBus bus);
+
+  /**
+   * Connects the consoles of this server to those of other server processes on the same host, via
+   * UNIX domain sockets in the given directory (see {@link #withMessageBus(DumboMessageBus)}).
+   *
+   * The socket is only created when the server is built, and closed when it is shut down.
+   *
+   * @param directory The socket directory shared by all processes, or {@code null} to keep console
+   *          output local (default).
+   * @return This builder.
+   * @throws IOException on error.
+   */
+  DumboServerBuilder withMessageBusSocketDirectory(Path directory) throws IOException;
+
   DumboServerBuilder withTargetEnvironment(DumboTargetEnvironment env) throws IOException;
 
   DumboServerBuilder initFromEnvironmentVariables();
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.api;
+
+/**
+ * A snapshot of a {@link DumboServer}'s runtime statistics, as returned by
+ * {@link DumboServer#getStats()}.
+ *
+ * Counters (e.g., {@link #getRpcCalls()}) are cumulative since the server was created; all other
+ * values reflect the state at the time the snapshot was taken.
+ *
+ * @author Christian Kohlschütter
+ */
+public interface DumboServerStats {
+  /**
+   * Returns the number of active HTTP sessions.
+   *
+   * @return The number of sessions.
+   */
+  int getActiveHttpSessions();
+
+  /**
+   * Returns the number of active pages (i.e., {@link DumboSession}s, each identified by a pageId),
+   * across all HTTP sessions.
+   *
+   * @return The number of pages.
+   */
+  int getActivePages();
+
+  /**
+   * Returns the number of consoles that have not been closed yet.
+   *
+   * @return The number of open consoles.
+   */
+  int getOpenConsoles();
+
+  /**
+   * Returns the total number of chunks queued for delivery, across all open consoles.
+   *
+   * @return The total queue depth.
+   */
+  int getConsoleQueueDepth();
+
+  /**
+   * Returns the largest number of chunks queued for delivery in a single console.
+   *
+   * @return The maximum queue depth.
+   */
+  int getMaxConsoleQueueDepth();
+
+  /**
+   * Returns the number of long-poll requests currently waiting for console output.
+   *
+   * @return The number of parked long-polls.
+   */
+  int getParkedLongPolls();
+
+  /**
+   * Returns the number of pages that were removed because their browser stopped polling.
+   *
+   * @return The number of reaped pages.
+   */
+  long getReapedPages();
+
+  /**
+   * Returns the number of HTTP sessions that were invalidated because they had no remaining pages.
+   *
+   * @return The number of reaped sessions.
+   */
+  long getReapedSessions();
+
+  /**
+   * Returns the number of requests for new pages that were rejected because the server was at
+   * capacity.
+   *
+   * @return The number of rejected pages.
+   */
+  long getRejectedPages();
+
+  /**
+   * Returns the current number of threads in the server's thread pool.
+   *
+   * @return The number of threads.
+   */
+  int getThreads();
+
+  /**
+   * Returns the number of threads in the server's thread pool that are currently busy.
+   *
+   * @return The number of busy threads.
+   */
+  int getBusyThreads();
+
+  /**
+   * Returns the maximum number of threads in the server's thread pool.
+   *
+   * @return The maximum number of threads.
+   */
+  int getMaxThreads();
+
+  /**
+   * Returns the number of jobs waiting for a thread in the server's thread pool.
+   *
+   * @return The queue size.
+   */
+  int getThreadPoolQueueSize();
+
+  /**
+   * Returns the number of JSP requests that were served from a previously generated file.
+   *
+   * @return The number of cache hits.
+   */
+  long getJspCacheHits();
+
+  /**
+   * Returns the number of JSP requests that were rendered and then stored as a generated file.
+   *
+   * @return The number of cache misses.
+   */
+  long getJspCacheMisses();
+
+  /**
+   * Returns the number of JSP requests that were rendered without being cached, either because the
+   * JSP is not cacheable, or because the response could not be cached.
+   *
+   * @return The number of uncached requests.
+   */
+  long getJspUncached();
+
+  /**
+   * Returns the number of JSON-RPC requests handled.
+   *
+   * @return The number of requests.
+   */
+  long getRpcCalls();
+
+  /**
+   * Returns the number of JSON-RPC requests that resulted in an error.
+   *
+   * @return The number of failed requests.
+   */
+  long getRpcErrors();
+
+  /**
+   * Returns the average number of JSON-RPC requests per second, over the last minute.
+   *
+   * @return The throughput.
+   */
+  double getRpcCallsPerSecond();
+}
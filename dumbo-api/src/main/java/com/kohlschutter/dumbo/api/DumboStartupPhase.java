@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.api;
+
+import java.time.Duration;
+
+/**
+ * A completed phase of a {@link DumboServer}'s startup, as returned by
+ * {@link DumboServer#getStartupTimeline()}.
+ *
+ * Phases may be nested (e.g., scanning a web app happens while registering its context), and some
+ * (e.g., regenerating and prewarming paths) may run concurrently.
+ *
+ * @author Christian Kohlschütter
+ */
+public interface DumboStartupPhase {
+  /**
+   * Returns the name of the phase, e.g., {@code initComponents} or {@code regeneratePath}.
+   *
+   * @return The name.
+   */
+  String getName();
+
+  /**
+   * Returns the context path this phase relates to, or {@code null} if not context-specific.
+   *
+   * @return The context path, or {@code null}.
+   */
+  String getContext();
+
+  /**
+   * Returns the resource or URL path this phase relates to, or {@code null} if not path-specific.
+   *
+   * @return The path, or {@code null}.
+   */
+  String getPath();
+
+  /**
+   * Returns the time the phase started, relative to the time the server was being built.
+   *
+   * @return The start offset.
+   */
+  Duration getStart();
+
+  /**
+   * Returns the duration of the phase.
+   *
+   * @return The duration.
+   */
+  Duration getDuration();
+}
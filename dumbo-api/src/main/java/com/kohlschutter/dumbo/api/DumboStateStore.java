@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Stores page and session attributes (see {@link DumboSession#setPageAttribute(String, Object)}).
+ *
+ * Attributes are grouped by scope (one scope per page, and one per HTTP session), identified by
+ * opaque strings. Implementations must be thread-safe.
+ *
+ * Stores that keep attributes outside the heap (e.g., serialized) must return the same instance for
+ * repeated lookups of an attribute within an access window of its scope (see
+ * {@link #beginAccess(String)}), and persist modifications made to that instance in place when the
+ * last access window ends. Outside access windows, such stores may return copies, so attribute
+ * values that are modified outside a request (e.g., by a task started from
+ * {@link EventHandler#onAppLoaded(DumboSession)} that outlives it) must be set again to be
+ * persisted, or not be {@link java.io.Serializable}, in which case they are kept on the heap.
+ *
+ * @author Christian Kohlschütter
+ * @see DumboServerBuilder#withStateStore(DumboStateStore)
+ */
+public interface DumboStateStore extends Closeable {
+  /**
+   * Returns the value of an attribute; repeated calls within an access window return the same
+   * instance, unless the attribute has been set again in-between.
+   *
+   * @param scope The scope.
+   * @param key The attribute key.
+   * @return The value, or {@code null} if not set.
+   */
+  Object get(String scope, String key);
+
+  /**
+   * Sets the value of an attribute.
+   *
+   * @param scope The scope.
+   * @param key The attribute key.
+   * @param value The value, or {@code null} to remove the attribute.
+   */
+  void put(String scope, String key, Object value);
+
+  /**
+   * Checks whether the given scope has any attributes.
+   *
+   * @param scope The scope.
+   * @return {@code true} if so.
+   */
+  boolean containsScope(String scope);
+
+  /**
+   * Removes all attributes of the given scope.
+   *
+   * @param scope The scope.
+   */
+  void removeScope(String scope);
+
+  /**
+   * Moves all attributes of the given scope to another (empty) scope, e.g., when the ID of an HTTP
+   * session has changed.
+   *
+   * @param scope The current scope.
+   * @param newScope The new scope.
+   */
+  void renameScope(String scope, String newScope);
+
+  /**
+   * Marks the beginning of an access window (e.g., a request) for the given scope. Modifications
+   * to attribute values are persisted (where supported) when the last access window ends.
+   *
+   * @param scope The scope.
+   */
+  default void beginAccess(String scope) {
+  }
+
+  /**
+   * Marks the end of an access window for the given scope.
+   *
+   * @param scope The scope.
+   */
+  default void endAccess(String scope) {
+  }
+
+  /**
+   * Checks whether attributes survive a server restart, in which case pages may be restored from
+   * the store.
+   *
+   * @return {@code true} if persistent.
+   */
+  default boolean isPersistent() {
+    return false;
+  }
+
+  @Override
+  default void close() throws IOException {
+  }
+}
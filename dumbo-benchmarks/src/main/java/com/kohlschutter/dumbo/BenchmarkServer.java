@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.kohlschutter.dumbo.api.DumboServerBuilder;
+import com.kohlschutter.dumbo.helloworld.HelloWorldApp;
+
+/**
+ * A Dumbo server running the "Hello world" demo app on an ephemeral port, shared by all threads of
+ * a benchmark. Requests can also be sent in-process, via {@link #localConnector}.
+ *
+ * @author Christian Kohlschütter
+ */
+@State(Scope.Benchmark)
+public class BenchmarkServer {
+  DumboServerImpl server;
+  URI baseUri;
+  LocalConnector localConnector;
+
+  @Setup(Level.Trial)
+  public void start() throws IOException, InterruptedException {
+    server = (DumboServerImpl) DumboServerBuilder.begin() //
+        .withMainApplication(HelloWorldApp.class) //
+        .withPort(0) //
+        .build();
+    localConnector = new LocalConnector(server.getJettyServer());
+    server.getJettyServer().addConnector(localConnector);
+    server.start();
+    server.awaitIdle();
+    baseUri = server.getLocalURI();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    server.shutdown();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+import com.kohlschutter.dumbo.console.ConsoleService;
+
+/**
+ * Measures {@link ConsoleImpl} producer/consumer throughput under contention: several threads
+ * adding objects or printing lines, and one thread draining chunks, like the long-polling
+ * {@code ConsoleService.requestNextChunk} RPC does.
+ *
+ * The consumer drains at most 20 chunks per call, so the producers would outrun it and grow the
+ * queue without bound, which would measure allocation and GC rather than the console. Producers
+ * therefore back off while more than {@link #MAX_BACKLOG} chunks are pending.
+ *
+ * @author Christian Kohlschütter
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsoleImplBenchmark {
+  private static final Object CHUNK = "Hello world";
+
+  /**
+   * The maximum number of pending chunks before producers wait for the consumer.
+   */
+  static final int MAX_BACKLOG = 1000;
+
+  /**
+   * The console shared by all threads of a group.
+   */
+  @State(Scope.Group)
+  public static class SharedConsole {
+    ConsoleImpl console;
+    ConsoleService service;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      console = new ConsoleImpl(null);
+      service = console.getConsoleService();
+    }
+  }
+
+  /**
+   * Wakes up the consumer once a producer is done, so the consumer doesn't block for the maximum
+   * wait time at the end of an iteration.
+   */
+  @State(Scope.Thread)
+  public static class Producer {
+    private SharedConsole shared;
+
+    @Setup(Level.Iteration)
+    public void setup(SharedConsole sc) {
+      this.shared = sc;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+      shared.console.add(CHUNK);
+    }
+
+    /**
+     * Waits until the consumer has caught up, or the measurement has stopped.
+     *
+     * @param control The JMH control.
+     */
+    void awaitBacklog(Control control) {
+      while (shared.console.getQueueDepth() >= MAX_BACKLOG && !control.stopMeasurement) {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  @Benchmark
+  @Group("add")
+  @GroupThreads(3)
+  public void addProducer(SharedConsole sc, Producer p, Control control) {
+    p.awaitBacklog(control);
+    sc.console.add(CHUNK);
+  }
+
+  @Benchmark
+  @Group("add")
+  @GroupThreads(1)
+  public Object addConsumer(SharedConsole sc) {
+    return sc.service.requestNextChunk();
+  }
+
+  @Benchmark
+  @Group("println")
+  @GroupThreads(3)
+  public void printlnProducer(SharedConsole sc, Producer p, Control control) {
+    p.awaitBacklog(control);
+    sc.console.println(CHUNK);
+  }
+
+  @Benchmark
+  @Group("println")
+  @GroupThreads(1)
+  public Object printlnConsumer(SharedConsole sc) {
+    return sc.service.requestNextChunk();
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering the HTML HEAD section contributed by an app's extensions, via
+ * {@link ExtensionResourceHelper#htmlHead(ServerApp)}, both uncached and through the app's
+ * fragment cache (see {@link JSPSupport#htmlHead(ServerApp)}).
+ *
+ * @author Christian Kohlschütter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HtmlHeadBenchmark {
+  private ServerApp app;
+
+  @Setup(Level.Trial)
+  public void setup(BenchmarkServer bs) {
+    app = bs.server.getMainApplication();
+  }
+
+  @Benchmark
+  public String htmlHeadToString() {
+    return ExtensionResourceHelper.htmlHead(app).toString();
+  }
+
+  @Benchmark
+  public StringWriter htmlHeadAppendTo() throws IOException {
+    StringWriter out = new StringWriter();
+    ExtensionResourceHelper.htmlHead(app).appendTo(out);
+    return out;
+  }
+
+  @Benchmark
+  public String htmlHeadCached() {
+    return JSPSupport.htmlHead(app);
+  }
+}
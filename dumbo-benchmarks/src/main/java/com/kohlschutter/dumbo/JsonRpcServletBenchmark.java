@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JsonRpcServlet} request handling (parsing the JSON request, dispatching the call,
+ * serializing the result) against the "Hello world" demo app.
+ *
+ * Requests are sent in-process, via a Jetty {@link LocalConnector}, so the numbers are not
+ * dominated by TCP and HTTP client overhead; Jetty's HTTP parsing and generation are still
+ * included.
+ *
+ * Each benchmark thread uses its own session and pageId, which are established during setup.
+ *
+ * @author Christian Kohlschütter
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonRpcServletBenchmark {
+  private static final String SERVICE = "com.kohlschutter.dumbo.helloworld.DemoService";
+
+  private LocalConnector connector;
+  private String jsonPath;
+  private String cookie;
+  private String helloRequest;
+
+  /**
+   * The request for {@code echoObject}, with a configurable payload size.
+   */
+  @State(Scope.Thread)
+  public static class EchoRequest {
+    /**
+     * The number of entries in the object sent to {@code echoObject}.
+     */
+    @Param({"1", "100"})
+    int objectSize;
+
+    String body;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      JSONObject obj = new JSONObject();
+      for (int i = 0; i < objectSize; i++) {
+        obj.put("key" + i, "value" + i);
+      }
+      body = request("echoObject", "[" + obj + "]");
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup(BenchmarkServer bs) throws Exception {
+    connector = bs.localConnector;
+
+    String path = (bs.server.getMainApplication().getContextPath() + "/json").replaceAll("//+",
+        "/");
+
+    // The first call creates the session and the pageId; subsequent calls use the URL returned
+    String serverURL = new JSONObject(post(path, request("hello", "[false]"))).optString(
+        "serverURL", null);
+    if (serverURL == null) {
+      jsonPath = path;
+    } else {
+      URI uri = URI.create("http://localhost" + path).resolve(serverURL);
+      jsonPath = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri
+          .getRawQuery();
+    }
+
+    helloRequest = request("hello", "[false]");
+  }
+
+  private static String request(String method, String params) {
+    return "{\"id\":1,\"method\":\"" + SERVICE + "." + method + "\",\"params\":" + params + "}";
+  }
+
+  private String post(String path, String body) throws Exception {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    StringBuilder sb = new StringBuilder(128 + bytes.length);
+    sb.append("POST ").append(path).append(" HTTP/1.1\r\n");
+    sb.append("Host: localhost\r\n");
+    sb.append("Connection: close\r\n");
+    sb.append("Content-Type: application/json;charset=utf-8\r\n");
+    sb.append("Content-Length: ").append(bytes.length).append("\r\n");
+    if (cookie != null) {
+      sb.append("Cookie: ").append(cookie).append("\r\n");
+    }
+    sb.append("\r\n").append(new String(bytes, StandardCharsets.ISO_8859_1));
+
+    String resp = connector.getResponse(sb.toString());
+    if (resp == null || !resp.startsWith("HTTP/1.1 200 ")) {
+      throw new IOException("Unexpected response: " + (resp == null ? null : resp.substring(0,
+          Math.max(0, resp.indexOf('\r')))));
+    }
+    int headerEnd = resp.indexOf("\r\n\r\n");
+    if (cookie == null) {
+      cookie = parseCookie(resp.substring(0, headerEnd));
+    }
+    return new String(resp.substring(headerEnd + 4).getBytes(StandardCharsets.ISO_8859_1),
+        StandardCharsets.UTF_8);
+  }
+
+  private static String parseCookie(String headers) {
+    for (String line : headers.split("\r\n")) {
+      if (line.toLowerCase(Locale.ROOT).startsWith("set-cookie:")) {
+        String value = line.substring("set-cookie:".length()).trim();
+        int semicolon = value.indexOf(';');
+        return semicolon == -1 ? value : value.substring(0, semicolon);
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public String hello() throws Exception {
+    return post(jsonPath, helloRequest);
+  }
+
+  @Benchmark
+  public String echoObject(EchoRequest req) throws Exception {
+    return post(jsonPath, req.body);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the fan-out cost of {@link MultiplexedAppendable} and
+ * {@link MultiplexedAppendable.SuppressErrorsAppendable}, for a varying number of targets.
+ *
+ * @author Christian Kohlschütter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiplexedAppendableBenchmark {
+  private static final String TEXT = "<p>Hello world</p>\n";
+
+  /**
+   * The number of targets.
+   */
+  @Param({"1", "2", "4", "16"})
+  int numTargets;
+
+  private Appendable multiplexed;
+  private Appendable suppressErrors;
+
+  @Setup
+  public void setup() {
+    Appendable[] targets = new Appendable[numTargets];
+    for (int i = 0; i < numTargets; i++) {
+      targets[i] = new CountingAppendable();
+    }
+    multiplexed = new MultiplexedAppendable(targets);
+    suppressErrors = new MultiplexedAppendable.SuppressErrorsAppendable(targets);
+  }
+
+  @Benchmark
+  public Appendable appendCharSequence() throws IOException {
+    return multiplexed.append(TEXT);
+  }
+
+  @Benchmark
+  public Appendable appendChar() throws IOException {
+    return multiplexed.append('x');
+  }
+
+  @Benchmark
+  public Appendable appendCharSequenceSuppressErrors() throws IOException {
+    return suppressErrors.append(TEXT);
+  }
+
+  /**
+   * An {@link Appendable} that only counts the number of characters appended.
+   */
+  private static final class CountingAppendable implements Appendable {
+    long count;
+
+    @Override
+    public Appendable append(CharSequence csq) {
+      count += csq.length();
+      return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+      count += end - start;
+      return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+      count++;
+      return this;
+    }
+  }
+}
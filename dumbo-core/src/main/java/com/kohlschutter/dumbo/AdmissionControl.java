@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Node-wide admission control for new pages.
+ *
+ * New pages are only admitted while the number of live pages and the number of parked console
+ * long-polls across the server are below their configured limits. Otherwise, the request is
+ * rejected right away with a "Service Unavailable" status and a "Retry-After" header, rather than
+ * parking a servlet thread until capacity becomes available.
+ *
+ * Page slots are reserved atomically upon admission, so concurrent requests can't overshoot the
+ * limit. New pages that replace an existing page of the same HTTP session (because the per-session
+ * maximum is reached, e.g., upon reload) are always admitted, since they don't need a new slot.
+ *
+ * Existing pages are never affected, so overload degrades gracefully: users with open pages can
+ * continue, while new pages are turned away.
+ *
+ * @author Christian Kohlschütter
+ */
+final class AdmissionControl {
+  private static final Logger LOG = LoggerFactory.getLogger(AdmissionControl.class);
+
+  /**
+   * The maximum number of live pages across all sessions, or {@code 0} for unlimited.
+   */
+  private static final int MAX_PAGES = Integer.getInteger("dumbo.admission.max-pages", 0);
+
+  /**
+   * The maximum number of parked console long-polls across all pages; no new pages are admitted
+   * while this number is reached ({@code 0} for unlimited).
+   */
+  private static final int MAX_PARKED_POLLS = Integer.getInteger(
+      "dumbo.admission.max-parked-polls", 0);
+
+  /**
+   * The value of the "Retry-After" header sent with rejections, in seconds.
+   */
+  static final int RETRY_AFTER_SECONDS = Integer.getInteger("dumbo.admission.retry-after", 5);
+
+  private final ServerStats stats;
+  private final int maxPages;
+  private final int maxParkedPolls;
+
+  AdmissionControl(ServerStats stats) {
+    this(stats, MAX_PAGES, MAX_PARKED_POLLS);
+  }
+
+  /**
+   * Creates a new {@link AdmissionControl} with the given limits.
+   *
+   * @param stats The server statistics.
+   * @param maxPages The maximum number of live pages, or {@code 0} for unlimited.
+   * @param maxParkedPolls The maximum number of parked console long-polls, or {@code 0} for
+   *          unlimited.
+   */
+  AdmissionControl(ServerStats stats, int maxPages, int maxParkedPolls) {
+    this.stats = stats;
+    this.maxPages = maxPages;
+    this.maxParkedPolls = maxParkedPolls;
+  }
+
+  /**
+   * Checks whether admission control is enabled.
+   *
+   * @return {@code true} if enabled.
+   */
+  boolean isEnabled() {
+    return maxPages > 0 || maxParkedPolls > 0;
+  }
+
+  /**
+   * Checks whether a new page may be created. If admitted, a page slot is reserved for the new
+   * page (see {@link ServerStats#reservePageSlot(int)}).
+   *
+   * @param replacesPage {@code true} if the new page evicts an existing page of the same HTTP
+   *          session.
+   * @return {@code true} if admitted, {@code false} if the page should be rejected.
+   */
+  boolean admitNewPage(boolean replacesPage) {
+    if (!isEnabled() || replacesPage) {
+      stats.reservePageSlot(0);
+      return true;
+    }
+    if ((maxParkedPolls <= 0 || stats.getParkedLongPolls() < maxParkedPolls) && stats
+        .reservePageSlot(maxPages)) {
+      return true;
+    }
+
+    stats.pageRejected();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Rejecting new page; pages=" + stats.getActivePages() + ", parkedPolls=" + stats
+          .getParkedLongPolls());
+    }
+    return false;
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import com.kohlschutter.dumbo.api.DumboApplication;
+import com.kohlschutter.dumbo.api.DumboServerBuilder;
+
+/**
+ * Runs a Dumbo application through a "training run" so the JVM can record the classes loaded (and,
+ * on newer JDKs, linked and profiled) for an AppCDS archive or AOT cache.
+ *
+ * The archive itself is written by the JVM upon exit, depending on the JVM options used to launch
+ * this tool, e.g., {@code -XX:ArchiveClassesAtExit=app.jsa} (JDK 13+), or
+ * {@code -XX:AOTCacheOutput=app.aot} (JDK 25+). The app can then be started with
+ * {@code -XX:SharedArchiveFile=app.jsa} or {@code -XX:AOTCache=app.aot}, respectively.
+ *
+ * Arguments are relative URLs to visit, or JSON-RPC calls to issue, in the form
+ * {@code rpc:Service.method[params...]} (the JSON array of parameters is optional).
+ *
+ * If {@code dumbo.training.benchmark=true} is set, the tool only reports the time from JVM start
+ * until the first successful response, and no further requests are made. This can be used to
+ * compare startup times with and without the archive.
+ *
+ * Failed requests are reported, but do not fail the run: a partial training run still yields a
+ * useful archive.
+ *
+ * @author Christian Kohlschütter
+ * @see NativeImageAgentPrewarm
+ */
+public final class AppCDSTrainingRun {
+  private static final String RPC_PREFIX = "rpc:";
+
+  private AppCDSTrainingRun() {
+    throw new IllegalStateException("No instances");
+  }
+
+  private static String getRequiredProperty(String prop) {
+    String v = System.getProperty(prop);
+    if (v == null || v.isEmpty()) {
+      throw new IllegalArgumentException("Missing property: " + prop);
+    }
+    return v;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void main(String[] args) throws Exception {
+    String application = getRequiredProperty("dumbo.training.app");
+    Class<?> appClass = Class.forName(application);
+    boolean benchmark = Boolean.getBoolean("dumbo.training.benchmark");
+
+    DumboServerImpl server = (DumboServerImpl) DumboServerBuilder.begin() //
+        .withMainApplication((Class<? extends DumboApplication>) appClass) //
+        .initFromEnvironmentVariables() //
+        .build();
+    server.start();
+
+    try {
+      URI baseUri = server.getLocalURI();
+      boolean success = tryRequest(baseUri.toString(), () -> visit(baseUri));
+
+      if (benchmark) {
+        Optional<Instant> jvmStart = ProcessHandle.current().info().startInstant();
+        if (success && jvmStart.isPresent()) {
+          System.out.println("Time to first response: " + Duration.between(jvmStart.get(), Instant
+              .now()).toMillis() + "ms");
+        }
+      } else {
+        train(server, baseUri, args);
+      }
+    } finally {
+      server.shutdown();
+    }
+
+    // Exit explicitly, so the JVM writes the archive even if some non-daemon threads linger
+    System.exit(0);
+  }
+
+  @FunctionalInterface
+  private interface Request {
+    void run() throws IOException;
+  }
+
+  private static boolean tryRequest(String what, Request request) {
+    try {
+      request.run();
+      return true;
+    } catch (IOException e) {
+      System.err.println("Training request failed: " + what + ": " + e);
+      return false;
+    }
+  }
+
+  private static void train(DumboServerImpl server, URI baseUri, String[] args)
+      throws InterruptedException {
+    URI jsonUri = baseUri.resolve((server.getMainApplication().getContextPath() + "/json")
+        .replaceAll("//+", "/"));
+    for (String arg : args) {
+      tryRequest(arg, () -> {
+        if (arg.startsWith(RPC_PREFIX)) {
+          call(jsonUri, arg.substring(RPC_PREFIX.length()));
+        } else {
+          visit(baseUri.resolve(arg));
+        }
+      });
+    }
+    server.awaitIdle();
+  }
+
+  private static void visit(URI uri) throws IOException {
+    System.out.println("Visiting " + uri);
+    HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
+    try {
+      int code = conn.getResponseCode();
+      try (InputStream in = code >= 400 ? conn.getErrorStream() : conn.getInputStream()) {
+        if (in != null) {
+          in.transferTo(OutputStream.nullOutputStream());
+        }
+      }
+      if (code >= 400) {
+        throw new IOException("HTTP " + code);
+      }
+    } finally {
+      conn.disconnect();
+    }
+  }
+
+  private static void call(URI jsonUri, String spec) throws IOException {
+    int bracket = spec.indexOf('[');
+    String method = bracket == -1 ? spec : spec.substring(0, bracket);
+    String params = bracket == -1 ? "[]" : spec.substring(bracket);
+
+    System.out.println("Calling " + method + params);
+    byte[] body = ("{\"id\":1,\"method\":\"" + method + "\",\"params\":" + params + "}").getBytes(
+        StandardCharsets.UTF_8);
+
+    HttpURLConnection conn = (HttpURLConnection) jsonUri.toURL().openConnection();
+    try {
+      conn.setRequestMethod("POST");
+      conn.setDoOutput(true);
+      conn.setRequestProperty("Content-Type", "application/json;charset=utf-8");
+      conn.setFixedLengthStreamingMode(body.length);
+      try (OutputStream out = conn.getOutputStream()) {
+        out.write(body);
+      }
+      int code = conn.getResponseCode();
+      if (code != HttpURLConnection.HTTP_OK) {
+        throw new IOException("HTTP " + code);
+      }
+      try (InputStream in = conn.getInputStream()) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+    } finally {
+      conn.disconnect();
+    }
+  }
+}
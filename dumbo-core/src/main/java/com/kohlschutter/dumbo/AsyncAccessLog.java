@@ -0,0 +1,281 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.ServletRequest;
+
+/**
+ * An access log that doesn't add synchronous I/O to requests.
+ *
+ * Request threads only capture the relevant fields and put them into a lock-free ring buffer; a
+ * background thread drains the buffer in batches, formats the entries (in NCSA common log format,
+ * optionally followed by the latency in milliseconds and an annotation such as the JSON-RPC
+ * method), and writes them to the log file.
+ *
+ * If the buffer is full, entries are dropped (and the number of dropped entries is logged), rather
+ * than blocking the request.
+ *
+ * @author Christian Kohlschütter
+ */
+final class AsyncAccessLog extends AbstractLifeCycle implements RequestLog {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncAccessLog.class);
+
+  /**
+   * The request attribute that holds an annotation for the access log entry (e.g., the JSON-RPC
+   * method).
+   */
+  static final String ANNOTATION_ATTRIBUTE = AsyncAccessLog.class.getName() + ".annotation";
+
+  /**
+   * The capacity of the ring buffer (rounded up to the next power of two).
+   */
+  private static final int BUFFER_SIZE = Integer.getInteger("dumbo.access-log.buffer-size",
+      8192);
+
+  /**
+   * Whether the request latency should be logged.
+   */
+  private static final boolean LOG_LATENCY = Boolean.parseBoolean(System.getProperty(
+      "dumbo.access-log.latency", "true"));
+
+  /**
+   * Whether annotations (e.g., JSON-RPC methods and console polls) should be logged.
+   */
+  private static final boolean LOG_ANNOTATIONS = Boolean.parseBoolean(System.getProperty(
+      "dumbo.access-log.annotate", "true"));
+
+  private static final int MAX_BATCH = 1024;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+  private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern(
+      "dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+  private final Path logFile;
+  private final AtomicReferenceArray<Entry> ring;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  private volatile boolean running;
+  private Thread writerThread;
+
+  /**
+   * Creates a new {@link AsyncAccessLog}.
+   *
+   * @param logFile The log file; entries are appended.
+   */
+  AsyncAccessLog(Path logFile) {
+    super();
+    this.logFile = logFile;
+    int capacity = Integer.highestOneBit(Math.max(2, BUFFER_SIZE) - 1) << 1;
+    this.ring = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Annotates the access log entry for the given request with the JSON-RPC method being called.
+   *
+   * @param request The request.
+   * @param method The JSON-RPC method.
+   */
+  static void annotateRpc(ServletRequest request, String method) {
+    if (LOG_ANNOTATIONS) {
+      request.setAttribute(ANNOTATION_ATTRIBUTE, method.startsWith("ConsoleService.") ? "poll:"
+          + method : "rpc:" + method);
+    }
+  }
+
+  @Override
+  public void log(Request request, Response response) {
+    if (!running) {
+      return;
+    }
+
+    Object annotation = LOG_ANNOTATIONS ? request.getAttribute(ANNOTATION_ATTRIBUTE) : null;
+    Entry entry = new Entry(System.currentTimeMillis(), Request.getRemoteAddr(request), request
+        .getMethod(), request.getHttpURI().getPathQuery(), request.getConnectionMetaData()
+            .getProtocol(), response.getStatus(), Response.getContentBytesWritten(response),
+        LOG_LATENCY ? NanoTime.millisSince(request.getBeginNanoTime()) : -1,
+        annotation == null ? null : annotation.toString());
+
+    long t;
+    do {
+      t = tail.get();
+      if (t - head.get() >= ring.length()) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } while (!tail.compareAndSet(t, t + 1));
+    ring.set((int) (t & mask), entry);
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    Path parent = logFile.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(logFile,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 64 * 1024);
+
+    running = true;
+    writerThread = new Thread(() -> writeLoop(out), "dumbo-access-log");
+    writerThread.setDaemon(true);
+    writerThread.start();
+    super.doStart();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    running = false;
+    Thread t = writerThread;
+    writerThread = null;
+    if (t != null) {
+      LockSupport.unpark(t);
+      t.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    super.doStop();
+  }
+
+  private void writeLoop(Writer out) {
+    StringBuilder sb = new StringBuilder(256);
+    long lastDropped = 0;
+    try (Writer w = out) {
+      while (true) {
+        boolean stopping = !running;
+        int n = drain(w, sb);
+
+        long d = dropped.get();
+        if (d != lastDropped) {
+          if (LOG.isWarnEnabled()) {
+            LOG.warn("Access log buffer full; dropped " + (d - lastDropped) + " entries");
+          }
+          lastDropped = d;
+        }
+
+        if (n > 0) {
+          w.flush();
+        } else if (stopping) {
+          break;
+        } else {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+      }
+    } catch (IOException e) {
+      LOG.error("Cannot write access log {}", logFile, e);
+      running = false;
+    }
+  }
+
+  private int drain(Writer w, StringBuilder sb) throws IOException {
+    int n = 0;
+    long h = head.get();
+    while (n < MAX_BATCH && h < tail.get()) {
+      int index = (int) (h & mask);
+      Entry entry = ring.get(index);
+      if (entry == null) {
+        // slot claimed, but not yet published
+        break;
+      }
+      ring.set(index, null);
+      head.lazySet(++h);
+
+      sb.setLength(0);
+      entry.appendTo(sb);
+      w.append(sb);
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * An access log entry, as captured on the request thread.
+   */
+  private static final class Entry {
+    private final long timestamp;
+    private final String remoteAddr;
+    private final String method;
+    private final String uri;
+    private final String protocol;
+    private final int status;
+    private final long bytes;
+    private final long latencyMillis;
+    private final String annotation;
+
+    @SuppressWarnings("PMD.ExcessiveParameterList")
+    Entry(long timestamp, String remoteAddr, String method, String uri, String protocol,
+        int status, long bytes, long latencyMillis, String annotation) {
+      this.timestamp = timestamp;
+      this.remoteAddr = remoteAddr;
+      this.method = method;
+      this.uri = uri;
+      this.protocol = protocol;
+      this.status = status;
+      this.bytes = bytes;
+      this.latencyMillis = latencyMillis;
+      this.annotation = annotation;
+    }
+
+    void appendTo(StringBuilder sb) {
+      sb.append(remoteAddr == null || remoteAddr.isEmpty() ? "-" : remoteAddr);
+      sb.append(" - - [");
+      sb.append(TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timestamp)));
+      sb.append("] \"");
+      sb.append(method).append(' ').append(uri).append(' ').append(protocol);
+      sb.append("\" ");
+      sb.append(status);
+      sb.append(' ');
+      if (bytes > 0) {
+        sb.append(bytes);
+      } else {
+        sb.append('-');
+      }
+      if (latencyMillis >= 0) {
+        sb.append(' ').append(latencyMillis).append("ms");
+      }
+      if (annotation != null) {
+        sb.append(' ').append(annotation);
+      }
+      sb.append('\n');
+    }
+  }
+}
@@ -21,6 +21,7 @@ import java.lang.annotation.Annotation;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -47,11 +48,14 @@ class ComponentImpl implements BaseSupport {
   @SuppressWarnings("PMD.LooseCoupling")
   private LinkedHashSet<Class<?>> reachableComponents = null;
 
+  private final ComponentIndex index;
+
   private final Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> componentToSubComponents =
       new HashMap<>();
 
   protected ComponentImpl(Class<? extends DumboComponent> compClass) {
     this.componentClass = compClass == null ? getClass() : compClass;
+    this.index = ComponentIndex.ENABLED ? ComponentIndex.load(componentClass) : null;
   }
 
   protected Class<? extends DumboComponent> getComponentClass() {
@@ -70,8 +74,14 @@ class ComponentImpl implements BaseSupport {
       reachableComponents = new LinkedHashSet<>();
       reachableComponents.add(BaseSupport.class);
       reachableComponents.add(componentClass);
-      reachableComponents.addAll(linearizeComponentHierarchy(componentClass,
-          componentToSubComponents));
+
+      if (index != null) {
+        reachableComponents.addAll(index.getComponents());
+        componentToSubComponents.putAll(index.getSubComponents());
+      } else {
+        reachableComponents.addAll(linearizeComponentHierarchy(componentClass,
+            componentToSubComponents));
+      }
     }
 
     return reachableComponents;
@@ -81,6 +91,9 @@ class ComponentImpl implements BaseSupport {
   <T extends Annotation> LinkedHashSet<T> getAnnotations(Class<T> annotationClass) {
     LinkedHashSet<T> set = new LinkedHashSet<>();
     for (Class<?> comp : getReachableComponents()) {
+      if (!mayBeAnnotated(comp, annotationClass)) {
+        continue;
+      }
       T ann = comp.getAnnotation(annotationClass);
       if (ann != null) {
         set.add(ann);
@@ -99,6 +112,9 @@ class ComponentImpl implements BaseSupport {
   }
 
   <T extends Annotation> List<T> getComponentAnnotations(Class<T> annotationClass) {
+    if (!mayBeAnnotated(componentClass, annotationClass)) {
+      return Collections.emptyList();
+    }
     return AnnotationUtil.getAnnotations(componentClass, annotationClass);
   }
 
@@ -107,11 +123,25 @@ class ComponentImpl implements BaseSupport {
       Class<T> annotationClass) {
     LinkedHashSet<T> annotations = new LinkedHashSet<>();
     for (Class<?> klazz : getReachableComponents()) {
-      annotations.addAll(AnnotationUtil.getAnnotations(klazz, annotationClass));
+      if (mayBeAnnotated(klazz, annotationClass)) {
+        annotations.addAll(AnnotationUtil.getAnnotations(klazz, annotationClass));
+      }
     }
     return annotations;
   }
 
+  /**
+   * Checks whether the given class may carry the given annotation, consulting the build-time
+   * {@link ComponentIndex}, if available.
+   *
+   * @param klazz The class to check.
+   * @param annotationClass The annotation class.
+   * @return {@code false} if the annotation is known to be absent.
+   */
+  private boolean mayBeAnnotated(Class<?> klazz, Class<? extends Annotation> annotationClass) {
+    return index == null || index.mayBeAnnotated(klazz, annotationClass);
+  }
+
   @SuppressWarnings("PMD.LooseCoupling")
   private static Collection<Class<?>> linearizeComponentHierarchy(Class<?> leafClass,
       Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> componentToSubcomponentsMap) {
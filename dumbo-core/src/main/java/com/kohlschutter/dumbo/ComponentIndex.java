@@ -0,0 +1,308 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.dumbo.api.DumboComponent;
+
+/**
+ * A precomputed component graph and annotation index, as emitted at build time by
+ * {@code com.kohlschutter.dumbo.processor.ComponentIndexProcessor} (dumbo-processor).
+ *
+ * If no index is present for a component (or it cannot be loaded), the component hierarchy is
+ * inspected via reflection, as before. The same applies if any of the other jars the index
+ * describes have changed since the index was built (as detected by their content fingerprints).
+ *
+ * Instances are immutable.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ComponentIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(ComponentIndex.class);
+
+  /**
+   * Whether build-time component indexes should be used, if present.
+   */
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("dumbo.component-index",
+      "true"));
+
+  private static final String INDEX_PATH = "META-INF/dumbo/components/";
+  private static final String VERSION = "2";
+  private static final String SUB_PREFIX = "sub.";
+  private static final String ANNOTATED_PREFIX = "annotated.";
+  private static final String ORIGIN_PREFIX = "origin.";
+  private static final String CLASS_SUFFIX = ".class";
+
+  /**
+   * Fingerprints of class path entries, by location.
+   */
+  private static final Map<Path, String> FINGERPRINTS = new ConcurrentHashMap<>();
+
+  private final List<Class<?>> components;
+  private final Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> subComponents;
+  private final Set<Class<?>> indexed;
+  private final Map<String, Set<Class<?>>> annotated;
+
+  private ComponentIndex(List<Class<?>> components,
+      Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> subComponents,
+      Set<Class<?>> indexed, Map<String, Set<Class<?>>> annotated) {
+    this.components = components;
+    this.subComponents = subComponents;
+    this.indexed = indexed;
+    this.annotated = annotated;
+  }
+
+  /**
+   * Loads the index for the given component class, if present.
+   *
+   * @param componentClass The component class.
+   * @return The index, or {@code null} if not present or not usable.
+   */
+  static ComponentIndex load(Class<?> componentClass) {
+    ClassLoader cl = componentClass.getClassLoader();
+    if (cl == null) {
+      return null;
+    }
+    Properties props = new Properties();
+    try (InputStream in = cl.getResourceAsStream(INDEX_PATH + componentClass.getName()
+        + ".properties")) {
+      if (in == null) {
+        return null;
+      }
+      props.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOG.warn("Cannot read component index for {}", componentClass, e);
+      return null;
+    }
+
+    if (!VERSION.equals(props.getProperty("version"))) {
+      LOG.warn("Ignoring component index for {}: Unsupported version", componentClass);
+      return null;
+    }
+
+    try {
+      for (String key : props.stringPropertyNames()) {
+        if (key.startsWith(ORIGIN_PREFIX)) {
+          Class<?> klazz = Class.forName(key.substring(ORIGIN_PREFIX.length()), false, cl);
+          if (!props.getProperty(key).equals(fingerprintOf(klazz))) {
+            LOG.info("Ignoring component index for {}: {} has changed since it was built",
+                componentClass, klazz);
+            return null;
+          }
+        }
+      }
+
+      List<Class<?>> components = classes(cl, props.getProperty("components"));
+      Set<Class<?>> indexed = Set.copyOf(classes(cl, props.getProperty("indexed")));
+
+      Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> subComponents =
+          new HashMap<>();
+      Map<String, Set<Class<?>>> annotated = new HashMap<>();
+      for (String key : props.stringPropertyNames()) {
+        String value = props.getProperty(key);
+        if (key.startsWith(SUB_PREFIX)) {
+          List<Class<? extends DumboComponent>> list = new ArrayList<>();
+          for (Class<?> k : classes(cl, value)) {
+            list.add(k.asSubclass(DumboComponent.class));
+          }
+          subComponents.put(Class.forName(key.substring(SUB_PREFIX.length()), false, cl)
+              .asSubclass(DumboComponent.class), Set.copyOf(list));
+        } else if (key.startsWith(ANNOTATED_PREFIX)) {
+          annotated.put(key.substring(ANNOTATED_PREFIX.length()), Set.copyOf(classes(cl,
+              value)));
+        }
+      }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Using component index for " + componentClass + ": " + components.size()
+            + " components");
+      }
+      return new ComponentIndex(List.copyOf(components), Map.copyOf(subComponents), indexed, Map
+          .copyOf(annotated));
+    } catch (ClassNotFoundException | ClassCastException e) {
+      // stale index
+      LOG.warn("Ignoring component index for {}", componentClass, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the class path entry (jar file or class directory) the given class
+   * was loaded from, or {@code null} if it cannot be determined.
+   *
+   * @param klazz The class.
+   * @return The fingerprint, or {@code null}.
+   */
+  private static String fingerprintOf(Class<?> klazz) {
+    CodeSource cs = klazz.getProtectionDomain().getCodeSource();
+    URL url = cs == null ? null : cs.getLocation();
+    if (url == null || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    Path path;
+    try {
+      path = Paths.get(url.toURI()).toAbsolutePath().normalize();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+    return FINGERPRINTS.computeIfAbsent(path, (p) -> {
+      try {
+        return fingerprint(p);
+      } catch (IOException e) {
+        LOG.warn("Cannot compute fingerprint of {}", p, e);
+        return "";
+      }
+    });
+  }
+
+  /**
+   * Computes a fingerprint of the contents of the given jar file or class directory: a hash of the
+   * relative paths, CRC-32 checksums and sizes of all class files. For jar files, this only
+   * requires reading the central directory. Other files (e.g., the jar manifest) are ignored, so
+   * a class directory and the jar packaged from it have the same fingerprint.
+   *
+   * Must match {@code ComponentIndexProcessor#fingerprint} in dumbo-processor.
+   *
+   * @param path The jar file or directory.
+   * @return The fingerprint.
+   * @throws IOException on error.
+   */
+  static String fingerprint(Path path) throws IOException {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    if (Files.isDirectory(path)) {
+      List<Path> files;
+      try (Stream<Path> stream = Files.walk(path)) {
+        files = stream.filter((f) -> f.getFileName().toString().endsWith(CLASS_SUFFIX)
+            && Files.isRegularFile(f)).collect(Collectors.toList());
+      }
+      Map<String, Path> sorted = new TreeMap<>();
+      for (Path f : files) {
+        sorted.put(path.relativize(f).toString().replace(f.getFileSystem().getSeparator(), "/"),
+            f);
+      }
+      for (Map.Entry<String, Path> en : sorted.entrySet()) {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(en.getValue())) {
+          byte[] buf = new byte[8192];
+          int read;
+          while ((read = in.read(buf)) != -1) {
+            crc.update(buf, 0, read);
+            size += read;
+          }
+        }
+        update(md, en.getKey(), crc.getValue(), size);
+      }
+    } else {
+      try (ZipFile zf = new ZipFile(path.toFile())) {
+        List<? extends ZipEntry> entries = zf.stream().filter((e) -> !e.isDirectory() && e
+            .getName().endsWith(CLASS_SUFFIX)).sorted(Comparator.comparing(ZipEntry::getName))
+            .collect(Collectors.toList());
+        for (ZipEntry e : entries) {
+          update(md, e.getName(), e.getCrc(), e.getSize());
+        }
+      }
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest()).substring(0, 22);
+  }
+
+  private static void update(MessageDigest md, String name, long crc, long size) {
+    md.update((name + ":" + Long.toHexString(crc) + ":" + size + "\n").getBytes(
+        StandardCharsets.UTF_8));
+  }
+
+  private static List<Class<?>> classes(ClassLoader cl, String names)
+      throws ClassNotFoundException {
+    List<Class<?>> list = new ArrayList<>();
+    if (names != null && !names.isEmpty()) {
+      for (String name : names.split(",")) {
+        list.add(Class.forName(name, false, cl));
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Returns the linearized component hierarchy, in dependency order.
+   *
+   * @return The components.
+   */
+  List<Class<?>> getComponents() {
+    return components;
+  }
+
+  /**
+   * Returns the map of components to their sub-components.
+   *
+   * @return The map.
+   */
+  Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> getSubComponents() {
+    return subComponents;
+  }
+
+  /**
+   * Checks whether the given class (or its superclass chain) may carry the given annotation.
+   *
+   * @param klazz The class.
+   * @param annotationClass The annotation class.
+   * @return {@code false} if the index knows the annotation is absent, {@code true} otherwise.
+   */
+  boolean mayBeAnnotated(Class<?> klazz, Class<? extends Annotation> annotationClass) {
+    if (!indexed.contains(klazz)) {
+      return true;
+    }
+    Set<Class<?>> set = annotated.get(annotationClass.getName());
+    return set != null && set.contains(klazz);
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+import com.kohlschutter.dumbo.api.DumboMessageBus;
+
+/**
+ * Connects the {@link ConsoleImpl}s of a server to those of other nodes via a
+ * {@link DumboMessageBus}, using the page ID as the topic.
+ *
+ * Every chunk queued by a console is published, tagged with the node ID and a sequence number, and
+ * queued by the consoles of the same page on all other nodes. Whichever node delivers the chunk to
+ * the browser publishes a "delivered" notice, upon which the other nodes drop their copy.
+ *
+ * Only chunks accepted by the page's {@link ConsoleChunkFilter} are published, and the same filter
+ * restricts which classes may be deserialized from messages received from other nodes. Chunks that
+ * cannot be published are still delivered by the node that queued them.
+ *
+ * Nodes that don't know the page ignore its messages; the bus doesn't make pages known to other
+ * nodes.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ConsoleBus {
+  private static final Logger LOG = LoggerFactory.getLogger(ConsoleBus.class);
+
+  private static final byte TYPE_CHUNK = 1;
+  private static final byte TYPE_DELIVERED = 2;
+
+  private final DumboMessageBus bus;
+  private final String nodeId = UUID.randomUUID().toString();
+
+  ConsoleBus(DumboMessageBus bus) {
+    this.bus = bus;
+  }
+
+  String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Subscribes the given console to messages for its page.
+   *
+   * Chunks are deserialized using the current thread's context classloader, and only if accepted by
+   * the given filter.
+   *
+   * @param pageId The page ID.
+   * @param console The console.
+   * @param filter The filter for incoming chunks.
+   * @return The subscription.
+   */
+  DumboMessageBus.Subscription subscribe(String pageId, ConsoleImpl console,
+      ConsoleChunkFilter filter) {
+    ClassLoader cl = Thread.currentThread().getContextClassLoader();
+    return bus.subscribe(pageId, (message) -> receive(message, console, cl, filter));
+  }
+
+  /**
+   * Publishes a chunk queued by a local console.
+   *
+   * @param pageId The page ID.
+   * @param seq The chunk's sequence number.
+   * @param chunk The chunk, which must be accepted by the page's {@link ConsoleChunkFilter}.
+   * @return {@code true} if published, {@code false} if only this node has the chunk.
+   */
+  boolean publishChunk(String pageId, long seq, Object chunk) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeByte(TYPE_CHUNK);
+      out.writeUTF(nodeId);
+      out.writeLong(seq);
+      try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+        oos.writeObject(chunk);
+      }
+    } catch (NotSerializableException e) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Keeping console chunk local: " + e);
+      }
+      return false;
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Cannot serialize console chunk", e);
+      return false;
+    }
+    return publish(pageId, bos.toByteArray());
+  }
+
+  /**
+   * Publishes that a chunk has been delivered to the browser.
+   *
+   * @param pageId The page ID.
+   * @param origin The ID of the node that queued the chunk.
+   * @param seq The chunk's sequence number.
+   */
+  void publishDelivered(String pageId, String origin, long seq) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeByte(TYPE_DELIVERED);
+      out.writeUTF(origin);
+      out.writeLong(seq);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    if (!publish(pageId, bos.toByteArray())) {
+      LOG.warn("Console chunk {} of page {} may be delivered twice", seq, pageId);
+    }
+  }
+
+  private boolean publish(String pageId, byte[] message) {
+    try {
+      bus.publish(pageId, message);
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Cannot publish console message", e);
+      return false;
+    }
+  }
+
+  @SuppressFBWarnings("OBJECT_DESERIALIZATION") // restricted by ConsoleChunkFilter
+  private void receive(byte[] message, ConsoleImpl console, ClassLoader cl,
+      ConsoleChunkFilter filter) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+      byte type = in.readByte();
+      String origin = in.readUTF();
+      long seq = in.readLong();
+      switch (type) {
+        case TYPE_CHUNK:
+          if (nodeId.equals(origin)) {
+            return;
+          }
+          try (ObjectInputStream ois = new ClassLoaderObjectInputStream(in, cl)) {
+            ois.setObjectInputFilter(filter);
+            console.onRemoteChunk(origin, seq, ois.readObject());
+          }
+          break;
+        case TYPE_DELIVERED:
+          console.onRemoteDelivered(origin, seq);
+          break;
+        default:
+          LOG.warn("Unexpected console message type: {}", type);
+          break;
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      LOG.warn("Cannot read console message", e);
+    }
+  }
+
+  /**
+   * Resolves classes via the given classloader (usually the webapp's) first.
+   */
+  private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+    private final ClassLoader cl;
+
+    ClassLoaderObjectInputStream(InputStream in, ClassLoader cl) throws IOException {
+      super(in);
+      this.cl = cl;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+        ClassNotFoundException {
+      if (cl != null) {
+        try {
+          return Class.forName(desc.getName(), false, cl);
+        } catch (ClassNotFoundException e) {
+          // try default
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
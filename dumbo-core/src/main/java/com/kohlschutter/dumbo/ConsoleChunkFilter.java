@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.ObjectInputFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.kohlschutter.dumbo.annotations.ConsoleChunkTypes;
+import com.kohlschutter.dumbo.console.ClearConsole;
+
+/**
+ * An allow-list of the console chunk types that may be exchanged with other nodes.
+ *
+ * Besides strings, {@link MultipleChunks} and {@link ClearConsole}, only the types declared by the
+ * application via {@link ConsoleChunkTypes} (and their subclasses) are allowed. When deserializing,
+ * the superclasses of these types, primitive arrays, boxed primitives, and what
+ * {@link Throwable}s carry in serialized form (stack traces, suppressed exceptions) are accepted as
+ * well.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ConsoleChunkFilter implements ObjectInputFilter {
+  /**
+   * Accepts strings, {@link MultipleChunks} and {@link ClearConsole} only.
+   */
+  static final ConsoleChunkFilter DEFAULT = new ConsoleChunkFilter(Collections.emptySet());
+
+  private static final long MAX_DEPTH = 32;
+  private static final long MAX_REFERENCES = 10_000;
+  private static final long MAX_ARRAY_LENGTH = 1_000_000;
+
+  private static final Set<Class<?>> BUILTIN = Set.of(String.class, MultipleChunks.class,
+      ClearConsole.class, Boolean.class, Character.class, Number.class, Byte.class, Short.class,
+      Integer.class, Long.class, Float.class, Double.class, StackTraceElement.class, Collections
+          .emptyList().getClass(), Collections.unmodifiableList(new ArrayList<>()).getClass(),
+      ArrayList.class);
+
+  private final List<Class<?>> types;
+
+  /**
+   * Creates a new {@link ConsoleChunkFilter}.
+   *
+   * @param types The declared chunk types.
+   */
+  ConsoleChunkFilter(Collection<Class<?>> types) {
+    this.types = List.copyOf(types);
+  }
+
+  /**
+   * Checks whether the given chunk may be sent to other nodes. {@link MultipleChunks} are accepted
+   * if all their chunks are.
+   *
+   * @param chunk The chunk.
+   * @return {@code true} if so.
+   */
+  boolean accepts(Object chunk) {
+    if (chunk instanceof String || chunk instanceof ClearConsole) {
+      return true;
+    } else if (chunk instanceof MultipleChunks) {
+      for (Object c : ((MultipleChunks) chunk).getChunks()) {
+        if (!accepts(c)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (Class<?> t : types) {
+      if (t.isInstance(chunk)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Status checkInput(FilterInfo info) {
+    if (info.depth() > MAX_DEPTH || info.references() > MAX_REFERENCES || info
+        .arrayLength() > MAX_ARRAY_LENGTH) {
+      return Status.REJECTED;
+    }
+    Class<?> c = info.serialClass();
+    if (c == null) {
+      return Status.UNDECIDED;
+    }
+    while (c.isArray()) {
+      c = c.getComponentType();
+    }
+    if (c.isPrimitive() || c == Object.class || BUILTIN.contains(c)) {
+      return Status.ALLOWED;
+    }
+    for (Class<?> t : types) {
+      // superclasses are checked when deserializing subclasses
+      if (t.isAssignableFrom(c) || (!c.isInterface() && c.isAssignableFrom(t))) {
+        return Status.ALLOWED;
+      }
+    }
+    return Status.REJECTED;
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for a console chunk request (see {@link ConsoleImpl}). The event's duration is the
+ * time spent waiting for chunks to become available.
+ *
+ * Disabled by default; enable it via a JFR settings file, or {@code Recording#enable(String)}.
+ *
+ * @author Christian Kohlschütter
+ */
+@Name("com.kohlschutter.dumbo.ConsoleDelivery")
+@Label("Console Delivery")
+@Category({"Dumbo", "Requests"})
+@Description("A console chunk request; the duration is the time spent waiting for chunks")
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+final class ConsoleDeliveryEvent extends Event {
+  @Label("Queue Depth")
+  @Description("The number of chunks queued when the request arrived")
+  int queueDepth;
+
+  @Label("Batch Size")
+  @Description("The number of chunks delivered")
+  int batchSize;
+}
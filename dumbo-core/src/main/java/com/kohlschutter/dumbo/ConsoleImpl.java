@@ -19,12 +19,15 @@ package com.kohlschutter.dumbo;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.kohlschutter.dumbo.api.Console;
+import com.kohlschutter.dumbo.api.DumboMessageBus;
 import com.kohlschutter.dumbo.api.DumboSession;
 import com.kohlschutter.dumbo.console.ClearConsole;
 import com.kohlschutter.dumbo.console.ConsoleService;
@@ -37,7 +40,7 @@ import com.kohlschutter.dumbo.console.ConsoleService;
  */
 final class ConsoleImpl implements Console {
   private static final int MAX_CHUNKS_AT_ONCE = 20;
-  private static final long MAX_WAIT_NEXT_CHUNK_MILLIS = 20 * 1000;
+  static final long MAX_WAIT_NEXT_CHUNK_MILLIS = 20 * 1000;
 
   private final StringWriter sw = new StringWriter() {
     @Override
@@ -50,6 +53,7 @@ final class ConsoleImpl implements Console {
         addChunkFromBufferToCache();
         consoleService.notifyAll();
       }
+      publishPending();
     }
   };
   private final PrintWriter consoleOut = new PrintWriter(sw, true) {
@@ -61,10 +65,22 @@ final class ConsoleImpl implements Console {
   private final AtomicBoolean closed = new AtomicBoolean();
   private final AtomicBoolean shutdownNoticeSent = new AtomicBoolean();
   private ShutdownNotice shutdownRequested = null;
+  private volatile long lastPollMillis = System.currentTimeMillis();
+  private volatile boolean polled = false;
 
   // FIXME this should be a circular buffer of some large maximum size to prevent OOMEs
   private final List<Object> cachedChunks = Collections.synchronizedList(new LinkedList<>());
   private final DumboSession session;
+  private final ServerStats stats;
+  private final String pageId;
+  private final ConsoleBus bus;
+  private final ConsoleChunkFilter chunkFilter;
+  private final DumboMessageBus.Subscription subscription;
+  private long nextSeq = 0;
+
+  // messages to other nodes, queued while holding the consoleService lock, published without it
+  private final Queue<Runnable> pendingPublishes = new ArrayDeque<>();
+  private boolean publishing = false;
 
   // private final Thread CHECK_UNCLEAN_SHUTDOWN = new Thread() {
   // @Override
@@ -84,7 +100,26 @@ final class ConsoleImpl implements Console {
   private final ConsoleService consoleService = new ConsoleService() {
     @Override
     public Object requestNextChunk() {
-      return requestNextChunk(MAX_WAIT_NEXT_CHUNK_MILLIS);
+      ConsoleDeliveryEvent event = new ConsoleDeliveryEvent();
+      event.begin();
+      int queueDepth = cachedChunks.size();
+
+      Object chunk;
+      try {
+        chunk = requestNextChunk(MAX_WAIT_NEXT_CHUNK_MILLIS);
+      } finally {
+        lastPollMillis = System.currentTimeMillis();
+        polled = true;
+        publishPending();
+      }
+
+      event.end();
+      if (event.shouldCommit()) {
+        event.queueDepth = queueDepth;
+        event.batchSize = batchSize(chunk);
+        event.commit();
+      }
+      return chunk;
     }
 
     private Object requestNextChunk(final long maxWait) {
@@ -102,21 +137,31 @@ final class ConsoleImpl implements Console {
             case 0:
               Object chunk = ConsoleImpl.this.getChunkFromBuffer();
               if ("".equals(chunk) && maxWait > 0) {
+                if (stats != null) {
+                  stats.longPollParked();
+                }
                 try {
                   consoleService.wait(maxWait);
                   chunk = requestNextChunk(0);
                 } catch (InterruptedException ignore) {
                   // ignore
+                } finally {
+                  if (stats != null) {
+                    stats.longPollUnparked();
+                  }
                 }
               }
               return chunk;
             case 1:
-              return cachedChunks.remove(0);
+              return delivered(cachedChunks.remove(0));
             default:
               List<Object> head = cachedChunks.subList(0, Math.min(MAX_CHUNKS_AT_ONCE, cachedChunks
                   .size()));
               Object[] chunks = head.toArray();
               head.clear();
+              for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = delivered(chunks[i]);
+              }
               return new MultipleChunks(chunks);
           }
         } finally {
@@ -132,10 +177,184 @@ final class ConsoleImpl implements Console {
    * Creates a new {@link ConsoleImpl}.
    */
   ConsoleImpl(DumboSession session) {
+    this(session, null);
+  }
+
+  /**
+   * Creates a new {@link ConsoleImpl}, reporting parked long-polls to the given statistics.
+   */
+  ConsoleImpl(DumboSession session, ServerStats stats) {
+    this(session, null, stats, null, ConsoleChunkFilter.DEFAULT);
+  }
+
+  /**
+   * Creates a new {@link ConsoleImpl}, reporting parked long-polls to the given statistics, and
+   * exchanging chunks accepted by the given filter with the consoles of the same page on other
+   * nodes via the given bus.
+   */
+  ConsoleImpl(DumboSession session, String pageId, ServerStats stats, ConsoleBus bus,
+      ConsoleChunkFilter chunkFilter) {
     this.session = session;
+    this.stats = stats;
+    this.pageId = pageId;
+    this.bus = pageId == null ? null : bus;
+    this.chunkFilter = chunkFilter;
     // app.registerCloseable(this);
 
     // Runtime.getRuntime().addShutdownHook(CHECK_UNCLEAN_SHUTDOWN);
+
+    this.subscription = this.bus == null ? null : this.bus.subscribe(pageId, this, chunkFilter);
+  }
+
+  /**
+   * A chunk that is also queued on other nodes, tagged with the ID of the node that queued it
+   * first, and a sequence number.
+   */
+  private static final class SharedChunk {
+    private final String origin;
+    private final long seq;
+    private final Object chunk;
+
+    SharedChunk(String origin, long seq, Object chunk) {
+      this.origin = origin;
+      this.seq = seq;
+      this.chunk = chunk;
+    }
+
+    boolean is(String otherOrigin, long otherSeq) {
+      return seq == otherSeq && origin.equals(otherOrigin);
+    }
+  }
+
+  /**
+   * Queues a chunk; must be called while holding the {@code consoleService} lock, followed by
+   * {@link #publishPending()} after releasing it.
+   */
+  private void enqueue(Object chunk) {
+    if (bus != null && chunkFilter.accepts(chunk)) {
+      SharedChunk sc = new SharedChunk(bus.getNodeId(), nextSeq++, chunk);
+      cachedChunks.add(sc);
+      pendingPublishes.add(() -> bus.publishChunk(pageId, sc.seq, sc.chunk));
+    } else {
+      cachedChunks.add(chunk);
+    }
+  }
+
+  private Object delivered(Object obj) {
+    if (obj instanceof SharedChunk) {
+      SharedChunk sc = (SharedChunk) obj;
+      pendingPublishes.add(() -> bus.publishDelivered(pageId, sc.origin, sc.seq));
+      return sc.chunk;
+    } else {
+      return obj;
+    }
+  }
+
+  /**
+   * Publishes the messages queued by {@link #enqueue(Object)} and {@link #delivered(Object)}, in
+   * order, but without holding the {@code consoleService} lock, so neither producers nor
+   * long-polls are held up by serialization and the message bus. If another thread is already
+   * publishing, it takes care of the queued messages instead.
+   */
+  private void publishPending() {
+    if (bus == null) {
+      return;
+    }
+    synchronized (consoleService) {
+      if (publishing) {
+        return;
+      }
+      publishing = true;
+    }
+    Runnable publish = null;
+    try {
+      while (true) {
+        synchronized (consoleService) {
+          publish = pendingPublishes.poll();
+          if (publish == null) {
+            publishing = false;
+            return;
+          }
+        }
+        publish.run();
+      }
+    } finally {
+      if (publish != null) {
+        // publishing failed unexpectedly
+        synchronized (consoleService) {
+          publishing = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Called when a chunk was queued by the console of the same page on another node.
+   *
+   * @param origin The ID of the other node.
+   * @param seq The chunk's sequence number.
+   * @param chunk The chunk.
+   */
+  void onRemoteChunk(String origin, long seq, Object chunk) {
+    synchronized (consoleService) {
+      if (closed.get()) {
+        return;
+      }
+      cachedChunks.add(new SharedChunk(origin, seq, chunk));
+      consoleService.notifyAll();
+    }
+  }
+
+  /**
+   * Called when a chunk has been delivered to the browser (by any node).
+   *
+   * @param origin The ID of the node that queued the chunk.
+   * @param seq The chunk's sequence number.
+   */
+  void onRemoteDelivered(String origin, long seq) {
+    synchronized (consoleService) {
+      cachedChunks.removeIf((c) -> c instanceof SharedChunk && ((SharedChunk) c).is(origin, seq));
+    }
+  }
+
+  private static int batchSize(Object chunk) {
+    if (chunk == null || "".equals(chunk)) {
+      return 0;
+    } else if (chunk instanceof MultipleChunks) {
+      return ((MultipleChunks) chunk).getChunks().length;
+    } else {
+      return 1;
+    }
+  }
+
+  /**
+   * Returns the number of chunks currently queued for delivery.
+   *
+   * @return The queue depth.
+   */
+  int getQueueDepth() {
+    synchronized (consoleService) {
+      return cachedChunks.size() + (sw.getBuffer().length() == 0 ? 0 : 1);
+    }
+  }
+
+  /**
+   * Returns the time the last long-poll for this console returned.
+   *
+   * @return The time, in milliseconds since the epoch.
+   */
+  long getLastPollMillis() {
+    return lastPollMillis;
+  }
+
+  /**
+   * Checks whether this console has been polled at least once. Pages without console support never
+   * poll.
+   *
+   * @return {@code true} if polled.
+   */
+  boolean hasPolled() {
+    return polled;
   }
 
   ConsoleService getConsoleService() {
@@ -171,7 +390,7 @@ final class ConsoleImpl implements Console {
   private void addChunkFromBufferToCache() {
     Object obj = getChunkFromBuffer();
     if (obj != null && !"".equals(obj)) {
-      cachedChunks.add(obj);
+      enqueue(obj);
     }
   }
 
@@ -193,6 +412,7 @@ final class ConsoleImpl implements Console {
       markedDontFlush = true;
       consoleService.notifyAll();
     }
+    publishPending();
   }
 
   /**
@@ -214,6 +434,7 @@ final class ConsoleImpl implements Console {
       addChunkFromBufferToCache();
       consoleService.notifyAll();
     }
+    publishPending();
   }
 
   /**
@@ -229,12 +450,13 @@ final class ConsoleImpl implements Console {
       }
       addChunkFromBufferToCache();
       if (o.length == 1) {
-        cachedChunks.add(o[0]);
+        enqueue(o[0]);
       } else {
-        cachedChunks.add(new MultipleChunks(o));
+        enqueue(new MultipleChunks(o));
       }
       consoleService.notifyAll();
     }
+    publishPending();
   }
 
   /**
@@ -303,8 +525,12 @@ final class ConsoleImpl implements Console {
         return;
       }
     }
+    if (subscription != null) {
+      subscription.cancel();
+    }
     consoleOut.close();
     sw.getBuffer().setLength(0);
+    cachedChunks.clear();
   }
 
   /**
@@ -23,7 +23,6 @@ import java.io.Writer;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -54,6 +53,7 @@ public class DumboContentBuilderImpl implements DumboContentBuilder {
   private boolean createCNAMEFile;
   private Path jspSourceOutputPath;
   private Path jspClassOutputPath;
+  private boolean packedArchive;
 
   public DumboContentBuilderImpl() {
   }
@@ -70,6 +70,7 @@ public class DumboContentBuilderImpl implements DumboContentBuilder {
       workDirs.add(jspWorkDir);
     }
 
+    FileEmitter emitter = new FileEmitter();
     for (File jspWorkDir : workDirs) {
       Path jspWorkDirPath = jspWorkDir.toPath();
 
@@ -85,10 +86,11 @@ public class DumboContentBuilderImpl implements DumboContentBuilder {
           Files.createDirectories(targetPath);
         } else {
           LOG.info("Copying JSP {} file: {}", fileSuffix, relPath);
-          Files.copy(p, targetPath, StandardCopyOption.REPLACE_EXISTING);
+          emitter.add(p, targetPath);
         }
       }
     }
+    emitter.emit();
 
   }
 
@@ -127,12 +129,20 @@ public class DumboContentBuilderImpl implements DumboContentBuilder {
     Files.createDirectories(staticOutput);
     Files.createDirectories(dynamicOutput);
 
+    // an archive left behind by a previous build would shadow the regenerated content
+    Path archive = outputPath.resolve(PackedContent.ARCHIVE_FILENAME);
+    Files.deleteIfExists(archive);
+
     try {
       server.generateFiles(staticOutput, dynamicOutput, sourceMaps);
     } catch (InterruptedException e) {
       throw new IOException(e);
     }
 
+    if (packedArchive) {
+      PackedContent.write(staticOutput, archive);
+    }
+
     if (createCNAMEFile) {
       if (primaryHostname == null || primaryHostname.isEmpty()) {
         throw new IllegalArgumentException("Primary hostname not set (required for CNAME file)");
@@ -214,4 +224,10 @@ public class DumboContentBuilderImpl implements DumboContentBuilder {
     this.jspClassOutputPath = outputPath;
     return this;
   }
+
+  @Override
+  public DumboContentBuilder withPackedArchive(boolean enabled) {
+    this.packedArchive = enabled;
+    return this;
+  }
 }
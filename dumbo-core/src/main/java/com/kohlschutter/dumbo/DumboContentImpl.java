@@ -16,6 +16,7 @@
  */
 package com.kohlschutter.dumbo;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import com.kohlschutter.dumbo.api.DumboContent;
@@ -51,4 +52,10 @@ final class DumboContentImpl implements DumboContent {
   public Path getDynamicPath() {
     return dynamicPath;
   }
+
+  @Override
+  public Path getPackedArchivePath() {
+    Path p = basePath.resolve(PackedContent.ARCHIVE_FILENAME);
+    return Files.isRegularFile(p) ? p : null;
+  }
 }
@@ -19,6 +19,7 @@ package com.kohlschutter.dumbo;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -28,6 +29,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
@@ -37,7 +39,6 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.ProviderMismatchException;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -54,6 +55,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -63,6 +65,7 @@ import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.eclipse.jetty.client.HttpClient;
@@ -72,6 +75,7 @@ import org.eclipse.jetty.client.transport.HttpClientTransportDynamic;
 import org.eclipse.jetty.ee10.apache.jsp.JettyJasperInitializer;
 import org.eclipse.jetty.ee10.servlet.DefaultServlet;
 import org.eclipse.jetty.ee10.servlet.FilterHolder;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
 import org.eclipse.jetty.ee10.webapp.WebAppContext;
@@ -79,6 +83,7 @@ import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.io.ClientConnector;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.RequestLog;
@@ -86,6 +91,7 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.ErrorHandler;
 import org.eclipse.jetty.util.resource.CombinedResource;
@@ -109,7 +115,11 @@ import com.kohlschutter.dumbo.annotations.ServletContextAttributes;
 import com.kohlschutter.dumbo.annotations.ServletInitParameter;
 import com.kohlschutter.dumbo.annotations.ServletMapping;
 import com.kohlschutter.dumbo.annotations.Servlets;
+import com.kohlschutter.dumbo.api.DumboMessageBus;
 import com.kohlschutter.dumbo.api.DumboServer;
+import com.kohlschutter.dumbo.api.DumboServerStats;
+import com.kohlschutter.dumbo.api.DumboStartupPhase;
+import com.kohlschutter.dumbo.api.DumboStateStore;
 import com.kohlschutter.dumbo.api.DumboTLSConfig;
 import com.kohlschutter.dumbo.util.DevTools;
 import com.kohlschutter.dumbo.util.NativeImageUtil;
@@ -125,6 +135,9 @@ import jakarta.servlet.ServletContext;
 import jakarta.servlet.SessionCookieConfig;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionIdListener;
+import jakarta.servlet.http.HttpSessionListener;
 
 /**
  * A simple HTTP Server to run demos locally from within the IDE, with JSON-RPC support.
@@ -137,6 +150,37 @@ public class DumboServerImpl implements DumboServer {
   private static final boolean TERMINATE_VM = Boolean.parseBoolean(System.getProperty(
       "dumbo.terminate-vm", "false"));
 
+  /**
+   * Limits for the in-memory resource cache of the default servlet (in bytes/number of files).
+   * Caching is disabled unless {@code dumbo.resource-cache.max-size} is set to a positive value.
+   *
+   * The limits apply to each context separately (every app and every extension with web resources
+   * has its own), so the cache may take up to {@code max-size} times the number of contexts.
+   */
+  private static final int RESOURCE_CACHE_MAX_SIZE = Integer.getInteger(
+      "dumbo.resource-cache.max-size", 0);
+  private static final int RESOURCE_CACHE_MAX_FILE_SIZE = Integer.getInteger(
+      "dumbo.resource-cache.max-file-size", 2 * 1024 * 1024);
+  private static final int RESOURCE_CACHE_MAX_FILES = Integer.getInteger(
+      "dumbo.resource-cache.max-files", 1024);
+  private static final long RESOURCE_CACHE_VALIDATION_MILLIS = Long.getLong(
+      "dumbo.resource-cache.validation-millis", 1000);
+
+  /**
+   * Extensions without JSPs, servlets and filters are served by a plain
+   * {@link ServletContextHandler} with just the default servlet (and its caching filters) instead
+   * of a full {@link WebAppContext}. Set {@code dumbo.static-contexts=false} to disable.
+   */
+  private static final boolean STATIC_CONTEXTS = Boolean.parseBoolean(System.getProperty(
+      "dumbo.static-contexts", "true"));
+
+  /**
+   * If enabled via {@code dumbo.lazy-contexts=true}, extension and source map contexts are only
+   * created upon the first request to their paths.
+   */
+  private static final boolean LAZY_CONTEXTS = Boolean.parseBoolean(System.getProperty(
+      "dumbo.lazy-contexts", "false"));
+
   private static final Logger LOG = LoggerFactory.getLogger(DumboServerImpl.class);
   private static final String JSON_PATH = "/json";
   private static final Consumer<JsonRpcContext> DEFAULT_JSONRPC_SECRET_CONSUMER = (x) -> {
@@ -150,6 +194,7 @@ public class DumboServerImpl implements DumboServer {
 
   private final Map<String, ServerApp> apps;
   private final ContextHandlerCollection contextHandlers;
+  private final LazyContextsHandler lazyContexts;
 
   private final ErrorHandler errorHandler;
 
@@ -164,8 +209,13 @@ public class DumboServerImpl implements DumboServer {
 
   private AFUNIXSocketAddress serverUNIXSocketAddress = null;
 
-  @SuppressWarnings("PMD.LooseCoupling")
-  private final LinkedHashMap<WebAppContext, ContextMetadata> contexts = new LinkedHashMap<>();
+  /**
+   * All registered contexts, in registration order.
+   *
+   * Copy-on-write, since contexts created on demand (see {@link LazyContextsHandler}) replace their
+   * placeholders while requests are being served.
+   */
+  private volatile Map<ContextHandler, ContextMetadata> contexts = Collections.emptyMap();
 
   private final Set<String> scannedFiles = new HashSet<>();
 
@@ -180,6 +230,21 @@ public class DumboServerImpl implements DumboServer {
 
   private final Map<String, Consumer<JsonRpcContext>> jsonRpcSecrets = new HashMap<>();
 
+  /**
+   * The content hashes generated for content-addressed resources (see
+   * {@link ImmutableCacheFilter}).
+   *
+   * key: absolute URL path<br>
+   * value: content hash, as sent in the {@code v} query parameter
+   */
+  private final Map<String, String> contentHashes = new ConcurrentHashMap<>();
+
+  /**
+   * The absolute URL paths of the resource bundles created by this server (see
+   * {@link ImmutableCacheFilter}).
+   */
+  private final Set<String> bundlePaths = ConcurrentHashMap.newKeySet();
+
   private final boolean prewarm;
 
   private final Lazy<String> networkHostname = Lazy.of(() -> NetworkHostnameUtil
@@ -189,17 +254,33 @@ public class DumboServerImpl implements DumboServer {
 
   private final DumboTLSConfig tlsConfig;
 
+  private final PackedContent packedContent;
+  private final Path precompiledJspPath;
+  private final StartupTimeline timeline;
+  private final ServerStats stats = new ServerStats();
+  private final PageReaper reaper;
+  private final AdmissionControl admissionControl = new AdmissionControl(stats);
+  private final DumboStateStore stateStore;
+  private final DumboMessageBus messageBus;
+  private final ConsoleBus consoleBus;
+  private final SessionCleanupListener sessionCleanupListener = new SessionCleanupListener();
+
   @SuppressWarnings("PMD.ConstructorCallsOverridableMethod")
   @SuppressFBWarnings({"CT_CONSTRUCTOR_THROW"})
   DumboServerImpl(boolean prewarm, InetAddress bindAddr, int tcpPort, String socketPath,
       DumboTLSConfig tlsConfig, Collection<ServerApp> apps, RequestLog requestLog, Path[] paths,
-      String[] urlPaths) throws IOException {
+      String[] urlPaths, Path packedContentPath, Path precompiledJspPath, String statsPath,
+      DumboStateStore stateStore, DumboMessageBus messageBus, StartupTimeline timeline)
+      throws IOException {
     this.apps = new LinkedHashMap<>();
     for (ServerApp app : apps) {
       this.apps.put(app.getPrefix(), app);
     }
     this.prewarm = prewarm;
     this.tlsConfig = tlsConfig;
+    this.stateStore = stateStore == null ? new HeapStateStore() : stateStore;
+    this.messageBus = messageBus;
+    this.consoleBus = messageBus == null ? null : new ConsoleBus(messageBus);
     final int port = tcpPort == 0 ? Integer.parseInt(System.getProperty("dumbo.port", "8081"))
         : tcpPort;
 
@@ -207,8 +288,24 @@ public class DumboServerImpl implements DumboServer {
     this.prewarmUrlPaths = urlPaths != null && urlPaths.length > 0 ? urlPaths : null;
 
     this.errorHandler = new ErrorHandler();
+    this.precompiledJspPath = precompiledJspPath;
+    this.timeline = timeline == null ? new StartupTimeline() : timeline;
+
+    if (packedContentPath == null) {
+      this.packedContent = null;
+    } else {
+      MimeTypes.Mutable mt = new MimeTypes.Mutable();
+      addMimeMappings(mt);
+      this.packedContent = PackedContent.open(packedContentPath, mt::getMimeByExtension);
+    }
 
     this.server = new Server(new QueuedThreadPool());
+    if (this.stateStore.isPersistent()) {
+      // keep session IDs across restarts, so pages can be restored
+      server.addBean(new PersistentSessionIdManager(server, this.stateStore), true);
+    }
+    this.reaper = new PageReaper(server.getScheduler(), stats);
+    server.addBean(reaper);
 
     if (requestLog != null) {
       server.setRequestLog(requestLog);
@@ -225,6 +322,7 @@ public class DumboServerImpl implements DumboServer {
     // server.setDumpAfterStart(true); // for debugging
 
     contextHandlers = new ContextHandlerCollection();
+    lazyContexts = LAZY_CONTEXTS ? new LazyContextsHandler(contextHandlers) : null;
 
     for (ServerApp app : apps) {
       String path = app.getPrefix();
@@ -236,15 +334,20 @@ public class DumboServerImpl implements DumboServer {
         }
       });
 
-      app.init(this, path);
+      try (StartupTimeline.Phase p = this.timeline.begin("initApp", path, null)) {
+        app.init(this, path);
+      }
 
       URL webappBaseURL = app.getWebappBaseURL();
 
       WebAppContext wac;
-      if (webappBaseURL != null) {
-        wac = initMainWebAppContext(app, webappBaseURL);
-      } else {
-        wac = initMainWebAppContextPreprocessed(app, paths);
+      try (StartupTimeline.Phase p = this.timeline.begin("registerContext", app.getContextPath(),
+          null)) {
+        if (webappBaseURL != null) {
+          wac = initMainWebAppContext(app, webappBaseURL);
+        } else {
+          wac = initMainWebAppContextPreprocessed(app, paths);
+        }
       }
 
       app.setServer(this);
@@ -252,16 +355,31 @@ public class DumboServerImpl implements DumboServer {
       ServletHolder sh = new ServletHolder(app.getJsonRpc());
       sh.setInitOrder(0); // initialize right upon start
       wac.addServlet(sh, JSON_PATH);
+      wac.addEventListener(stats.getSessionListener());
+      wac.addEventListener(sessionCleanupListener);
 
       wac.setServer(server);
 
-      app.initComponents(this);
+      try (StartupTimeline.Phase p = this.timeline.begin("initComponents", app.getContextPath(),
+          null)) {
+        app.initComponents(this);
+      }
 
     }
 
-    initSourceMapsWebAppContext();
+    try (StartupTimeline.Phase p = this.timeline.begin("registerContext", "/sourcemaps", null)) {
+      initSourceMapsWebAppContext();
+    }
 
-    server.setHandler(contextHandlers);
+    Handler handler = lazyContexts == null ? contextHandlers : lazyContexts;
+    if (packedContent != null) {
+      handler = new PackedContentHandler(this, packedContent, this.apps.values().stream().map(
+          ServerApp::getContextPath).collect(Collectors.toList()), handler);
+    }
+    if (statsPath != null && !statsPath.isEmpty()) {
+      handler = new ServerStatsHandler(statsPath, this, handler);
+    }
+    server.setHandler(handler);
     server.setConnectors(initConnectors(bindAddr, port, socketPath, tlsConfig, server));
 
     updateUris();
@@ -286,10 +404,20 @@ public class DumboServerImpl implements DumboServer {
   }
 
   private void initSourceMapsWebAppContext() throws MalformedURLException, IOException {
+    if (lazyContexts != null) {
+      lazyContexts.addPending("/sourcemaps", this::newSourceMapsWebAppContext);
+      return;
+    }
+    WebAppContext wac = newSourceMapsWebAppContext();
+    if (wac != null) {
+      registerContext(wac, URI.create("/sourcemaps/"));
+    }
+  }
+
+  private WebAppContext newSourceMapsWebAppContext() throws MalformedURLException, IOException {
     Set<Resource> resources = new LinkedHashSet<>();
-    for (Map.Entry<WebAppContext, ContextMetadata> en : contexts.entrySet()) {
-      WebAppContext wac = en.getKey();
-      Resource r = wac.getResource("/sourcemaps/");
+    for (Map.Entry<ContextHandler, ContextMetadata> en : contexts.entrySet()) {
+      Resource r = getResource(en.getKey(), "/sourcemaps/");
 
       flattenCombinedResource(r, resources::add, Resource::isDirectory);
     }
@@ -297,7 +425,7 @@ public class DumboServerImpl implements DumboServer {
     Resource res;
     res = ResourceFactory.combine(resources.toArray(new Resource[0]));
     if (res == null) {
-      return;
+      return null;
     }
     try {
       res = ResourceFactory.combine(res, new URLResourceFactory().newResource(DumboServerImpl.class
@@ -309,10 +437,10 @@ public class DumboServerImpl implements DumboServer {
     final WebAppContext wac = new WebAppContext(res, "/sourcemaps/");
     wac.setServer(server);
     wac.setBaseResource(res);
-    registerContext(wac, URI.create("/sourcemaps/"));
 
     initWebAppContextCommonMainApp(wac, null);
     initDefaultServlet(wac.getServletHandler());
+    return wac;
   }
 
   private void updateUris() {
@@ -534,7 +662,9 @@ public class DumboServerImpl implements DumboServer {
   private void scanWebApp(String context, Resource dir, Predicate<String> filteredPathsPredicate)
       throws IOException {
     LOG.debug("Scanning contents of context {} from {}", context, dir);
-    scanWebApp(context, dir, filteredPathsPredicate, null);
+    try (StartupTimeline.Phase p = timeline.begin("scanWebApp", context, dir.toString())) {
+      scanWebApp(context, dir, filteredPathsPredicate, null);
+    }
   }
 
   @SuppressWarnings({"PMD.CognitiveComplexity", "PMD.NPathComplexity", "PMD.NcssCount"})
@@ -678,8 +808,16 @@ public class DumboServerImpl implements DumboServer {
    * @return The context.
    * @throws IOException on error.
    */
+  public ContextHandler registerContext(ComponentImpl comp, ServerApp app,
+      final String contextPrefix, final URL pathToWebAppURL) throws IOException {
+    try (StartupTimeline.Phase p = timeline.begin("registerContext", (app.getContextPath()
+        + contextPrefix).replaceAll("//+", "/"), String.valueOf(pathToWebAppURL))) {
+      return registerContext0(comp, app, contextPrefix, pathToWebAppURL);
+    }
+  }
+
   @SuppressFBWarnings("PATH_TRAVERSAL_IN")
-  public WebAppContext registerContext(ComponentImpl comp, ServerApp app,
+  private ContextHandler registerContext0(ComponentImpl comp, ServerApp app,
       final String contextPrefix, final URL pathToWebAppURL) throws IOException {
     URI resourceBaseUri;
     try {
@@ -715,19 +853,139 @@ public class DumboServerImpl implements DumboServer {
       }
     }
 
+    boolean staticOnly = STATIC_CONTEXTS && isStaticOnly(comp, res);
+
+    if (lazyContexts != null) {
+      // Only register a placeholder for resource lookups; the context itself is created upon the
+      // first request to its path
+      ContextHandler placeholder = new ContextHandler(prefix);
+      placeholder.setBaseResource(res);
+      if (cachedPaths == null) {
+        scanWebApp(placeholder.getContextPath(), res, staticOnly ? (p) -> false
+            : constructFilteredPathsPredicate(collectPathFilters(comp)));
+      }
+      ContextMetadata metadata = new ContextMetadata(resourceBaseUri);
+      putContext(placeholder, placeholder, metadata);
+      lazyContexts.addPending(placeholder.getContextPath(), () -> {
+        ContextHandler ch = newExtensionContext(comp, app, prefix, res, staticOnly, false);
+        if (ch instanceof WebAppContext) {
+          initJsonMethodsAttribute((WebAppContext) ch);
+        }
+        return ch;
+      }, (ch) -> putContext(placeholder, ch, metadata));
+      return placeholder;
+    }
+
+    return registerContext(newExtensionContext(comp, app, prefix, res, staticOnly, true),
+        resourceBaseUri);
+  }
+
+  private ContextHandler newExtensionContext(ComponentImpl comp, ServerApp app, String prefix,
+      Resource res, boolean staticOnly, boolean scan) throws IOException {
+    if (staticOnly) {
+      ContextHandler ch = newStaticContext(res, prefix);
+      if (scan && cachedPaths == null) {
+        scanWebApp(ch.getContextPath(), res, (p) -> false);
+      }
+      ch.setServer(server);
+      return ch;
+    }
+
     WebAppContext wac = new WebAppContext(res, prefix);
 
     wac.setBaseResource(res);
     initWebAppContextCommon(wac);
 
     Predicate<String> filteredPathsPredicate = initWebAppContext(app, comp, wac);
-    if (cachedPaths == null) {
+    if (scan && cachedPaths == null) {
       scanWebApp(wac.getContextPath(), res, filteredPathsPredicate);
     }
 
     wac.setServer(server);
+    return wac;
+  }
+
+  /**
+   * Returns the path specs of all servlets and filters mapped for the given component, i.e., the
+   * same set {@link #mapServlets(ServletContext, ComponentImpl, ServletHandler, Set)} and
+   * {@link #mapFilters(ComponentImpl, ServletHandler, Set)} would collect.
+   *
+   * @param comp The component.
+   * @return The path specs.
+   */
+  private static Set<String> collectPathFilters(ComponentImpl comp) {
+    Set<String> pathFilters = new HashSet<>();
+    for (Servlets s : comp.getAnnotatedMappingsFromAllReachableComponents(Servlets.class)) {
+      for (ServletMapping mapping : s.value()) {
+        pathFilters.addAll(Arrays.asList(mapping.map()));
+      }
+    }
+    for (Filters f : comp.getAnnotatedMappingsFromAllReachableComponents(Filters.class)) {
+      for (FilterMapping mapping : f.value()) {
+        pathFilters.addAll(Arrays.asList(mapping.map()));
+      }
+    }
+    return pathFilters;
+  }
+
+  /**
+   * Checks if the given component's context only serves static files, i.e., if it neither declares
+   * servlets, filters or servlet context attributes (other than the defaults from
+   * {@link BaseSupport}) nor contains JSP files.
+   *
+   * @param comp The component.
+   * @param res The context's base resource.
+   * @return {@code true} if static-only.
+   */
+  private static boolean isStaticOnly(ComponentImpl comp, Resource res) {
+    for (Class<?> c : comp.getReachableComponents()) {
+      if (BaseSupport.class.equals(c)) {
+        continue;
+      }
+      if (c.isAnnotationPresent(Servlets.class) || c.isAnnotationPresent(Filters.class) || c
+          .isAnnotationPresent(ServletContextAttributes.class)) {
+        return false;
+      }
+    }
+    return !containsJspFiles(res);
+  }
+
+  private static boolean containsJspFiles(Resource dir) {
+    if (dir == null) {
+      return false;
+    }
+    for (Resource r : dir.list()) {
+      if (r.isDirectory()) {
+        if (containsJspFiles(r)) {
+          return true;
+        }
+        continue;
+      }
+      String name = r.getFileName();
+      if (name != null && (name.endsWith(".jsp") || name.endsWith(".jsp.js") || name.endsWith(
+          ".js.jsp"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ContextHandler newStaticContext(Resource res, String contextPath) {
+    ServletContextHandler sch = new ServletContextHandler(contextPath,
+        ServletContextHandler.NO_SESSIONS);
+    sch.setBaseResource(res);
+    sch.setWelcomeFiles(new String[] {"index.html"});
+    sch.setErrorHandler(errorHandler);
+    addMimeMappings(sch.getMimeTypes());
+
+    sch.setAttribute(DumboServerImpl.class.getName(), this);
 
-    return registerContext(wac, resourceBaseUri);
+    // same default servlet, resource cache and cache-control headers as in a full WebAppContext
+    ServletHandler sh = sch.getServletHandler();
+    initDefaultServlet(sh);
+    sh.addFilterWithMapping(new FilterHolder(new JsFilter()), "*.js", EnumSet.of(
+        DispatcherType.REQUEST));
+    return sch;
   }
 
   private Predicate<String> initWebAppContext(ServerApp app, ComponentImpl comp, WebAppContext wac)
@@ -735,12 +993,7 @@ public class DumboServerImpl implements DumboServer {
     wac.setDefaultRequestCharacterEncoding("UTF-8");
     wac.setDefaultResponseCharacterEncoding("UTF-8");
 
-    MimeTypes.Mutable mt = wac.getMimeTypes();
-    mt.addMimeMapping("html", MimeTypes.Type.TEXT_HTML_UTF_8.asString());
-    mt.addMimeMapping("js", "text/javascript;charset=utf-8");
-    mt.addMimeMapping("json", MimeTypes.Type.TEXT_JSON_UTF_8.asString());
-    mt.addMimeMapping("txt", MimeTypes.Type.TEXT_PLAIN_UTF_8.asString());
-    mt.addMimeMapping("xml", MimeTypes.Type.TEXT_XML_UTF_8.asString());
+    addMimeMappings(wac.getMimeTypes());
 
     wac.setWelcomeFiles(new String[] {"index.html", "index.html.jsp", "index.md"});
     wac.setErrorHandler(errorHandler);
@@ -762,6 +1015,15 @@ public class DumboServerImpl implements DumboServer {
     return filteredPathsPredicate;
   }
 
+  private static void addMimeMappings(MimeTypes.Mutable mt) {
+    mt.addMimeMapping("html", MimeTypes.Type.TEXT_HTML_UTF_8.asString());
+    mt.addMimeMapping("js", "text/javascript;charset=utf-8");
+    mt.addMimeMapping("json", MimeTypes.Type.TEXT_JSON_UTF_8.asString());
+    mt.addMimeMapping("txt", MimeTypes.Type.TEXT_PLAIN_UTF_8.asString());
+    mt.addMimeMapping("xml", MimeTypes.Type.TEXT_XML_UTF_8.asString());
+    mt.addMimeMapping("wasm", "application/wasm"); // required by WebAssembly.compileStreaming
+  }
+
   private void initDefaultServlet(ServletHandler sh) {
     ServletHolder holderDefaultServlet = sh.addServletWithMapping(DefaultServlet.class.getName(),
         "/");
@@ -770,6 +1032,25 @@ public class DumboServerImpl implements DumboServer {
     // holderDefaultServlet.setInitParameter("dirAllowed", "false");
     holderDefaultServlet.setInitParameter("useFileMappedBuffer", "true");
     holderDefaultServlet.setInitParameter("stylesheet", "/css/jetty-dir.css");
+
+    // content-addressed resources never change; must be mapped before JsFilter
+    for (String mapPath : new String[] {"/" + ResourceBundler.BUNDLE_DIR + "/*", "*.wasm"}) {
+      sh.addFilterWithMapping(new FilterHolder(new ImmutableCacheFilter(this)), mapPath, EnumSet
+          .of(DispatcherType.REQUEST));
+    }
+
+    // Keep frequently served resources (e.g., from jar-packaged extensions) in memory, with
+    // precomputed ETag/Content-Length, instead of looking them up and inflating them per request.
+    if (RESOURCE_CACHE_MAX_SIZE > 0) {
+      holderDefaultServlet.setInitParameter("maxCacheSize", String.valueOf(
+          RESOURCE_CACHE_MAX_SIZE));
+      holderDefaultServlet.setInitParameter("maxCachedFileSize", String.valueOf(
+          RESOURCE_CACHE_MAX_FILE_SIZE));
+      holderDefaultServlet.setInitParameter("maxCachedFiles", String.valueOf(
+          RESOURCE_CACHE_MAX_FILES));
+      holderDefaultServlet.setInitParameter("cacheValidationTime", String.valueOf(
+          RESOURCE_CACHE_VALIDATION_MILLIS));
+    }
   }
 
   @SuppressWarnings({"PMD.NcssCount", "PMD.CognitiveComplexity"})
@@ -942,12 +1223,58 @@ public class DumboServerImpl implements DumboServer {
     return (ServerApp) sc.getAttribute(ServerApp.class.getName());
   }
 
-  WebAppContext registerContext(WebAppContext wac, URI webappBaseURI) {
+  <C extends ContextHandler> C registerContext(C ch, URI webappBaseURI) {
     if (webappBaseURI != null) {
-      contexts.put(wac, new ContextMetadata(webappBaseURI));
+      putContext(ch, ch, new ContextMetadata(webappBaseURI));
     }
-    contextHandlers.addHandler(wac);
-    return wac;
+    contextHandlers.addHandler(ch);
+    return ch;
+  }
+
+  /**
+   * Registers a context, or replaces a previously registered one at the same position.
+   *
+   * @param existing The context to replace (or the new context itself).
+   * @param ch The new context.
+   * @param metadata The metadata.
+   */
+  private synchronized void putContext(ContextHandler existing, ContextHandler ch,
+      ContextMetadata metadata) {
+    Map<ContextHandler, ContextMetadata> map = new LinkedHashMap<>();
+    boolean replaced = false;
+    for (Map.Entry<ContextHandler, ContextMetadata> en : contexts.entrySet()) {
+      if (en.getKey() == existing) {
+        map.put(ch, metadata);
+        replaced = true;
+      } else {
+        map.put(en.getKey(), en.getValue());
+      }
+    }
+    if (!replaced) {
+      map.put(ch, metadata);
+    }
+    contexts = Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * Resolves a resource relative to the given context.
+   *
+   * @param ch The context.
+   * @param pathInContext The path relative to the context, starting with {@code /}.
+   * @return The resource, or {@code null} if it does not exist.
+   * @throws MalformedURLException on error.
+   */
+  private static Resource getResource(ContextHandler ch, String pathInContext)
+      throws MalformedURLException {
+    if (ch instanceof WebAppContext) {
+      return ((WebAppContext) ch).getResource(pathInContext);
+    }
+    Resource base = ch.getBaseResource();
+    if (base == null) {
+      return null;
+    }
+    Resource r = base.resolve(pathInContext);
+    return r == null || !r.exists() ? null : r;
   }
 
   private HttpClient newServerHttpClient() {
@@ -960,6 +1287,20 @@ public class DumboServerImpl implements DumboServer {
     return new HttpClient(new HttpClientTransportDynamic(clientConnector));
   }
 
+  private static void initJsonMethodsAttribute(WebAppContext wac) {
+    ServletContext sc = wac.getServletContext();
+    if (sc != null) {
+      ServerApp app = (ServerApp) sc.getAttribute(ServerApp.class.getName());
+      if (app != null) {
+        JSONRPCBridge bridge = app.getJsonRpc().getBridge();
+        if (bridge != null) {
+          JSONArray jsonMethods = bridge.getSystemMethods();
+          wac.setAttribute("dumborb.json.methods", jsonMethods.toString());
+        }
+      }
+    }
+  }
+
   @SuppressWarnings("PMD.CognitiveComplexity")
   private CompletableFuture<Void> regeneratePaths() throws Exception {
     if (urlPathsToRegenerate.isEmpty()) {
@@ -967,21 +1308,14 @@ public class DumboServerImpl implements DumboServer {
     }
 
     return CompletableFuture.runAsync(() -> {
-      try {
+      try (StartupTimeline.Phase phase = timeline.begin("regeneratePaths", null, null)) {
         URI serverURI = getLocalURI();
 
-        for (WebAppContext wac : contexts.keySet()) {
-          ServletContext sc = wac.getServletContext();
-          if (sc != null) {
-            ServerApp app = (ServerApp) sc.getAttribute(ServerApp.class.getName());
-            if (app != null) {
-              JSONRPCBridge bridge = app.getJsonRpc().getBridge();
-              if (bridge != null) {
-                JSONArray jsonMethods = bridge.getSystemMethods();
-                wac.setAttribute("dumborb.json.methods", jsonMethods.toString());
-              }
-            }
+        for (ContextHandler ch : contexts.keySet()) {
+          if (!(ch instanceof WebAppContext)) {
+            continue;
           }
+          initJsonMethodsAttribute((WebAppContext) ch);
         }
 
         String serverURIBase = new URI(serverURI.getScheme(), serverURI.getUserInfo(), serverURI
@@ -1000,11 +1334,14 @@ public class DumboServerImpl implements DumboServer {
           for (String path : urlPathsToRegenerate.keySet()) {
             LOG.debug("Regenerating {}", path);
             String reloadUri = serverURIBase + path + "?reload=true";
+            StartupTimeline.Phase pathPhase = timeline.begin("regeneratePath", null, path);
+            boolean sent = false;
             try {
               client.newRequest(reloadUri).method(HttpMethod.HEAD).send(new CompleteListener() {
 
                 @Override
                 public void onComplete(Result result) {
+                  pathPhase.close();
                   if (result.isFailed()) {
                     if (LOG.isWarnEnabled()) {
                       LOG.warn("Regeneration failed for path: " + path, result.getFailure());
@@ -1018,8 +1355,15 @@ public class DumboServerImpl implements DumboServer {
                   cdl.countDown();
                 }
               });
+              sent = true;
             } catch (Throwable t) { // NOPMD
               t.printStackTrace();
+            } finally {
+              if (!sent) {
+                // the listener is never called
+                pathPhase.close();
+                cdl.countDown();
+              }
             }
           }
           if (!cdl.await(1, TimeUnit.MINUTES)) {
@@ -1073,8 +1417,8 @@ public class DumboServerImpl implements DumboServer {
     });
   }
 
-  private static void copyFiles(Path sourceDir, Path outputDir, Predicate<Path> filter)
-      throws IOException {
+  private static void copyFiles(Path sourceDir, Path outputDir, Predicate<Path> filter,
+      FileEmitter emitter) throws IOException {
     Files.walkFileTree(sourceDir, new FileVisitor<Path>() {
 
       @Override
@@ -1087,13 +1431,7 @@ public class DumboServerImpl implements DumboServer {
       public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
         Path relativePath = sourceDir.relativize(file);
         if (filter.test(relativePath)) {
-          Path targetPath = outputDir.resolve(relativePath);
-          Path targetParent = targetPath.getParent();
-          if (targetParent != null && !Files.isDirectory(targetParent)) {
-            Files.createDirectories(targetParent);
-          }
-
-          Files.copy(file, targetPath, StandardCopyOption.REPLACE_EXISTING);
+          emitter.add(file, outputDir.resolve(relativePath));
         }
         return FileVisitResult.CONTINUE;
       }
@@ -1112,7 +1450,7 @@ public class DumboServerImpl implements DumboServer {
   }
 
   private void copyResourcesToMappedDir(ServerApp app, Map<String, Supplier<Path>> resources,
-      Path outputBaseDir, boolean sourceMaps) throws IOException {
+      Path outputBaseDir, boolean sourceMaps, FileEmitter emitter) throws IOException {
     String contextPath = app.getContextPath();
 
     for (Map.Entry<String, Supplier<Path>> en : resources.entrySet()) {
@@ -1135,14 +1473,7 @@ public class DumboServerImpl implements DumboServer {
         continue;
       }
 
-      Path outputPath = outputBaseDir.resolve(urlPath);
-
-      Path parentPath = outputPath.getParent();
-      if (parentPath != null) {
-        Files.createDirectories(parentPath);
-      }
-
-      Files.copy(serverPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+      emitter.add(serverPath, outputBaseDir.resolve(urlPath));
 
       if (LOG.isDebugEnabled()) {
         LOG.debug("File for path {} is stored at {}", en.getKey(), en.getValue());
@@ -1188,12 +1519,20 @@ public class DumboServerImpl implements DumboServer {
       deleteExistingFilesBelowDirectory(staticOut);
       deleteExistingFilesBelowDirectory(dynamicOut);
 
+      FileEmitter emitter = new FileEmitter();
+
       Path webappWorkDir = app.getWebappWorkDir().toPath();
-      copyFiles(webappWorkDir, staticOut, (p) -> isStaticFileName(p.getFileName().toString()));
-      copyFiles(webappWorkDir, dynamicOut, (p) -> !isStaticFileName(p.getFileName().toString()));
+      copyFiles(webappWorkDir, staticOut, (p) -> isStaticFileName(p.getFileName().toString()),
+          emitter);
+      copyFiles(webappWorkDir, dynamicOut, (p) -> !isStaticFileName(p.getFileName().toString()),
+          emitter);
 
-      copyResourcesToMappedDir(app, publicUrlPathsToStaticResource, staticOut, sourceMaps);
-      copyResourcesToMappedDir(app, publicUrlPathsToDynamicResource, dynamicOut, sourceMaps);
+      copyResourcesToMappedDir(app, publicUrlPathsToStaticResource, staticOut, sourceMaps,
+          emitter);
+      copyResourcesToMappedDir(app, publicUrlPathsToDynamicResource, dynamicOut, sourceMaps,
+          emitter);
+
+      emitter.emit();
       LOG.info("Generated cached version at (static:) {} and (dynamic:) {}", staticOut, dynamicOut);
     } finally {
       pathsRegenerated.release();
@@ -1220,12 +1559,16 @@ public class DumboServerImpl implements DumboServer {
         try {
           RUNNING_SERVERS.incrementAndGet();
           try {
-            server.start();
+            try (StartupTimeline.Phase p = timeline.begin("jettyStart", null, null)) {
+              server.start();
+            }
 
             updateUris();
 
-            regeneratePaths().thenRun(() -> prewarmContent()).thenAccept((v) -> pathsRegenerated
-                .release());
+            regeneratePaths().thenRun(() -> prewarmContent()).thenAccept((v) -> {
+              timeline.logSummary();
+              pathsRegenerated.release();
+            });
 
             DevTools.init();
 
@@ -1243,6 +1586,8 @@ public class DumboServerImpl implements DumboServer {
           } finally {
             LOG.info("Shutting down ...");
             RUNNING_SERVERS.decrementAndGet();
+            closeStateStore();
+            closeMessageBus();
             onServerStop();
           }
         } catch (Exception e) { // NOPMD.ExceptionAsFlowControl
@@ -1254,7 +1599,6 @@ public class DumboServerImpl implements DumboServer {
     t.start();
   }
 
-  @SuppressWarnings("PMD.NPathComplexity")
   private void prewarmContent() {
     if (!prewarm) {
       LOG.debug("Prewarm disabled");
@@ -1265,6 +1609,13 @@ public class DumboServerImpl implements DumboServer {
       return;
     }
 
+    try (StartupTimeline.Phase p = timeline.begin("prewarmContent", null, null)) {
+      prewarmContent0();
+    }
+  }
+
+  @SuppressWarnings("PMD.NPathComplexity")
+  private void prewarmContent0() {
     HttpClient client = newServerHttpClient();
     try {
       client.start();
@@ -1324,11 +1675,13 @@ public class DumboServerImpl implements DumboServer {
   private void prewarmRelativeUrl(String relativeUrl, HttpClient client, URI baseURI,
       CountDownLatch cdl) {
     LOG.debug("Request prewarm: {}", relativeUrl);
+    StartupTimeline.Phase phase = timeline.begin("prewarmPath", null, relativeUrl);
     client.newRequest(baseURI.resolve(relativeUrl)).method(HttpMethod.GET).send(
         new CompleteListener() {
 
           @Override
           public void onComplete(Result result) {
+            phase.close();
             if (result.isSucceeded()) {
               LOG.debug("Prewarm OK: {}", relativeUrl);
             } else {
@@ -1593,7 +1946,10 @@ public class DumboServerImpl implements DumboServer {
   }
 
   void onSessionShutdown(String sessionId, WeakReference<HttpSession> weakSession) {
-    // FIXME: implement server shutdown check
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("No pages left in session " + sessionId);
+    }
+    reaper.onSessionEmpty(weakSession);
   }
 
   public static boolean checkResourceExists(ServletContext context, String pathInContext) {
@@ -1608,6 +1964,9 @@ public class DumboServerImpl implements DumboServer {
   public boolean checkResourceExists(String path) {
     if (cachedPaths != null) {
       String relativePath = path.replaceFirst("^/+", "");
+      if (packedContent != null && packedContent.contains(relativePath)) {
+        return true;
+      }
       for (Path p : cachedPaths) {
         if (Files.exists(p.resolve(relativePath))) {
           return true;
@@ -1616,8 +1975,8 @@ public class DumboServerImpl implements DumboServer {
       return false;
     }
 
-    for (WebAppContext wac : contexts.keySet()) {
-      String cp = wac.getContextPath();
+    for (ContextHandler ch : contexts.keySet()) {
+      String cp = ch.getContextPath();
       if (!path.startsWith(cp)) {
         continue;
       }
@@ -1630,9 +1989,9 @@ public class DumboServerImpl implements DumboServer {
       }
 
       try {
-        if (wac.getResource(pathInContext) != null) {
+        if (getResource(ch, pathInContext) != null) {
           return true;
-        } else if (wac.getResource(pathInContext + ".jsp") != null) {
+        } else if (getResource(ch, pathInContext + ".jsp") != null) {
           return true;
         } else {
           // if resource is "something.js", also check "something.jsp.js", for example.
@@ -1642,7 +2001,7 @@ public class DumboServerImpl implements DumboServer {
               lastDot + 1) == -1) {
             String path2 = pathInContext.substring(0, lastDot) + ".jsp" + pathInContext.substring(
                 lastDot);
-            if (wac.getResource(path2) != null) {
+            if (getResource(ch, path2) != null) {
               return true;
             }
           }
@@ -1654,6 +2013,101 @@ public class DumboServerImpl implements DumboServer {
     return false;
   }
 
+  /**
+   * Registers the content hash of the resource served at the given absolute URL path, which is
+   * referenced as {@code path?v=hash}. Only such URLs are served as immutable.
+   *
+   * @param path The URL path.
+   * @param hash The content hash.
+   */
+  void registerContentHash(String path, String hash) {
+    contentHashes.put(path, hash);
+  }
+
+  /**
+   * Returns the content hash registered for the given absolute URL path.
+   *
+   * @param path The URL path.
+   * @return The content hash, or {@code null} if none was registered.
+   * @see #registerContentHash(String, String)
+   */
+  String getContentHash(String path) {
+    return contentHashes.get(path);
+  }
+
+  /**
+   * Registers a resource bundle created at the given absolute URL path. Only such bundles are
+   * served as immutable.
+   *
+   * @param path The URL path.
+   */
+  void registerBundle(String path) {
+    bundlePaths.add(path);
+  }
+
+  /**
+   * Checks if a resource bundle was created at the given absolute URL path.
+   *
+   * @param path The URL path.
+   * @return {@code true} if so.
+   * @see #registerBundle(String)
+   */
+  boolean isBundle(String path) {
+    return bundlePaths.contains(path);
+  }
+
+  /**
+   * Reads the contents of the plain file served at the given absolute URL path.
+   *
+   * Unlike {@link #checkResourceExists(String)}, this does not consider resources that are
+   * generated upon request (e.g., {@code .jsp.js} files).
+   *
+   * @param path The URL path.
+   * @return The contents, or {@code null} if there is no such file.
+   * @throws IOException on error.
+   */
+  @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+  byte[] readResource(String path) throws IOException {
+    if (cachedPaths != null) {
+      String relativePath = path.replaceFirst("^/+", "");
+      PackedContent.Entry entry = packedContent == null ? null : packedContent.get(relativePath);
+      if (entry != null) {
+        ByteBuffer buf = entry.getContent();
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+      }
+      for (Path p : cachedPaths) {
+        Path f = p.resolve(relativePath);
+        if (Files.isRegularFile(f)) {
+          return Files.readAllBytes(f);
+        }
+      }
+      return null;
+    }
+
+    List<ContextHandler> candidates = new ArrayList<>();
+    for (ContextHandler ch : contexts.keySet()) {
+      String cp = ch.getContextPath().replaceFirst("/$", "");
+      if (path.startsWith(cp + "/")) {
+        candidates.add(ch);
+      }
+    }
+    // the most specific context wins
+    candidates.sort((a, b) -> b.getContextPath().length() - a.getContextPath().length());
+
+    for (ContextHandler ch : candidates) {
+      String pathInContext = path.substring(ch.getContextPath().replaceFirst("/$", "").length());
+      Resource r = getResource(ch, pathInContext);
+      if (r != null && r.exists() && !r.isDirectory()) {
+        try (InputStream in = r.newInputStream()) {
+          return in.readAllBytes();
+        }
+      }
+    }
+    return null;
+  }
+
   static final class ContextMetadata {
     private final URI webappURI;
 
@@ -1670,6 +2124,36 @@ public class DumboServerImpl implements DumboServer {
     return cachedPaths != null;
   }
 
+  /**
+   * Returns the content paths used in cached mode.
+   *
+   * @return The paths (empty if not in cached mode).
+   */
+  Path[] getCachedPaths() {
+    return cachedPaths == null ? new Path[0] : cachedPaths.clone();
+  }
+
+  /**
+   * Returns the directory of precompiled JSP classes, or {@code null} if JSPs are compiled at
+   * runtime.
+   *
+   * @return The directory, or {@code null}.
+   */
+  Path getPrecompiledJspPath() {
+    return precompiledJspPath;
+  }
+
+  /**
+   * Returns the phases of this server's startup completed so far, in order of completion, as
+   * recorded by the server's {@link StartupTimeline}.
+   *
+   * @return The startup timeline.
+   */
+  @Override
+  public List<DumboStartupPhase> getStartupTimeline() {
+    return timeline.getPhases();
+  }
+
   /**
    * Returns a new JSON-RPC client that is connected to this server's json-rpc service.
    *
@@ -1699,6 +2183,78 @@ public class DumboServerImpl implements DumboServer {
     jsonRpcSecrets.put(secret, contextConsumer);
   }
 
+  @Override
+  public DumboServerStats getStats() {
+    return stats.snapshot(server.getThreadPool());
+  }
+
+  ServerStats getServerStats() {
+    return stats;
+  }
+
+  /**
+   * Returns the underlying Jetty server, e.g., to add a connector for in-process requests in
+   * benchmarks.
+   *
+   * @return The Jetty server.
+   */
+  Server getJettyServer() {
+    return server;
+  }
+
+  AdmissionControl getAdmissionControl() {
+    return admissionControl;
+  }
+
+  DumboStateStore getStateStore() {
+    return stateStore;
+  }
+
+  ConsoleBus getConsoleBus() {
+    return consoleBus;
+  }
+
+  /**
+   * Releases the consoles and state of HTTP sessions when they are destroyed, and keeps the state
+   * store in sync with session ID changes.
+   */
+  private final class SessionCleanupListener implements HttpSessionListener,
+      HttpSessionIdListener {
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+      DumboSessionImpl.closeConsoles(se.getSession());
+
+      // keep persistent state when sessions are destroyed due to the server shutting down
+      if (!stateStore.isPersistent() || !(shutdownRequested.get() || server.isStopping())) {
+        DumboSessionImpl.removeState(stateStore, se.getSession());
+      }
+    }
+
+    @Override
+    public void sessionIdChanged(HttpSessionEvent event, String oldSessionId) {
+      DumboSessionImpl.renameState(stateStore, event.getSession(), oldSessionId);
+    }
+  }
+
+  private void closeStateStore() {
+    try {
+      stateStore.close();
+    } catch (IOException e) {
+      LOG.warn("Cannot close state store", e);
+    }
+  }
+
+  private void closeMessageBus() {
+    if (messageBus == null) {
+      return;
+    }
+    try {
+      messageBus.close();
+    } catch (IOException e) {
+      LOG.warn("Cannot close message bus", e);
+    }
+  }
+
   static DumboServerImpl getInstance(ServletContext context) {
     return (DumboServerImpl) context.getAttribute(DumboServerImpl.class.getName());
   }
@@ -34,8 +34,10 @@ import org.slf4j.LoggerFactory;
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 import com.kohlschutter.dumbo.api.DumboApplication;
 import com.kohlschutter.dumbo.api.DumboContent;
+import com.kohlschutter.dumbo.api.DumboMessageBus;
 import com.kohlschutter.dumbo.api.DumboServer;
 import com.kohlschutter.dumbo.api.DumboServerBuilder;
+import com.kohlschutter.dumbo.api.DumboStateStore;
 import com.kohlschutter.dumbo.api.DumboTLSConfig;
 import com.kohlschutter.dumbo.api.DumboTargetEnvironment;
 
@@ -54,6 +56,14 @@ public class DumboServerImplBuilder implements DumboServerBuilder {
   private final Set<Path> paths = new HashSet<>();
   private final Set<String> prewarmUrlPaths = new HashSet<>();
   private String socketPath = "auto";
+  private Path packedContent;
+  private Path precompiledJsp;
+  private String statsPath;
+  private Path accessLog;
+  private DumboStateStore stateStore;
+  private Path stateStoreDirectory;
+  private DumboMessageBus messageBus;
+  private Path messageBusSocketDirectory;
 
   private InetAddress bindAddress = LOOPBACK;
 
@@ -64,6 +74,7 @@ public class DumboServerImplBuilder implements DumboServerBuilder {
 
   @Override
   public DumboServer build() throws IOException {
+    StartupTimeline timeline = new StartupTimeline();
     Map<String, ServerApp> apps = new LinkedHashMap<>();
 
     if (webappSet) {
@@ -78,14 +89,35 @@ public class DumboServerImplBuilder implements DumboServerBuilder {
         path = "";
       }
 
-      ServerApp app = new ServerApp(prefix + path, en.getValue(), (webappSet ? () -> webapp
-          : null));
+      ServerApp app;
+      try (StartupTimeline.Phase p = timeline.begin("ServerApp", prefix + path, null)) {
+        app = new ServerApp(prefix + path, en.getValue(), (webappSet ? () -> webapp : null));
+      }
 
       apps.put(app.getPrefix(), app);
     }
 
-    return new DumboServerImpl(prewarm, bindAddress, port, socketPath, tls, apps.values(), null,
-        paths.toArray(new Path[0]), prewarmUrlPaths.toArray(new String[0]));
+    // lock the state store directory and bind the socket last, so they are not leaked if anything
+    // above fails
+    DumboStateStore store = stateStoreDirectory == null ? stateStore : new MappedStateStore(
+        stateStoreDirectory);
+    DumboMessageBus bus = null;
+    try {
+      bus = messageBusSocketDirectory == null ? messageBus : new UnixSocketMessageBus(
+          messageBusSocketDirectory);
+      return new DumboServerImpl(prewarm, bindAddress, port, socketPath, tls, apps.values(),
+          accessLog == null ? null : new AsyncAccessLog(accessLog), paths.toArray(new Path[0]),
+          prewarmUrlPaths.toArray(new String[0]), packedContent, precompiledJsp, statsPath,
+          store, bus, timeline);
+    } catch (IOException | RuntimeException e) {
+      if (bus != null && bus != messageBus) { // NOPMD.CompareObjectsWithEquals
+        bus.close();
+      }
+      if (store != null && store != stateStore) { // NOPMD.CompareObjectsWithEquals
+        store.close();
+      }
+      throw e;
+    }
   }
 
   @SuppressFBWarnings("EI_EXPOSE_REP2")
@@ -133,9 +165,65 @@ public class DumboServerImplBuilder implements DumboServerBuilder {
 
   @Override
   public DumboServerBuilder withContent(DumboContent content) {
+    Path archive = content.getPackedArchivePath();
+    if (archive != null) {
+      withPackedContent(archive);
+    }
     return withContent(content.toContentPaths());
   }
 
+  @Override
+  public DumboServerBuilder withPackedContent(Path archive) {
+    this.packedContent = archive;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withPrecompiledJsp(Path classesDir) {
+    this.precompiledJsp = classesDir;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withAccessLog(Path logFile) {
+    this.accessLog = logFile;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withStateStore(DumboStateStore store) {
+    this.stateStore = store;
+    this.stateStoreDirectory = null;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withStateStoreDirectory(Path directory) {
+    this.stateStore = null;
+    this.stateStoreDirectory = directory;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withMessageBus(DumboMessageBus bus) {
+    this.messageBus = bus;
+    this.messageBusSocketDirectory = null;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withMessageBusSocketDirectory(Path directory) {
+    this.messageBus = null;
+    this.messageBusSocketDirectory = directory;
+    return this;
+  }
+
+  @Override
+  public DumboServerBuilder withStatsPath(String path) {
+    this.statsPath = path;
+    return this;
+  }
+
   @Override
   public DumboServerBuilder withPrewarmRelativeURL(String... relativeURL) {
     if (relativeURL != null) {
@@ -208,6 +296,18 @@ public class DumboServerImplBuilder implements DumboServerBuilder {
     EnvHelper.checkEnv("DUMBO_SERVER_SOCKET_PATH", (v) -> {
       withSocketPath(v);
     });
+    EnvHelper.checkEnv("DUMBO_STATS_PATH", (v) -> {
+      withStatsPath(v);
+    });
+    EnvHelper.checkEnv("DUMBO_ACCESS_LOG", (v) -> {
+      withAccessLog(v.isEmpty() ? null : Path.of(v));
+    });
+    EnvHelper.checkEnv("DUMBO_STATE_STORE", (v) -> {
+      withStateStoreDirectory(v.isEmpty() ? null : Path.of(v));
+    });
+    EnvHelper.checkEnv("DUMBO_MESSAGE_BUS_SOCKET_DIR", (v) -> {
+      withMessageBusSocketDirectory(v.isEmpty() ? null : Path.of(v));
+    });
 
     return this;
   }
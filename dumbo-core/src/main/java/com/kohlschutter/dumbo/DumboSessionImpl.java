@@ -18,10 +18,6 @@ package com.kohlschutter.dumbo;
 
 import java.lang.ref.WeakReference;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -32,22 +28,64 @@ import org.eclipse.jdt.annotation.NonNull;
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 import com.kohlschutter.dumbo.api.Console;
 import com.kohlschutter.dumbo.api.DumboSession;
+import com.kohlschutter.dumbo.api.DumboStateStore;
 import com.kohlschutter.dumbo.exceptions.InvalidSessionException;
 
 import jakarta.servlet.http.HttpSession;
 
 public final class DumboSessionImpl extends DumboSession {
   private static final String SESSION_ATTRIBUTE_PAGEIDS = "com.kohlschutter.dumbo.PageIds";
+  private static final String PAGE_ATTRIBUTE_SESSION_ID = "com.kohlschutter.dumbo.SessionId";
+  private static final String SESSION_STATE_ATTRIBUTE_PERSISTENT =
+      "com.kohlschutter.dumbo.Persistent";
+  private static final String SCOPE_PAGE = "page:";
+  private static final String SCOPE_SESSION = "session:";
   private final String pageId;
-  private final Map<String, Object> pageScope = new HashMap<>();
+  private final String pageScope;
+  private final Object pageScopeLock = new Object();
   private final HttpSession context;
-  private final Console console = new ConsoleImpl(this);
+  private final ConsoleImpl console;
+  private final ServerStats stats;
+  private final DumboStateStore store;
   private final AtomicBoolean invalid = new AtomicBoolean(false);
+  private volatile long lastAccessMillis = System.currentTimeMillis();
 
   DumboSessionImpl(String pageId, HttpSession context) {
+    this(pageId, context, statsOf(context));
+  }
+
+  /**
+   * Creates a new {@link DumboSessionImpl}, reporting its removal to the given statistics.
+   *
+   * @param pageId The page ID.
+   * @param context The HTTP session.
+   * @param stats The server statistics, or {@code null}.
+   */
+  DumboSessionImpl(String pageId, HttpSession context, ServerStats stats) {
     super();
     this.pageId = pageId;
+    this.pageScope = pageScope(pageId);
     this.context = context;
+    this.stats = stats;
+
+    DumboServerImpl server = DumboServerImpl.getInstance(context.getServletContext());
+    this.store = server == null ? new HeapStateStore() : server.getStateStore();
+    ServerApp app = DumboServerImpl.getServerApp(context.getServletContext());
+    this.console = new ConsoleImpl(this, pageId, stats, server == null ? null : server
+        .getConsoleBus(), app == null ? ConsoleChunkFilter.DEFAULT : app.getConsoleChunkFilter());
+  }
+
+  private static ServerStats statsOf(HttpSession context) {
+    DumboServerImpl server = DumboServerImpl.getInstance(context.getServletContext());
+    return server == null ? null : server.getServerStats();
+  }
+
+  static String pageScope(String pageId) {
+    return SCOPE_PAGE + pageId;
+  }
+
+  static String sessionScope(String sessionId) {
+    return SCOPE_SESSION + sessionId;
   }
 
   public Set<String> getPageIds() {
@@ -58,131 +96,306 @@ public final class DumboSessionImpl extends DumboSession {
     return pageId;
   }
 
+  /**
+   * Marks this page as being in use, e.g., upon an RPC call.
+   */
+  void touch() {
+    lastAccessMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the time this page was last used, either by an RPC call or a console long-poll.
+   *
+   * @return The time, in milliseconds since the epoch.
+   */
+  long getLastAccessMillis() {
+    return Math.max(lastAccessMillis, console.getLastPollMillis());
+  }
+
+  /**
+   * Checks whether the browser has been long-polling this page's console. Only such pages can be
+   * detected as abandoned, namely when the polling stops.
+   *
+   * @return {@code true} if the console has been polled at least once.
+   */
+  boolean hasPolled() {
+    return console.hasPolled();
+  }
+
   public String getSessionId() {
     return context.getId();
   }
 
   public Object getPageAttribute(String key) {
     checkValid();
-    synchronized (pageScope) {
-      return pageScope.get(key);
-    }
+    return store.get(pageScope, key);
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public <@NonNull T> T getOrCreatePageAttribute(String key, Function<String, T> attrSupplier) {
     checkValid();
-    synchronized (pageScope) {
-      return (T) pageScope.computeIfAbsent(key, attrSupplier);
+    synchronized (pageScopeLock) {
+      Object value = store.get(pageScope, key);
+      if (value == null) {
+        value = attrSupplier.apply(key);
+        store.put(pageScope, key, value);
+      }
+      return (T) value;
     }
   }
 
   @Override
   public void setPageAttribute(String key, Object val) {
     checkValid();
-    synchronized (pageScope) {
-      pageScope.put(key, val);
+    synchronized (pageScopeLock) {
+      store.put(pageScope, key, val);
     }
   }
 
   public Object getSessionAttribute(String key) {
     checkValid();
-    return context.getAttribute("dumbo." + key);
+    return store.get(sessionScope(context.getId()), key);
   }
 
   public void setSessionAttribute(String key, Object val) {
     checkValid();
-    context.setAttribute("dumbo." + key, val);
+    store.put(sessionScope(context.getId()), key, val);
   }
 
+  /**
+   * Begins an access window for the state of this page and its HTTP session (see
+   * {@link DumboStateStore#beginAccess(String)}), e.g., for the duration of an RPC call.
+   *
+   * @return The action that ends the access window.
+   */
+  Runnable beginAccess() {
+    String sessionScope = sessionScope(context.getId());
+    store.beginAccess(pageScope);
+    store.beginAccess(sessionScope);
+    return () -> {
+      store.endAccess(sessionScope);
+      store.endAccess(pageScope);
+    };
+  }
+
+  /**
+   * Removes the state of the given HTTP session and its pages from the given store.
+   *
+   * @param store The store.
+   * @param context The HTTP session.
+   */
+  static void removeState(DumboStateStore store, HttpSession context) {
+    for (String p : getDumboSessionPageIds(context)) {
+      store.removeScope(pageScope(p));
+    }
+    store.removeScope(sessionScope(context.getId()));
+  }
+
+  /**
+   * Closes the consoles of all pages of the given HTTP session.
+   *
+   * @param context The HTTP session.
+   */
+  static void closeConsoles(HttpSession context) {
+    for (String p : getDumboSessionPageIds(context)) {
+      DumboSessionImpl session = getDumboSession(context, p);
+      if (session != null) {
+        session.console.close();
+      }
+    }
+  }
+
+  /**
+   * Moves the state of the given HTTP session to its new session ID.
+   *
+   * @param store The store.
+   * @param context The HTTP session.
+   * @param oldSessionId The previous session ID.
+   */
+  static void renameState(DumboStateStore store, HttpSession context, String oldSessionId) {
+    String sessionId = context.getId();
+    store.renameScope(sessionScope(oldSessionId), sessionScope(sessionId));
+    if (store.isPersistent()) {
+      for (String p : getDumboSessionPageIds(context)) {
+        store.put(pageScope(p), PAGE_ATTRIBUTE_SESSION_ID, sessionId);
+      }
+    }
+  }
+
+  /**
+   * Checks whether the given store keeps the state of pages created in the HTTP session with the
+   * given ID, so the session ID may be reused after a server restart.
+   *
+   * @param store The store.
+   * @param sessionId The HTTP session ID.
+   * @return {@code true} if so.
+   */
+  static boolean hasPersistentState(DumboStateStore store, String sessionId) {
+    return store.isPersistent() && store.get(sessionScope(sessionId),
+        SESSION_STATE_ATTRIBUTE_PERSISTENT) != null;
+  }
+
+  /**
+   * Checks whether the given HTTP session has reached the given maximum number of pages, so
+   * creating a new page would evict the oldest one.
+   *
+   * @param context The HTTP session.
+   * @param max The maximum number of pages per session, or {@code 0} for unlimited.
+   * @return {@code true} if a new page would replace an existing one.
+   */
+  static boolean isAtPageLimit(HttpSession context, int max) {
+    PageRegistry registry = getPageRegistry(context);
+    return registry != null && registry.isFull(max);
+  }
+
+  /**
+   * Creates a new page, evicting the oldest pages of the HTTP session as necessary.
+   *
+   * If the server keeps statistics, a page slot must have been reserved before (see
+   * {@link ServerStats#reservePageSlot(int)}), which is taken by the new page, or released if the
+   * page cannot be created.
+   *
+   * @param context The HTTP session.
+   * @param max The maximum number of pages per session, or {@code 0} for unlimited.
+   * @return The new page ID.
+   */
   static String newPageId(HttpSession context, int max) {
-    if (max > 0) {
-      Set<String> existingPageIds = DumboSessionImpl.getDumboSessionPageIds(context);
-      int toDelete = Math.max(0, existingPageIds.size() + 1 - max);
-      if (toDelete > 0) {
-        for (String p : existingPageIds) {
-          DumboSessionImpl.removePageId(context, p);
-          if (--toDelete <= 0) {
-            break;
-          }
+    return newPageId(context, max, statsOf(context));
+  }
+
+  /**
+   * Creates a new page, evicting the oldest pages of the HTTP session as necessary.
+   *
+   * @param context The HTTP session.
+   * @param max The maximum number of pages per session, or {@code 0} for unlimited.
+   * @param stats The server statistics, or {@code null}.
+   * @return The new page ID.
+   * @see #newPageId(HttpSession, int)
+   */
+  static String newPageId(HttpSession context, int max, ServerStats stats) {
+    boolean created = false;
+    try {
+      PageRegistry registry = getOrCreatePageRegistry(context);
+      if (max > 0) {
+        String evictPageId;
+        while ((evictPageId = registry.pollEvictionCandidate(max)) != null) {
+          removePageId(context, evictPageId);
         }
       }
-    }
 
-    String pageId = UUID.randomUUID().toString();
-    synchronized (context) {
-      @SuppressWarnings("unchecked")
-      Map<String, DumboSessionImpl> map = (Map<String, DumboSessionImpl>) context.getAttribute(
-          SESSION_ATTRIBUTE_PAGEIDS);
-      if (map == null) {
-        map = new LinkedHashMap<>();
-        context.setAttribute(SESSION_ATTRIBUTE_PAGEIDS, map);
+      String pageId = UUID.randomUUID().toString();
+      DumboSessionImpl session = new DumboSessionImpl(pageId, context, stats);
+      if (session.store.isPersistent()) {
+        session.store.put(session.pageScope, PAGE_ATTRIBUTE_SESSION_ID, context.getId());
+        session.store.put(sessionScope(context.getId()), SESSION_STATE_ATTRIBUTE_PERSISTENT,
+            Boolean.TRUE);
+      }
+      if (stats != null) {
+        // before the page becomes visible, so a concurrent removal can release its slot
+        stats.pageCreated(session);
+      }
+      created = true;
+      registry.add(session);
+      return pageId;
+    } finally {
+      if (!created && stats != null) {
+        stats.releasePageSlot();
       }
-      map.put(pageId, new DumboSessionImpl(pageId, context));
     }
-    return pageId;
   }
 
-  static Set<String> getDumboSessionPageIds(HttpSession context) {
-    synchronized (context) {
-      @SuppressWarnings("unchecked")
-      Map<String, DumboSessionImpl> map = (Map<String, DumboSessionImpl>) context.getAttribute(
-          SESSION_ATTRIBUTE_PAGEIDS);
-      if (map == null) {
-        return Collections.emptySet();
-      } else {
-        switch (map.size()) {
-          case 0:
-            return Collections.emptySet();
-          case 1:
-            return Collections.singleton(map.keySet().iterator().next());
-          default:
-            return new LinkedHashSet<>(map.keySet());
+  private static PageRegistry getPageRegistry(HttpSession context) {
+    return (PageRegistry) context.getAttribute(SESSION_ATTRIBUTE_PAGEIDS);
+  }
+
+  private static PageRegistry getOrCreatePageRegistry(HttpSession context) {
+    PageRegistry registry = getPageRegistry(context);
+    if (registry == null) {
+      synchronized (context) {
+        registry = getPageRegistry(context);
+        if (registry == null) {
+          registry = new PageRegistry();
+          context.setAttribute(SESSION_ATTRIBUTE_PAGEIDS, registry);
         }
       }
     }
+    return registry;
+  }
+
+  static Set<String> getDumboSessionPageIds(HttpSession context) {
+    PageRegistry registry = getPageRegistry(context);
+    return registry == null ? Collections.emptySet() : registry.pageIds();
   }
 
   static DumboSessionImpl getDumboSession(HttpSession context, String pageId) {
-    synchronized (context) {
-      @SuppressWarnings("unchecked")
-      Map<String, DumboSessionImpl> map = (Map<String, DumboSessionImpl>) context.getAttribute(
-          SESSION_ATTRIBUTE_PAGEIDS);
-      if (map == null) {
-        return null;
-      } else {
-        return map.get(pageId);
-      }
+    PageRegistry registry = getPageRegistry(context);
+    DumboSessionImpl session = registry == null ? null : registry.get(pageId);
+    if (session == null && pageId != null) {
+      session = restoreDumboSession(context, pageId);
+    }
+    return session;
+  }
+
+  /**
+   * Restores a page from a persistent state store, e.g., after a server restart, provided that
+   * the page was created in the same HTTP session.
+   */
+  private static DumboSessionImpl restoreDumboSession(HttpSession context, String pageId) {
+    DumboServerImpl server = DumboServerImpl.getInstance(context.getServletContext());
+    if (server == null) {
+      return null;
+    }
+    DumboStateStore store = server.getStateStore();
+    if (!store.isPersistent() || !context.getId().equals(store.get(pageScope(pageId),
+        PAGE_ATTRIBUTE_SESSION_ID))) {
+      return null;
     }
+
+    DumboSessionImpl session = new DumboSessionImpl(pageId, context);
+    DumboSessionImpl existing = getOrCreatePageRegistry(context).add(session);
+    if (existing != session) {
+      return existing;
+    }
+    if (session.stats != null) {
+      // restored pages were admitted before
+      session.stats.reservePageSlot(0);
+      session.stats.pageCreated(session);
+    }
+    return session;
   }
 
   static void removePageId(HttpSession context, String pageId) {
     if (pageId == null) {
       return;
     }
-    DumboSessionImpl session;
-    synchronized (context) {
-      @SuppressWarnings("unchecked")
-      Map<String, DumboSessionImpl> map = (Map<String, DumboSessionImpl>) context.getAttribute(
-          SESSION_ATTRIBUTE_PAGEIDS);
-      if (map == null) {
-        return;
-      }
-      session = map.remove(pageId);
-      if (session == null) {
-        return;
-      } else if (map.isEmpty()) {
-        context.removeAttribute(SESSION_ATTRIBUTE_PAGEIDS);
-
-        DumboServerImpl server = (DumboServerImpl) context.getServletContext().getAttribute(
-            DumboServerImpl.class.getName());
-        if (server != null) {
-          server.onSessionShutdown(context.getId(), new WeakReference<>(context));
-        }
+    PageRegistry registry = getPageRegistry(context);
+    if (registry == null) {
+      return;
+    }
+    DumboSessionImpl session = registry.remove(pageId, () -> {
+      DumboServerImpl server = DumboServerImpl.getInstance(context.getServletContext());
+      if (server != null) {
+        server.onSessionShutdown(context.getId(), new WeakReference<>(context));
       }
+    });
+    if (session != null) {
+      session.invalidate();
     }
-    session.invalidate();
+  }
+
+  /**
+   * Removes this page from its HTTP session and releases its console and page state, e.g., after
+   * the browser stopped polling.
+   */
+  void reap() {
+    try {
+      removePageId(context, pageId);
+    } catch (IllegalStateException e) {
+      // HTTP session has already been invalidated
+    }
+    invalidate();
+    console.close();
   }
 
   private void checkValid() {
@@ -195,6 +408,10 @@ public final class DumboSessionImpl extends DumboSession {
   public void invalidate() {
     if (invalid.compareAndSet(false, true)) {
       console.shutdown();
+      store.removeScope(pageScope);
+      if (stats != null) {
+        stats.pageRemoved(this);
+      }
     }
     removePageIdFromCurrentSession(pageId);
   }
@@ -218,4 +435,13 @@ public final class DumboSessionImpl extends DumboSession {
     checkValid();
     return console;
   }
+
+  /**
+   * Returns the console, even if this session has been invalidated.
+   *
+   * @return The console.
+   */
+  ConsoleImpl getConsoleImpl() {
+    return console;
+  }
 }
@@ -20,12 +20,14 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import org.eclipse.jetty.ee10.webapp.WebAppContext;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +59,8 @@ final class ExtensionImpl extends ComponentImpl {
 
   private StringHolderSequence htmlHeadSeq = null;
   private StringHolderSequence htmlBodyTopSeq = null;
+  private final List<String> preloadLinks = new ArrayList<>();
+  private int bundleSegment = -1;
 
   private List<JavaScriptResource> jsResources;
   private List<CSSResource> cssResources;
@@ -146,12 +150,12 @@ final class ExtensionImpl extends ComponentImpl {
     if (extensionPath != null) {
       URL webappUrl = initExtensionResourceURL(server);
       if (webappUrl != null) {
-        WebAppContext wac = server.registerContext(this, app, extensionPath, webappUrl);
-        contextPath = wac.getContextPath().replaceFirst("/$", "");
+        ContextHandler ch = server.registerContext(this, app, extensionPath, webappUrl);
+        contextPath = ch.getContextPath().replaceFirst("/$", "");
       }
     }
 
-    htmlHeadSeq = this.initHtmlHead(server);
+    htmlHeadSeq = this.initHtmlHead(app, server);
     htmlBodyTopSeq = this.initHtmlBodyTop();
   }
 
@@ -186,8 +190,10 @@ final class ExtensionImpl extends ComponentImpl {
   }
 
   @SuppressWarnings({"PMD.CognitiveComplexity", "PMD.CyclomaticComplexity", "PMD.NPathComplexity"})
-  private StringHolderSequence initHtmlHead(DumboServerImpl server) throws IOException {
+  private StringHolderSequence initHtmlHead(ServerApp app, DumboServerImpl server)
+      throws IOException {
     StringHolderSequence sb = StringHolder.newSequence();
+    ResourceBundler bundler = app.getResourceBundler();
 
     final Predicate<StringHolder> optionalInclude = (sh) -> {
       RenderState rs = RenderState.get();
@@ -213,10 +219,17 @@ final class ExtensionImpl extends ComponentImpl {
           }
         }
 
+        if (bundler != null && addToBundle(bundler.offerCSS(getComponentClass(), url, css
+            .optional()))) {
+          continue;
+        }
+
         CharSequence s = "<link rel=\"stylesheet\" href=\"" + xmlEntities(url) + "\" />\n";
         if (css.optional()) {
           s = StringHolder.withConditionalStringHolder(StringHolder.withContent(s),
               optionalInclude);
+        } else {
+          addPreloadLink(url, "rel=preload; as=style");
         }
 
         sb.append(s);
@@ -244,6 +257,11 @@ final class ExtensionImpl extends ComponentImpl {
           }
         }
 
+        if (bundler != null && addToBundle(bundler.offerJavaScript(getComponentClass(), url, js
+            .optional(), !js.async() && !js.defer() && !js.module()))) {
+          continue;
+        }
+
         String type;
         if (js.module()) {
           type = "module";
@@ -256,6 +274,8 @@ final class ExtensionImpl extends ComponentImpl {
         if (js.optional()) {
           s = StringHolder.withConditionalStringHolder(StringHolder.withContent(s),
               optionalInclude);
+        } else {
+          addPreloadLink(url, js.module() ? "rel=modulepreload" : "rel=preload; as=script");
         }
 
         sb.append(s);
@@ -269,15 +289,74 @@ final class ExtensionImpl extends ComponentImpl {
       for (String path : html.value()) {
         sb.append(getContentsOfResource(path));
       }
+      if (bundler != null) {
+        bundler.markBoundary();
+      }
     }
 
-    // for (WebAssemblyResource wasm : wasmResources) {
-    // // FIXME
-    // }
+    for (WebAssemblyResource wasm : wasmResources) {
+      for (String path : wasm.value()) {
+        String url = toAbsolutePath(path);
+
+        if (isLocalPath(path)) {
+          byte[] data = server.readResource(url);
+          if (data == null) {
+            // WASM resource doesn't exist, and can be optimized away
+            if (wasm.optional()) {
+              if (LOG.isDebugEnabled()) {
+                LOG.debug("Skipping optional WASM resource " + url + "; missing from " + this);
+              }
+              continue;
+            } else {
+              if (LOG.isWarnEnabled()) {
+                LOG.warn("WASM resource " + url + " is missing from " + this);
+              }
+            }
+          } else {
+            // content-addressed, see ImmutableCacheFilter
+            String hash = ResourceBundler.contentHash(data);
+            server.registerContentHash(url, hash);
+            url += "?v=" + hash;
+          }
+        }
+
+        // Start fetching and compiling right away; the module is made available to scripts as a
+        // Promise<WebAssembly.Module>, e.g., await dumboWasm["wasm/index.wasm"]
+        CharSequence s = "<script type=\"text/javascript\">(window.dumboWasm=window.dumboWasm||{})["
+            + jsString(path) + "]=WebAssembly.compileStreaming(fetch(" + jsString(url)
+            + "));</script>\n";
+        if (wasm.optional()) {
+          s = StringHolder.withConditionalStringHolder(StringHolder.withContent(s),
+              optionalInclude);
+        } else {
+          addPreloadLink(url, "rel=preload; as=fetch; crossorigin=anonymous");
+        }
+
+        sb.append(s);
+      }
+    }
 
     return sb;
   }
 
+  private boolean addToBundle(int segment) {
+    if (segment < 0) {
+      return false;
+    }
+    if (bundleSegment < 0) {
+      bundleSegment = segment;
+    }
+    return true;
+  }
+
+  private void addPreloadLink(String url, String params) {
+    if (url.contains("://")) {
+      // cross-origin preloads need matching CORS settings; leave them to the browser
+      return;
+    }
+    preloadLinks.add("<" + url + ">; " + params);
+  }
+
   private StringHolderSequence initHtmlBodyTop() throws IOException {
     StringHolderSequence sb = StringHolder.newSequence();
 
@@ -330,11 +409,34 @@ final class ExtensionImpl extends ComponentImpl {
     return htmlBodyTopSeq.clone();
   }
 
-  private static String xmlEntities(final String in) {
+  static String xmlEntities(final String in) {
     return in.replaceAll("&", "&amp;").replaceAll("\"", "&quot;").replaceAll("<", "&lt;")
         .replaceAll(">", "&gt;").replaceAll("'", "&#39;");
   }
 
+  /**
+   * Returns the values for HTTP {@code Link} headers that allow the browser to preload the
+   * resources that are unconditionally referenced by {@link #htmlHead(ServerApp)}.
+   *
+   * @return The list of link values, e.g. {@code </js/app.js>; rel=preload; as=script}.
+   */
+  List<String> getPreloadLinks() {
+    return Collections.unmodifiableList(preloadLinks);
+  }
+
+  /**
+   * Returns the {@link ResourceBundler} segment this extension's bundled resources were added to.
+   *
+   * @return The segment, or {@code -1} if none of the resources are bundled.
+   */
+  int getBundleSegment() {
+    return bundleSegment;
+  }
+
+  private static String jsString(final String in) {
+    return "\"" + in.replace("\\", "\\\\").replace("\"", "\\\"").replace("<", "\\u003c") + "\"";
+  }
+
   String getContextPath() {
     return contextPath;
   }
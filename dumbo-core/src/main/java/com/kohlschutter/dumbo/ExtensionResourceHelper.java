@@ -34,7 +34,16 @@ public final class ExtensionResourceHelper {
 
   public static StringHolder htmlHead(final ServerApp app) {
     StringHolderSequence sb = StringHolder.newSequence();
+    ResourceBundler bundler = app.getResourceBundler();
+    RenderState rs = bundler == null ? null : RenderState.get();
+    int lastSegment = -1;
     for (ExtensionImpl ext : app.getExtensions()) {
+      int segment = ext.getBundleSegment();
+      if (bundler != null && segment > lastSegment) {
+        // emit each bundle at the position of its first resource
+        sb.append(bundler.htmlHead(rs, segment));
+        lastSegment = segment;
+      }
       sb.append(ext.htmlHead(app));
     }
 
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Emits a set of files (source to target) in parallel, using a bounded executor.
+ *
+ * Files are transferred via {@link FileChannel}{@code #transferTo}, which lets the kernel copy (or
+ * reflink) the data without moving it through the Java heap. If enabled via
+ * {@code dumbo.emit.hardlinks=true}, files are hard-linked instead of copied when source and target
+ * reside on the same file store. Files with identical content are only written
+ * once; duplicates are hard-linked to the first copy (disable via {@code dumbo.emit.dedupe=false}).
+ *
+ * Targets are unique; adding the same target twice replaces the earlier source, mimicking a
+ * sequence of {@link Files#copy(Path, Path, java.nio.file.CopyOption...)} calls with
+ * {@link StandardCopyOption#REPLACE_EXISTING}. Existing targets are unlinked before being written,
+ * so hard links created by an earlier run are never modified in place.
+ *
+ * @author Christian Kohlschütter
+ */
+final class FileEmitter {
+  private static final Logger LOG = LoggerFactory.getLogger(FileEmitter.class);
+
+  private static final boolean HARDLINKS = Boolean.parseBoolean(System.getProperty(
+      "dumbo.emit.hardlinks", "false"));
+  private static final boolean DEDUPE = Boolean.parseBoolean(System.getProperty(
+      "dumbo.emit.dedupe", "true"));
+  private static final int MAX_THREADS = Math.max(1, Integer.getInteger("dumbo.emit.threads", Math
+      .min(8, Runtime.getRuntime().availableProcessors())));
+
+  private final Map<Path, Path> targetToSource = new LinkedHashMap<>();
+
+  FileEmitter() {
+  }
+
+  /**
+   * Schedules the given source file to be emitted at the given target path.
+   *
+   * @param source The source file.
+   * @param target The target file.
+   */
+  void add(Path source, Path target) {
+    targetToSource.remove(target);
+    targetToSource.put(target, source);
+  }
+
+  /**
+   * Emits all scheduled files, blocking until all files have been written.
+   *
+   * @throws IOException on error.
+   */
+  void emit() throws IOException {
+    if (targetToSource.isEmpty()) {
+      return;
+    }
+
+    Set<Path> parents = new LinkedHashSet<>();
+    for (Path target : targetToSource.keySet()) {
+      Path parent = target.getParent();
+      if (parent != null) {
+        parents.add(parent);
+      }
+    }
+    for (Path parent : parents) {
+      Files.createDirectories(parent);
+    }
+
+    AtomicInteger threadNum = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, targetToSource
+        .size()), (r) -> {
+          Thread t = new Thread(r, "dumbo-emit-" + threadNum.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+    try {
+      Map<Path, Path> duplicates = DEDUPE ? findDuplicates(executor) : Map.of();
+
+      List<Future<?>> futures = new ArrayList<>(targetToSource.size());
+      for (Map.Entry<Path, Path> en : targetToSource.entrySet()) {
+        Path target = en.getKey();
+        if (duplicates.containsKey(target)) {
+          continue;
+        }
+        Path source = en.getValue();
+        futures.add(executor.submit(() -> {
+          transfer(source, target);
+          return null;
+        }));
+      }
+      awaitAll(futures);
+
+      futures.clear();
+      for (Map.Entry<Path, Path> en : duplicates.entrySet()) {
+        Path target = en.getKey();
+        Path firstTarget = en.getValue();
+        futures.add(executor.submit(() -> {
+          link(firstTarget, target);
+          return null;
+        }));
+      }
+      awaitAll(futures);
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Emitted {} files ({} deduplicated)", targetToSource.size(), duplicates.size());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Finds targets whose source content is identical to another target's source.
+   *
+   * Only sources that share their size with at least one other source are hashed.
+   *
+   * @param executor The executor to use for hashing.
+   * @return A map of duplicate target to the first target with the same content.
+   * @throws IOException on error.
+   */
+  private Map<Path, Path> findDuplicates(ExecutorService executor) throws IOException {
+    Map<Long, List<Path>> sizeToTargets = new HashMap<>();
+    for (Map.Entry<Path, Path> en : targetToSource.entrySet()) {
+      long size = Files.size(en.getValue());
+      if (size == 0) {
+        continue;
+      }
+      sizeToTargets.computeIfAbsent(size, (k) -> new ArrayList<>()).add(en.getKey());
+    }
+
+    Map<Path, Future<String>> hashes = new LinkedHashMap<>();
+    for (List<Path> targets : sizeToTargets.values()) {
+      if (targets.size() < 2) {
+        continue;
+      }
+      for (Path target : targets) {
+        Path source = targetToSource.get(target);
+        hashes.put(target, executor.submit(() -> contentHash(source)));
+      }
+    }
+
+    Map<String, Path> hashToFirstTarget = new HashMap<>();
+    Map<Path, Path> duplicates = new LinkedHashMap<>();
+    for (Map.Entry<Path, Future<String>> en : hashes.entrySet()) {
+      Path target = en.getKey();
+      String hash = await(en.getValue());
+      Path firstTarget = hashToFirstTarget.putIfAbsent(hash, target);
+      if (firstTarget != null) {
+        duplicates.put(target, firstTarget);
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * Returns a Base64-encoded SHA-256 hash of the given file's contents.
+   *
+   * @param file The file.
+   * @return The hash.
+   * @throws IOException on error.
+   */
+  static String contentHash(Path file) throws IOException {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file), md)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+  }
+
+  @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+  private static void transfer(Path source, Path target) throws IOException {
+    if (HARDLINKS && tryLink(source, target)) {
+      return;
+    }
+    if (source.getFileSystem() != FileSystems.getDefault()) {
+      // e.g., resources in a jar file
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+      return;
+    }
+
+    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+      // The target may be a hard link (to the source, or to another target) from a previous run;
+      // never write into that inode.
+      Files.deleteIfExists(target);
+      try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+          StandardOpenOption.CREATE_NEW)) {
+        long size = in.size();
+        long pos = 0;
+        while (pos < size) {
+          long n = in.transferTo(pos, size - pos, out);
+          if (n <= 0) {
+            break;
+          }
+          pos += n;
+        }
+      }
+    }
+  }
+
+  private static void link(Path existing, Path target) throws IOException {
+    if (!tryLink(existing, target)) {
+      transfer(existing, target);
+    }
+  }
+
+  private static boolean tryLink(Path existing, Path target) {
+    try {
+      if (existing.getFileSystem() != target.getFileSystem() || !Files.getFileStore(existing)
+          .equals(Files.getFileStore(target.getParent()))) {
+        return false;
+      }
+      Files.deleteIfExists(target);
+      Files.createLink(target, existing);
+      return true;
+    } catch (IOException | UnsupportedOperationException | SecurityException e) {
+      LOG.debug("Cannot hard-link {} to {}", target, existing, e);
+      return false;
+    }
+  }
+
+  private static void awaitAll(List<Future<?>> futures) throws IOException {
+    IOException firstError = null;
+    for (Future<?> f : futures) {
+      try {
+        await(f);
+      } catch (IOException e) {
+        if (firstError == null) {
+          firstError = e;
+        } else {
+          firstError.addSuppressed(e);
+        }
+      }
+    }
+    if (firstError != null) {
+      throw firstError;
+    }
+  }
+
+  private static <T> T await(Future<T> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (IOException) new IOException("Interrupted").initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+}
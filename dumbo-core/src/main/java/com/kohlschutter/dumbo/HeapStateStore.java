@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.kohlschutter.dumbo.api.DumboStateStore;
+
+/**
+ * The default {@link DumboStateStore}, which keeps attributes on the heap, as-is.
+ *
+ * @author Christian Kohlschütter
+ */
+final class HeapStateStore implements DumboStateStore {
+  private final Map<String, Map<String, Object>> scopes = new ConcurrentHashMap<>();
+
+  HeapStateStore() {
+  }
+
+  @Override
+  public Object get(String scope, String key) {
+    Map<String, Object> map = scopes.get(scope);
+    return map == null ? null : map.get(key);
+  }
+
+  @Override
+  public void put(String scope, String key, Object value) {
+    if (value == null) {
+      Map<String, Object> map = scopes.get(scope);
+      if (map != null) {
+        map.remove(key);
+      }
+    } else {
+      scopes.computeIfAbsent(scope, (k) -> new ConcurrentHashMap<>()).put(key, value);
+    }
+  }
+
+  @Override
+  public boolean containsScope(String scope) {
+    Map<String, Object> map = scopes.get(scope);
+    return map != null && !map.isEmpty();
+  }
+
+  @Override
+  public void removeScope(String scope) {
+    scopes.remove(scope);
+  }
+
+  @Override
+  public void renameScope(String scope, String newScope) {
+    Map<String, Object> map = scopes.remove(scope);
+    if (map != null) {
+      scopes.put(newScope, map);
+    }
+  }
+}
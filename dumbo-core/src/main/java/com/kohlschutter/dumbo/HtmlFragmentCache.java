@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.kohlschutter.stringhold.StringHolder;
+
+/**
+ * Caches a fully rendered HTML fragment (e.g., the HTML HEAD contributions of all extensions) per
+ * distinct set of components marked as used in the {@link RenderState}.
+ *
+ * @author Christian Kohlschütter
+ */
+final class HtmlFragmentCache {
+  private static final int MAX_ENTRIES = 256;
+
+  private final Map<BitSet, String> cache = new ConcurrentHashMap<>();
+  private volatile String allUsed;
+
+  HtmlFragmentCache() {
+  }
+
+  /**
+   * Returns the cached fragment for the given render state, rendering it via the given supplier if
+   * necessary.
+   *
+   * @param rs The render state.
+   * @param renderer The renderer, which is evaluated against the same render state.
+   * @return The fragment.
+   */
+  String get(RenderState rs, Supplier<StringHolder> renderer) {
+    String s = getIfCachable(rs, renderer);
+    return s == null ? renderer.get().toString() : s;
+  }
+
+  /**
+   * Appends the fragment for the given render state to the given {@link Appendable}, rendering it
+   * via the given supplier if necessary.
+   *
+   * If the fragment cannot be cached, it is streamed into the target without materializing it as a
+   * {@link String} first.
+   *
+   * @param rs The render state.
+   * @param renderer The renderer, which is evaluated against the same render state.
+   * @param out The target.
+   * @throws IOException on error.
+   */
+  void appendTo(RenderState rs, Supplier<StringHolder> renderer, Appendable out)
+      throws IOException {
+    String s = getIfCachable(rs, renderer);
+    if (s == null) {
+      renderer.get().appendTo(out);
+    } else {
+      out.append(s);
+    }
+  }
+
+  private String getIfCachable(RenderState rs, Supplier<StringHolder> renderer) {
+    if (rs.isMarkedUsedAllComponents()) {
+      String s = allUsed;
+      if (s == null) {
+        allUsed = s = renderer.get().toString();
+      }
+      return s;
+    }
+
+    BitSet used = rs.getComponentsMarkedUsed();
+    String s = cache.get(used);
+    if (s == null) {
+      if (cache.size() >= MAX_ENTRIES) {
+        return null;
+      }
+      s = renderer.get().toString();
+      cache.putIfAbsent((BitSet) used.clone(), s);
+    }
+    return s;
+  }
+}
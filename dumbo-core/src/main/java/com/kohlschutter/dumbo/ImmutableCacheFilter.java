@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Marks responses for content-addressed URLs as immutable, so browsers never revalidate them.
+ *
+ * A URL is content-addressed if it points to a resource bundle (see {@link ResourceBundler}), or if
+ * it carries a content hash as the {@code v} query parameter (e.g., {@code wasm/app.wasm?v=...}).
+ * Only bundles and hashes the server generated for that very path are accepted (see
+ * {@link DumboServerImpl#registerBundle(String)} and
+ * {@link DumboServerImpl#registerContentHash(String, String)}); otherwise, a crafted link could pin
+ * arbitrary, mutable resources (or error responses) in shared caches.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ImmutableCacheFilter extends HttpFilter {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The {@code Cache-Control} header value for immutable resources.
+   */
+  static final String CACHE_CONTROL_IMMUTABLE = "public, max-age=31536000, immutable";
+
+  private final transient DumboServerImpl server;
+
+  ImmutableCacheFilter(DumboServerImpl server) {
+    super();
+    this.server = server;
+  }
+
+  @Override
+  protected void doFilter(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+      throws ServletException, IOException {
+    String requestURI = req.getRequestURI();
+    String pathInContext = requestURI.substring(req.getContextPath().length());
+
+    if (isImmutable(server, requestURI, pathInContext, req.getQueryString())) {
+      resp.setHeader("Cache-Control", CACHE_CONTROL_IMMUTABLE);
+    }
+    chain.doFilter(req, resp);
+  }
+
+  /**
+   * Checks if the given path/query denote a content-addressed resource.
+   *
+   * @param server The server.
+   * @param path The absolute URL path.
+   * @param pathInContext The path, relative to the app's context root.
+   * @param query The query string, or {@code null}.
+   * @return {@code true} if the resource is immutable.
+   */
+  static boolean isImmutable(DumboServerImpl server, String path, String pathInContext,
+      String query) {
+    if (isBundlePath(pathInContext)) {
+      return server.isBundle(path);
+    }
+    if (query == null) {
+      return false;
+    }
+    String hash = server.getContentHash(path);
+    return hash != null && hash.equals(getParameter(query, "v"));
+  }
+
+  /**
+   * Checks if the given path denotes a location in the resource bundle directory.
+   *
+   * @param pathInContext The path, relative to the app's context root.
+   * @return {@code true} if so.
+   */
+  static boolean isBundlePath(String pathInContext) {
+    return pathInContext.startsWith("/" + ResourceBundler.BUNDLE_DIR + "/");
+  }
+
+  private static String getParameter(String query, String name) {
+    for (String param : query.split("&")) {
+      if (param.startsWith(name) && param.length() > name.length() && param.charAt(name
+          .length()) == '=') {
+        return param.substring(name.length() + 1);
+      }
+    }
+    return null;
+  }
+}
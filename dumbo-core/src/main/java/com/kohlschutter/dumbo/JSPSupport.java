@@ -16,6 +16,7 @@
  */
 package com.kohlschutter.dumbo;
 
+import java.io.IOException;
 import java.util.Set;
 
 import com.kohlschutter.dumbo.api.DumboComponent;
@@ -96,7 +97,28 @@ public final class JSPSupport {
 
   public static String htmlHead(final ServerApp app) {
     // RenderState.get().setMarkedUsedAllComponents(true);
-    return ExtensionResourceHelper.htmlHead(app).toString();
+    RenderState rs = RenderState.get();
+    String head = app.getHtmlHeadCache().get(rs, () -> ExtensionResourceHelper.htmlHead(app));
+    rs.setHtmlHeadPreloadLinks(app.getPreloadLinks(rs));
+    return head;
+  }
+
+  /**
+   * Appends the HTML string that may be added to the HTML HEAD section of a web page to initialize
+   * all extensions registered with the app directly to the given {@link Appendable} (e.g., the
+   * JSP's {@code out}), without creating an intermediate string.
+   *
+   * @param session The HTTP session associated with the page.
+   * @param out The target.
+   * @throws IOException on error.
+   */
+  public static void writeHtmlHead(final HttpSession session, Appendable out) throws IOException {
+    ServerApp app = getApp(session);
+    if (app != null) {
+      RenderState rs = RenderState.get();
+      app.getHtmlHeadCache().appendTo(rs, () -> ExtensionResourceHelper.htmlHead(app), out);
+      rs.setHtmlHeadPreloadLinks(app.getPreloadLinks(rs));
+    }
   }
 
   /**
@@ -117,7 +139,26 @@ public final class JSPSupport {
 
   public static String htmlBodyTop(final ServerApp app) {
     // RenderState.get().setMarkedUsedAllComponents(true);
-    return ExtensionResourceHelper.htmlBodyTop(app).toString();
+    return app.getHtmlBodyTopCache().get(RenderState.get(), () -> ExtensionResourceHelper
+        .htmlBodyTop(app));
+  }
+
+  /**
+   * Appends the HTML string that may be added to the top of the HTML BODY section of a web page to
+   * initialize all extensions registered with the app directly to the given {@link Appendable}
+   * (e.g., the JSP's {@code out}), without creating an intermediate string.
+   *
+   * @param session The HTTP session associated with the page.
+   * @param out The target.
+   * @throws IOException on error.
+   */
+  public static void writeHtmlBodyTop(final HttpSession session, Appendable out)
+      throws IOException {
+    ServerApp app = getApp(session);
+    if (app != null) {
+      app.getHtmlBodyTopCache().appendTo(RenderState.get(), () -> ExtensionResourceHelper
+          .htmlBodyTop(app), out);
+    }
   }
 
   /**
@@ -56,8 +56,11 @@ final class JsFilter extends HttpFilter {
     String pathInContext = requestURI.substring(req.getContextPath().length());
 
     // FIXME make this configurable
-    resp.setHeader("Cache-Control", "max-age=0, no-cache, no-store, must-revalidate");
-    resp.setHeader("Pragma", "no-cache");
+    if (!resp.containsHeader("Cache-Control")) {
+      // keep caching headers set by an earlier filter (e.g., for content-addressed bundles)
+      resp.setHeader("Cache-Control", "max-age=0, no-cache, no-store, must-revalidate");
+      resp.setHeader("Pragma", "no-cache");
+    }
 
     if (DumboServerImpl.checkResourceExists(servletContext, pathInContext)) {
       chain.doFilter(req, resp);
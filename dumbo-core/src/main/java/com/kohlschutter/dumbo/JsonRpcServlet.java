@@ -40,7 +40,6 @@ import org.slf4j.LoggerFactory;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 import com.kohlschutter.dumbo.annotations.DumboService;
-import com.kohlschutter.dumbo.api.DumboSession;
 import com.kohlschutter.dumbo.console.ConsoleService;
 import com.kohlschutter.dumbo.exceptions.NoSessionException;
 import com.kohlschutter.dumbo.exceptions.PermanentRPCException;
@@ -188,14 +187,28 @@ class JsonRpcServlet extends HttpServlet {
   @Override
   protected void doPost(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
+    RpcCallEvent event = new RpcCallEvent();
+    event.begin();
     try {
-      doPost0(request, response);
+      doPost0(request, response, event);
     } catch (EofException | ClosedByInterruptException e) {
       // connection terminated; ignore
       return;
     } catch (ServletException | IOException | RuntimeException | Error e) {
       LOG.info("Exception in service", e);
+      if (server != null) {
+        server.getServerStats().rpcError();
+      }
       throw e;
+    } finally {
+      if (server != null) {
+        server.getServerStats().rpcCall();
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.requestBytes = request.getContentLengthLong();
+        event.commit();
+      }
     }
   }
 
@@ -203,8 +216,8 @@ class JsonRpcServlet extends HttpServlet {
       "PMD.NcssCount", "PMD.CognitiveComplexity", "PMD.NPathComplexity",
       "PMD.CyclomaticComplexity"})
   @SuppressFBWarnings("URL_REWRITING")
-  private void doPost0(HttpServletRequest request, HttpServletResponse response)
-      throws ServletException, IOException {
+  private void doPost0(HttpServletRequest request, HttpServletResponse response,
+      RpcCallEvent event) throws ServletException, IOException {
 
     request.setCharacterEncoding("UTF-8");
     response.setCharacterEncoding("UTF-8");
@@ -220,11 +233,17 @@ class JsonRpcServlet extends HttpServlet {
 
     int maxPagesPerSession = app.getMaximumPagesPerSession();
 
-    DumboSession dumboSession;
+    DumboSessionImpl dumboSession;
     String newServerURL = null;
     String pageId = request.getParameter("pageId");
     if (maxPagesPerSession != 0) {
       if (pageId == null && maxPagesPerSession != 0) {
+        if (server != null && !server.getAdmissionControl().admitNewPage(DumboSessionImpl
+            .isAtPageLimit(context, maxPagesPerSession))) {
+          response.setIntHeader("Retry-After", AdmissionControl.RETRY_AFTER_SECONDS);
+          response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server at capacity");
+          return;
+        }
         triggerOnAppLoaded = true;
         pageId = DumboSessionImpl.newPageId(context, maxPagesPerSession);
         newServerURL = request.getRequestURI();
@@ -235,16 +254,19 @@ class JsonRpcServlet extends HttpServlet {
         }
       }
 
+      event.pageId = pageId;
       dumboSession = DumboSessionImpl.getDumboSession(context, pageId);
       if (dumboSession == null) {
         response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid pageId");
         return;
       }
+      dumboSession.touch();
     } else {
       dumboSession = null;
     }
 
     DumboSessionImpl.setSession(dumboSession);
+    Runnable endAccess = dumboSession == null ? null : dumboSession.beginAccess();
     JSONRPCResult result;
     try {
       JSONTokener jt = new JSONTokener(request.getReader());
@@ -261,6 +283,8 @@ class JsonRpcServlet extends HttpServlet {
       }
 
       String method = jsonRequest.getString("method");
+      event.method = method;
+      AsyncAccessLog.annotateRpc(request, method);
 
       JsonRpcContext rpcContext = new JsonRpcContext(method);
       if (server != null) {
@@ -310,9 +334,17 @@ class JsonRpcServlet extends HttpServlet {
     } finally {
       tlContext.set(null);
       DumboSessionImpl.removeSession();
+      if (endAccess != null) {
+        endAccess.run();
+      }
+    }
+
+    if (result instanceof FailedResult && server != null) {
+      server.getServerStats().rpcError();
     }
 
     ByteBuffer byteBuffer = StandardCharsets.UTF_8.encode(result.toJSONString(newServerURL));
+    event.responseBytes = byteBuffer.remaining();
     response.setContentLength(byteBuffer.remaining());
     response.setContentType("application/json;charset=utf-8");
     try (OutputStream out = response.getOutputStream();
@@ -324,7 +356,12 @@ class JsonRpcServlet extends HttpServlet {
 
     if (triggerOnAppLoaded) {
       CompletableFuture.runAsync(() -> {
-        app.onAppLoaded(dumboSession);
+        Runnable endAppLoadedAccess = dumboSession.beginAccess();
+        try {
+          app.onAppLoaded(dumboSession);
+        } finally {
+          endAppLoadedAccess.run();
+        }
       });
     }
   }
@@ -34,6 +34,9 @@ import org.slf4j.LoggerFactory;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.Servlet;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -45,12 +48,75 @@ final class JspCachingServlet extends JettyJspServlet {
   private static final long serialVersionUID = 1L;
   private static final Logger LOG = LoggerFactory.getLogger(JspCachingServlet.class);
 
+  private static final boolean PRELOAD_LINKS = Boolean.parseBoolean(System.getProperty(
+      "dumbo.preload", "true"));
+  private static final boolean EARLY_HINTS = Boolean.parseBoolean(System.getProperty(
+      "dumbo.early-hints", "false"));
+  private static final int SC_EARLY_HINTS = 103;
+
   private transient ServletContext context;
+  private transient PrecompiledJsp precompiled;
+  private transient ServerStats stats;
 
   @Override
   public void init() throws ServletException {
     super.init();
     this.context = getServletContext();
+
+    DumboServerImpl server = DumboServerImpl.getInstance(context);
+    stats = server == null ? null : server.getServerStats();
+    Path classesDir = server == null ? null : server.getPrecompiledJspPath();
+    if (classesDir != null) {
+      try {
+        precompiled = new PrecompiledJsp(classesDir, context.getClassLoader(), getServletConfig());
+      } catch (IOException e) {
+        throw new ServletException(e);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (precompiled != null) {
+      precompiled.destroy();
+      precompiled = null;
+    }
+    super.destroy();
+  }
+
+  /**
+   * Serves the JSP, either via its precompiled class (if available), or via Jasper.
+   *
+   * @param req The request.
+   * @param resp The response.
+   * @throws ServletException on error.
+   * @throws IOException on error.
+   */
+  private void serviceJsp(HttpServletRequest req, HttpServletResponse resp)
+      throws ServletException, IOException {
+    if (precompiled != null) {
+      String jspUri = jspUri(req);
+      Servlet servlet = precompiled.get(jspUri);
+      if (servlet != null) {
+        servlet.service(req, resp);
+        return;
+      } else if (PrecompiledJsp.STRICT) {
+        throw new ServletException("No precompiled class for JSP: " + jspUri);
+      }
+    }
+    super.service(req, resp);
+  }
+
+  private static String jspUri(HttpServletRequest req) {
+    String jspUri = (String) req.getAttribute(RequestDispatcher.INCLUDE_SERVLET_PATH);
+    String pathInfo;
+    if (jspUri == null) {
+      jspUri = req.getServletPath();
+      pathInfo = req.getPathInfo();
+    } else {
+      pathInfo = (String) req.getAttribute(RequestDispatcher.INCLUDE_PATH_INFO);
+    }
+    return pathInfo == null ? jspUri : jspUri + pathInfo;
   }
 
   @SuppressFBWarnings("PATH_TRAVERSAL_IN") // FIXME double-check ?
@@ -83,7 +149,7 @@ final class JspCachingServlet extends JettyJspServlet {
 
   @SuppressWarnings({"PMD.NcssCount", "PMD.CognitiveComplexity", "PMD.NPathComplexity"})
   private boolean checkCache(String path, String generatedPath, HttpServletRequest req,
-      HttpServletResponse resp) throws ServletException, IOException {
+      HttpServletResponse resp, JspRenderEvent event) throws ServletException, IOException {
     LOG.debug("Check cache {} -> {}", path, generatedPath);
 
     String realPath = generatedPath == null ? null : context.getRealPath(generatedPath);
@@ -91,6 +157,11 @@ final class JspCachingServlet extends JettyJspServlet {
     if (generatedPath == null || context.getRealPath(path) == null || path.contains("..")) {
       if (realPath != null) {
         // we're probably running in cached mode: the jsp file is not present but the cached file is
+        event.cacheHit = true;
+        event.result = "forward";
+        if (stats != null) {
+          stats.jspCacheHit();
+        }
         req.getRequestDispatcher(generatedPath).forward(req, resp);
         return true;
       }
@@ -209,7 +280,7 @@ final class JspCachingServlet extends JettyJspServlet {
         }
       };
 
-      super.service(req, respWrapped);
+      serviceJsp(req, respWrapped);
     } finally {
       try {
         PrintWriter pw = netOut.getNow(null);
@@ -222,6 +293,14 @@ final class JspCachingServlet extends JettyJspServlet {
           }
         }
 
+        event.result = generate.get() ? "generated" : "rendered";
+        if (stats != null) {
+          if (generate.get()) {
+            stats.jspCacheMiss();
+          } else {
+            stats.jspUncached();
+          }
+        }
         if (generate.get()) {
           LOG.debug("Generating {}", generatedFile);
           if (!tmpFile.renameTo(generatedFile)) {
@@ -237,6 +316,58 @@ final class JspCachingServlet extends JettyJspServlet {
     return true;
   }
 
+  /**
+   * Adds {@code Link: rel=preload} headers for the resources referenced by the app's extensions in
+   * the HEAD section of the requested page, so the browser can fetch them while the page is still
+   * being rendered.
+   *
+   * These resources (in particular, resource bundles) depend on the components used by the page,
+   * so they are only known once the page has been rendered; nothing is sent for pages that haven't
+   * been rendered yet, or that don't render the HEAD section.
+   *
+   * If enabled via {@code dumbo.early-hints=true}, the headers are also sent ahead of the response
+   * as a {@code 103 Early Hints} interim response.
+   *
+   * @param app The app.
+   * @param path The page's servlet path.
+   * @param req The request.
+   * @param resp The response.
+   * @throws IOException on error.
+   */
+  private void sendPreloadLinks(ServerApp app, String path, HttpServletRequest req,
+      HttpServletResponse resp) throws IOException {
+    String links = app.getPagePreloadLinks(path);
+    if (links == null || resp.isCommitted()) {
+      return;
+    }
+    resp.addHeader("Link", links);
+
+    if (EARLY_HINTS && !"HTTP/1.0".equals(req.getProtocol())) {
+      // Jetty sends 1xx codes as interim responses, with the headers set so far
+      resp.sendError(SC_EARLY_HINTS);
+    }
+  }
+
+  /**
+   * Checks if the given JSP path denotes an HTML page, i.e., {@code *.html.jsp}, {@code *.htm.jsp}
+   * or a {@code *.jsp} without an inner suffix, but not, e.g., {@code *.js.jsp}.
+   *
+   * @param path The servlet path.
+   * @return {@code true} if the JSP renders an HTML page.
+   */
+  static boolean isHtmlPage(String path) {
+    if (!path.endsWith(".jsp")) {
+      return false;
+    }
+    String name = path.substring(path.lastIndexOf('/') + 1, path.length() - ".jsp".length());
+    int dot = name.lastIndexOf('.');
+    if (dot == -1) {
+      return true;
+    }
+    String suffix = name.substring(dot + 1);
+    return "html".equals(suffix) || "htm".equals(suffix);
+  }
+
   @Override
   public void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException,
       IOException {
@@ -251,13 +382,40 @@ final class JspCachingServlet extends JettyJspServlet {
       generatedPath = null;
     }
 
-    if (generatedPath == null || !checkCache(path, generatedPath, req, resp)) {
-      try {
-        super.service(req, resp);
-      } catch (IOException | ServletException | RuntimeException e) {
-        e.printStackTrace();
-        throw e;
+    ServerApp preloadApp = null;
+    if (PRELOAD_LINKS && isHtmlPage(path) && req.getDispatcherType() == DispatcherType.REQUEST) {
+      preloadApp = DumboServerImpl.getServerApp(context);
+      if (preloadApp != null) {
+        sendPreloadLinks(preloadApp, path, req, resp);
+        RenderState.get().setHtmlHeadPreloadLinks(null);
+      }
+    }
+
+    JspRenderEvent event = new JspRenderEvent();
+    event.begin();
+    try {
+      if (generatedPath == null || !checkCache(path, generatedPath, req, resp, event)) {
+        event.result = "uncached";
+        if (stats != null) {
+          stats.jspUncached();
+        }
+        try {
+          serviceJsp(req, resp);
+        } catch (IOException | ServletException | RuntimeException e) {
+          e.printStackTrace();
+          throw e;
+        }
+      }
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.path = path;
+        event.commit();
       }
     }
+
+    if (preloadApp != null) {
+      preloadApp.pageRendered(path, RenderState.get());
+    }
   }
 }
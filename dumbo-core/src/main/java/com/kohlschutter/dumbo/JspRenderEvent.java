@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for a JSP request handled by {@link JspCachingServlet}, including the lookup of
+ * the cached (generated) file and, if necessary, rendering the JSP.
+ *
+ * Disabled by default; enable it via a JFR settings file, or {@code Recording#enable(String)}.
+ *
+ * @author Christian Kohlschütter
+ */
+@Name("com.kohlschutter.dumbo.JspRender")
+@Label("JSP Render")
+@Category({"Dumbo", "Requests"})
+@Description("A JSP request handled by JspCachingServlet, including cache lookup and rendering")
+@Enabled(false)
+@Threshold("20 ms")
+@StackTrace(false)
+final class JspRenderEvent extends Event {
+  @Label("Path")
+  String path;
+
+  @Label("Cache Hit")
+  boolean cacheHit;
+
+  @Label("Result")
+  @Description("How the request was served: forward, generated, rendered, or uncached")
+  String result;
+}
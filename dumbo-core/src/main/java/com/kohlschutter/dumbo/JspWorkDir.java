@@ -0,0 +1,389 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.ee10.jsp.JettyJspServlet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * Computes a persistent, content-addressed location for compiled JSP files.
+ *
+ * If {@code dumbo.jsp.cache-dir} is set, compiled JSPs are kept below that directory, in a
+ * subdirectory named after a hash of everything that may affect the compiled classes: the Dumbo,
+ * Jasper and Java versions, the app, and fingerprints (size and modification time) of the code
+ * locations of all its components: jar files, and the JSP sources, tag library descriptors, jar and
+ * class files in directories. Compiled JSPs are therefore reused across restarts (and across
+ * replicas sharing the same volume), and automatically invalidated once anything changes. Since
+ * Jasper considers a compiled JSP outdated only if the modification time of its sources changes,
+ * it never recompiles a JSP found in a directory with the same key.
+ *
+ * Jasper never compiles into the shared directory directly: each process works on a private copy,
+ * made of hard links to the published files. Upon shutdown, the copy is published by atomically
+ * renaming it into place, or, if another process has already done so, files compiled in the
+ * meantime are added to the published directory, one by one.
+ *
+ * @author Christian Kohlschütter
+ */
+final class JspWorkDir {
+  private static final Logger LOG = LoggerFactory.getLogger(JspWorkDir.class);
+
+  /**
+   * The base directory for persistent JSP work directories, or {@code null} if disabled.
+   */
+  static final String CACHE_DIR = System.getProperty("dumbo.jsp.cache-dir");
+
+  private static final String TMP_INFIX = ".tmp-";
+
+  /**
+   * File name extensions of files in class directories and content paths that may affect the
+   * compiled JSPs (other files, e.g., static assets, are not considered).
+   */
+  private static final Set<String> FINGERPRINTED_EXTENSIONS = Set.of("jsp", "jspf", "jspx", "tag",
+      "tagx", "tld", "jar", "class");
+
+  /**
+   * Private copies of crashed processes are removed after this time.
+   */
+  private static final long STALE_TMP_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * Fingerprints of code locations, which are shared by many apps and components.
+   */
+  private static final Map<String, String> FINGERPRINTS = new ConcurrentHashMap<>();
+
+  private JspWorkDir() {
+    throw new IllegalStateException("No instances");
+  }
+
+  /**
+   * Returns a private JSP work directory for the given app, initialized with the contents of the
+   * persistent directory, if any. The directory is published upon shutdown.
+   *
+   * @param app The app.
+   * @param server The server (for the content paths in cached mode).
+   * @return The directory.
+   * @throws IOException on error.
+   */
+  @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+  static File forApp(ServerApp app, DumboServerImpl server) throws IOException {
+    MessageDigest md = newDigest();
+
+    update(md, "dumbo", versionOf(DumboServerImpl.class));
+    update(md, "jasper", versionOf(JettyJspServlet.class));
+    update(md, "java", System.getProperty("java.specification.version"));
+    update(md, "app", app.getApplicationClass().getName());
+    update(md, "prefix", app.getPrefix());
+
+    // sorted and deduplicated, since many components share the same jar
+    Set<String> locations = new TreeSet<>();
+    locations.add(String.valueOf(app.getWebappBaseURL()));
+    for (ExtensionImpl ext : app.getExtensions()) {
+      locations.add(codeLocation(ext.getComponentClass()));
+    }
+    for (Path p : server.getCachedPaths()) {
+      locations.add(p.toUri().toString());
+    }
+    for (String location : locations) {
+      update(md, "location", location);
+      update(md, "fingerprint", FINGERPRINTS.computeIfAbsent(location, JspWorkDir::fingerprint));
+    }
+
+    String key = app.getApplicationClass().getSimpleName() + "-" + Base64.getUrlEncoder()
+        .withoutPadding().encodeToString(md.digest()).substring(0, 22);
+
+    Path cacheDir = Paths.get(CACHE_DIR);
+    Files.createDirectories(cacheDir);
+    deleteStaleCopies(cacheDir);
+
+    Path published = cacheDir.resolve(key);
+    Path tmp = Files.createTempDirectory(cacheDir, key + TMP_INFIX);
+
+    if (Files.isDirectory(published)) {
+      try {
+        linkTree(published, tmp);
+        LOG.info("Using persistent JSP work directory: {} (linked to {})", published, tmp);
+      } catch (IOException e) {
+        // e.g., concurrently replaced; just compile again
+        LOG.warn("Cannot copy persistent JSP work directory {}", published, e);
+        deleteTree(tmp);
+        Files.createDirectories(tmp);
+      }
+    } else {
+      LOG.info("Creating persistent JSP work directory: {} (via {})", published, tmp);
+    }
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> publish(tmp, published)));
+    return tmp.toFile();
+  }
+
+  /**
+   * Publishes the given private copy as the persistent directory, or adds the files missing there,
+   * if another process has already published it.
+   *
+   * @param tmp The private copy.
+   * @param published The persistent directory.
+   */
+  private static void publish(Path tmp, Path published) {
+    try {
+      if (!Files.exists(published)) {
+        Files.move(tmp, published, StandardCopyOption.ATOMIC_MOVE);
+        return;
+      }
+    } catch (IOException e) {
+      if (!Files.exists(published)) {
+        LOG.warn("Cannot publish JSP work directory {}", published, e);
+      } // otherwise, another process was quicker
+    }
+    try {
+      mergeTree(tmp, published);
+    } catch (IOException e) {
+      LOG.warn("Cannot add newly compiled JSPs to {}", published, e);
+    }
+    try {
+      deleteTree(tmp);
+    } catch (IOException e) {
+      LOG.warn("Cannot delete JSP work directory {}", tmp, e);
+    }
+  }
+
+  private static void deleteStaleCopies(Path cacheDir) {
+    long minTime = System.currentTimeMillis() - STALE_TMP_MILLIS;
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(cacheDir, "*" + TMP_INFIX + "*")) {
+      for (Path p : ds) {
+        if (Files.getLastModifiedTime(p).toMillis() < minTime) {
+          deleteTree(p);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot clean up JSP work directories in {}", cacheDir, e);
+    }
+  }
+
+  /**
+   * Populates the target directory with hard links to the files in the source directory (or
+   * copies, if the file system doesn't support hard links).
+   *
+   * Linking is safe since Jasper never rewrites files compiled for the same key (see above).
+   *
+   * @param source The source directory.
+   * @param target The target directory.
+   * @throws IOException on error.
+   */
+  private static void linkTree(Path source, Path target) throws IOException {
+    try (Stream<Path> stream = Files.walk(source)) {
+      for (Path p : (Iterable<Path>) stream::iterator) {
+        Path t = target.resolve(source.relativize(p).toString());
+        if (Files.isDirectory(p)) {
+          Files.createDirectories(t);
+        } else if (!p.getFileName().toString().contains(TMP_INFIX)) {
+          linkOrCopy(p, t);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the files of the source directory that are missing in the target directory.
+   *
+   * Files are added in sorted order, so nested classes (e.g., {@code Foo$1.class}) appear before
+   * their outer class ({@code Foo.class}), which is what Jasper looks for.
+   *
+   * @param source The source directory.
+   * @param target The target directory.
+   * @throws IOException on error.
+   */
+  private static void mergeTree(Path source, Path target) throws IOException {
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(source)) {
+      files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    int added = 0;
+    for (Path p : files) {
+      Path t = target.resolve(source.relativize(p).toString());
+      if (Files.exists(t)) {
+        continue;
+      }
+      Files.createDirectories(t.getParent());
+      try {
+        linkOrCopy(p, t);
+        added++;
+      } catch (FileAlreadyExistsException e) {
+        // added by another process
+      }
+    }
+    if (added > 0) {
+      LOG.info("Added {} files to persistent JSP work directory {}", added, target);
+    }
+  }
+
+  /**
+   * Atomically creates the target file as a hard link to, or a copy of, the source file.
+   *
+   * @param source The source file.
+   * @param target The target file.
+   * @throws FileAlreadyExistsException if the target file already exists.
+   * @throws IOException on error.
+   */
+  private static void linkOrCopy(Path source, Path target) throws IOException {
+    try {
+      Files.createLink(target, source);
+      return;
+    } catch (UnsupportedOperationException | FileSystemException e) {
+      if (e instanceof FileAlreadyExistsException) {
+        throw (FileAlreadyExistsException) e;
+      }
+      // fall back to copying
+    }
+
+    // keep modification times, since Jasper compares them to the JSP sources
+    Path tmp = target.resolveSibling(target.getFileName() + TMP_INFIX + ProcessHandle.current()
+        .pid());
+    Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.COPY_ATTRIBUTES);
+    try {
+      if (Files.exists(target)) {
+        throw new FileAlreadyExistsException(target.toString());
+      }
+      Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static void deleteTree(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+    try (Stream<Path> stream = Files.walk(dir)) {
+      for (Path p : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.deleteIfExists(p);
+      }
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void update(MessageDigest md, String key, String value) {
+    md.update((key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String versionOf(Class<?> klazz) {
+    Package pkg = klazz.getPackage();
+    String version = pkg == null ? null : pkg.getImplementationVersion();
+    return version == null ? codeLocation(klazz) : version;
+  }
+
+  private static String codeLocation(Class<?> klazz) {
+    ProtectionDomain pd = klazz.getProtectionDomain();
+    CodeSource cs = pd == null ? null : pd.getCodeSource();
+    URL url = cs == null ? null : cs.getLocation();
+    return url == null ? "" : url.toString();
+  }
+
+  /**
+   * Returns a fingerprint (size and modification time) of the file denoted by the given URL, or of
+   * the relevant files (see {@link #FINGERPRINTED_EXTENSIONS}) in the directory denoted by it,
+   * along with their relative paths.
+   *
+   * Only metadata is read, so this is cheap even for large jars and directories. Modification
+   * times are what Jasper uses to detect changes, too.
+   *
+   * @param location The URL.
+   * @return The fingerprint, or an empty string if the location cannot be read.
+   */
+  private static String fingerprint(String location) {
+    Path path;
+    try {
+      if (!location.startsWith("file:")) {
+        return "";
+      }
+      path = Paths.get(new URL(location).toURI());
+    } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+      return "";
+    }
+
+    MessageDigest md = newDigest();
+    try {
+      if (Files.isDirectory(path)) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(path)) {
+          files = stream.filter((f) -> FINGERPRINTED_EXTENSIONS.contains(extension(f)) && Files
+              .isRegularFile(f)).sorted().collect(Collectors.toList());
+        }
+        for (Path f : files) {
+          update(md, "file", path.relativize(f).toString());
+          update(md, "stat", stat(f));
+        }
+      } else if (Files.isRegularFile(path)) {
+        update(md, "stat", stat(path));
+      } else {
+        return "";
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot fingerprint {}", path, e);
+      return "";
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest());
+  }
+
+  private static String extension(Path f) {
+    String name = f.getFileName().toString();
+    return name.substring(name.lastIndexOf('.') + 1);
+  }
+
+  private static String stat(Path f) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(f, BasicFileAttributes.class);
+    return attrs.size() + "/" + attrs.lastModifiedTime().toMillis();
+  }
+}
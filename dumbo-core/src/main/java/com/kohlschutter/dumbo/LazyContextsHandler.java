@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.util.Callback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates contexts upon the first request to their context path, and adds them to the wrapped
+ * {@link ContextHandlerCollection}.
+ *
+ * Once all pending contexts have been created, the overhead per request is a single check of an
+ * empty list.
+ *
+ * If a context cannot be created, the failure is not retried upon every request; instead, its
+ * context path is answered with {@code 503 Service Unavailable} from then on.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LazyContextsHandler extends Handler.Wrapper {
+  private static final Logger LOG = LoggerFactory.getLogger(LazyContextsHandler.class);
+
+  private final ContextHandlerCollection contextHandlers;
+  private final List<Pending> pending = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates a context.
+   */
+  @FunctionalInterface
+  interface ContextSupplier {
+    /**
+     * Creates the context.
+     *
+     * @return The context, or {@code null} if there is nothing to serve.
+     * @throws IOException on error.
+     */
+    ContextHandler get() throws IOException;
+  }
+
+  private static final class Pending {
+    private final String contextPath;
+    private final ContextSupplier supplier;
+    private final Consumer<ContextHandler> onStarted;
+    private boolean done;
+
+    Pending(String contextPath, ContextSupplier supplier, Consumer<ContextHandler> onStarted) {
+      this.contextPath = contextPath.replaceFirst("/+$", "");
+      this.supplier = supplier;
+      this.onStarted = onStarted;
+    }
+
+    boolean matches(String path) {
+      return path.startsWith(contextPath) && (path.length() == contextPath.length() || path.charAt(
+          contextPath.length()) == '/');
+    }
+  }
+
+  LazyContextsHandler(ContextHandlerCollection contextHandlers) {
+    super(contextHandlers);
+    this.contextHandlers = contextHandlers;
+  }
+
+  /**
+   * Registers a context that should be created upon the first request to the given path.
+   *
+   * @param contextPath The context path.
+   * @param supplier The supplier creating the context.
+   */
+  void addPending(String contextPath, ContextSupplier supplier) {
+    addPending(contextPath, supplier, (ch) -> {
+    });
+  }
+
+  /**
+   * Registers a context that should be created upon the first request to the given path.
+   *
+   * @param contextPath The context path.
+   * @param supplier The supplier creating the context.
+   * @param onStarted Called with the created context once it has been started.
+   */
+  void addPending(String contextPath, ContextSupplier supplier,
+      Consumer<ContextHandler> onStarted) {
+    pending.add(new Pending(contextPath, supplier, onStarted));
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    if (!pending.isEmpty()) {
+      String path = Request.getPathInContext(request);
+      if (path != null) {
+        for (Pending p : pending) {
+          if (p.matches(path)) {
+            init(p);
+          }
+        }
+      }
+    }
+    return super.handle(request, response, callback);
+  }
+
+  private void init(Pending p) throws Exception {
+    synchronized (p) {
+      if (p.done) {
+        return;
+      }
+      long time = System.currentTimeMillis();
+      ContextHandler ch = null;
+      try {
+        ch = p.supplier.get();
+        if (ch != null) {
+          contextHandlers.addHandler(ch);
+          if (!ch.isStarted()) {
+            ch.start();
+          }
+          p.onStarted.accept(ch);
+        }
+      } catch (Exception e) { // NOPMD.AvoidCatchingGenericException
+        LOG.error("Could not initialize context {} on demand", p.contextPath, e);
+        if (ch != null) {
+          contextHandlers.removeHandler(ch);
+        }
+        ContextHandler unavailable = new ContextHandler(newUnavailableHandler(), p.contextPath
+            .isEmpty() ? "/" : p.contextPath);
+        contextHandlers.addHandler(unavailable);
+        if (!unavailable.isStarted()) {
+          unavailable.start();
+        }
+      }
+      p.done = true;
+      pending.remove(p);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Initialized context {} on demand in {}ms", p.contextPath, System
+            .currentTimeMillis() - time);
+      }
+    }
+  }
+
+  private static Handler newUnavailableHandler() {
+    return new Handler.Abstract() {
+      @Override
+      public boolean handle(Request request, Response response, Callback callback) {
+        Response.writeError(request, response, callback, HttpStatus.SERVICE_UNAVAILABLE_503);
+        return true;
+      }
+    };
+  }
+}
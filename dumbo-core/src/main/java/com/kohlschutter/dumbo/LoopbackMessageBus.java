@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import com.kohlschutter.dumbo.api.DumboMessageBus;
+
+/**
+ * A {@link DumboMessageBus} that connects servers within the same JVM, e.g., for tests.
+ *
+ * Messages are delivered in order, from a separate thread. The same instance can be shared by
+ * multiple servers; closing it has no effect.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LoopbackMessageBus implements DumboMessageBus {
+  private final MessageBusSubscribers subscribers = new MessageBusSubscribers();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor((r) -> {
+    Thread t = new Thread(r, "LoopbackMessageBus");
+    t.setDaemon(true);
+    return t;
+  });
+
+  /**
+   * Creates a new {@link LoopbackMessageBus}.
+   */
+  public LoopbackMessageBus() {
+  }
+
+  @Override
+  public void publish(String topic, byte[] message) throws IOException {
+    try {
+      executor.execute(() -> subscribers.dispatch(topic, message));
+    } catch (RejectedExecutionException e) {
+      throw new IOException("Cannot publish message", e);
+    }
+  }
+
+  @Override
+  public Subscription subscribe(String topic, Consumer<byte[]> listener) {
+    return subscribers.subscribe(topic, listener);
+  }
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+import com.kohlschutter.dumbo.api.DumboStateStore;
+
+/**
+ * A {@link DumboStateStore} that keeps serialized attributes in files, which are memory-mapped
+ * when read.
+ *
+ * Within an access window (usually an RPC request), attributes are deserialized into the heap upon
+ * first access, and repeated lookups return the same instance. When the last access window of a
+ * scope ends, its attributes are serialized again, and only those that have been set or modified
+ * in place are written back; all of them are then evicted from the heap. Outside access windows,
+ * lookups return a fresh copy, and values that are set are written immediately.
+ *
+ * Attribute values that are not {@link Serializable} are kept on the heap as-is (and are lost upon
+ * restart). Scopes that haven't been modified for a while (see {@code dumbo.state-store.max-age})
+ * are removed when the store is opened.
+ *
+ * Only one process can use the directory at a time, which is enforced via a file lock; a process
+ * that opens the store waits for a while (see {@code dumbo.state-store.lock-timeout}) for the
+ * previous one to close it, e.g., during a restart. The directory must not be writable by
+ * untrusted parties, since its files are deserialized.
+ *
+ * @author Christian Kohlschütter
+ */
+final class MappedStateStore implements DumboStateStore {
+  private static final Logger LOG = LoggerFactory.getLogger(MappedStateStore.class);
+
+  /**
+   * The time (in milliseconds) after which a scope that hasn't been modified is removed upon
+   * startup, or {@code 0} to keep all scopes.
+   */
+  private static final long MAX_AGE_MILLIS = Long.getLong("dumbo.state-store.max-age", 24L * 60
+      * 60 * 1000);
+
+  /**
+   * The time (in milliseconds) to wait for another process to release the directory.
+   */
+  private static final long LOCK_TIMEOUT_MILLIS = Long.getLong("dumbo.state-store.lock-timeout",
+      10_000);
+
+  private static final String SUFFIX = ".ser";
+  private static final String LOCK_FILE = ".lock";
+
+  private final Path directory;
+  private final Map<String, Scope> scopes = new ConcurrentHashMap<>();
+  private final FileChannel lockChannel;
+
+  /**
+   * Opens the store in the given directory, which is created if necessary.
+   *
+   * @param directory The directory.
+   * @throws IOException on error, or if the directory is in use by another process.
+   */
+  MappedStateStore(Path directory) throws IOException {
+    this(directory, LOCK_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Opens the store in the given directory, which is created if necessary.
+   *
+   * @param directory The directory.
+   * @param lockTimeoutMillis The time to wait for another process to release the directory.
+   * @throws IOException on error, or if the directory is in use by another process.
+   */
+  @SuppressFBWarnings({"PATH_TRAVERSAL_IN", "CT_CONSTRUCTOR_THROW"})
+  MappedStateStore(Path directory, long lockTimeoutMillis) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.lockChannel = FileChannel.open(this.directory.resolve(LOCK_FILE),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      lock(lockTimeoutMillis);
+      pruneExpired();
+    } catch (IOException | RuntimeException e) {
+      lockChannel.close();
+      throw e;
+    }
+  }
+
+  private void lock(long timeoutMillis) throws IOException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      try {
+        if (lockChannel.tryLock() != null) {
+          return;
+        }
+      } catch (OverlappingFileLockException e) {
+        // held by another store in this JVM
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        throw new IOException("State store directory is in use by another process: "
+            + directory);
+      }
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for " + directory);
+      }
+    }
+  }
+
+  private static final class Scope {
+    private final Path dir;
+    private final Map<String, Object> live = new HashMap<>();
+    private final Map<String, Long> checksums = new HashMap<>();
+    private final Map<String, Object> heapOnly = new HashMap<>();
+    private int active;
+    private boolean detached;
+
+    Scope(Path dir) {
+      this.dir = dir;
+    }
+  }
+
+  private <T> T withScope(String name, Function<Scope, T> op) {
+    while (true) {
+      Scope scope = scopes.computeIfAbsent(name, (k) -> new Scope(directory.resolve(hash(k))));
+      synchronized (scope) {
+        if (scope.detached) {
+          continue;
+        }
+        try {
+          return op.apply(scope);
+        } finally {
+          if (!scope.detached && scope.active == 0 && scope.live.isEmpty() && scope.heapOnly
+              .isEmpty()) {
+            scope.detached = true;
+            scopes.remove(name, scope);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public Object get(String scope, String key) {
+    return withScope(scope, (s) -> {
+      Object value = s.heapOnly.get(key);
+      if (value == null) {
+        value = s.live.get(key);
+      }
+      if (value == null) {
+        CRC32 crc = new CRC32();
+        value = read(file(s, key), crc);
+        if (value != null && s.active > 0) {
+          s.live.put(key, value);
+          s.checksums.put(key, crc.getValue());
+        }
+      }
+      return value;
+    });
+  }
+
+  @Override
+  public void put(String scope, String key, Object value) {
+    withScope(scope, (s) -> {
+      s.heapOnly.remove(key);
+      s.live.remove(key);
+      s.checksums.remove(key);
+      if (value == null) {
+        delete(file(s, key));
+      } else if (value instanceof Serializable && s.active > 0) {
+        // written back when the access window ends
+        s.live.put(key, value);
+      } else {
+        writeOrKeepOnHeap(s, key, value);
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public boolean containsScope(String scope) {
+    return withScope(scope, (s) -> {
+      if (!s.heapOnly.isEmpty() || !s.live.isEmpty()) {
+        return true;
+      }
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(s.dir, "*" + SUFFIX)) {
+        return files.iterator().hasNext();
+      } catch (NoSuchFileException e) {
+        return false;
+      } catch (IOException e) {
+        LOG.warn("Cannot access {}", s.dir, e);
+        return false;
+      }
+    });
+  }
+
+  @Override
+  public void removeScope(String scope) {
+    withScope(scope, (s) -> {
+      s.live.clear();
+      s.checksums.clear();
+      s.heapOnly.clear();
+      deleteScopeDirectory(s.dir);
+      return null;
+    });
+  }
+
+  @Override
+  public void renameScope(String scope, String newScope) {
+    Map<String, Object> onHeap = withScope(scope, (s) -> {
+      Map<String, Object> map = new HashMap<>(s.heapOnly);
+      map.putAll(s.live);
+      s.heapOnly.clear();
+      s.live.clear();
+      s.checksums.clear();
+      Path newDir = directory.resolve(hash(newScope));
+      try {
+        deleteScopeDirectory(newDir);
+        Files.move(s.dir, newDir, StandardCopyOption.ATOMIC_MOVE);
+      } catch (NoSuchFileException e) {
+        // no serialized attributes
+      } catch (IOException e) {
+        LOG.warn("Cannot move {} to {}", s.dir, newDir, e);
+      }
+      return map;
+    });
+    for (Map.Entry<String, Object> en : onHeap.entrySet()) {
+      put(newScope, en.getKey(), en.getValue());
+    }
+  }
+
+  @Override
+  public void beginAccess(String scope) {
+    withScope(scope, (s) -> {
+      s.active++;
+      return null;
+    });
+  }
+
+  @Override
+  public void endAccess(String scope) {
+    withScope(scope, (s) -> {
+      if (s.active > 0 && --s.active == 0) {
+        writeBack(s);
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public boolean isPersistent() {
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      for (Scope s : scopes.values()) {
+        synchronized (s) {
+          writeBack(s);
+        }
+      }
+    } finally {
+      lockChannel.close(); // releases the lock
+    }
+  }
+
+  /**
+   * Writes back the attributes that have been set or modified in place since they were read, and
+   * evicts them from the heap. Attributes that cannot be serialized right now are kept, and retried
+   * when the next access window ends.
+   */
+  private static void writeBack(Scope s) {
+    for (Iterator<Map.Entry<String, Object>> it = s.live.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<String, Object> en = it.next();
+      String key = en.getKey();
+      Object value = en.getValue();
+      ByteArrayOutputStream bos = serialize(value);
+      if (bos == null) {
+        s.heapOnly.put(key, value);
+        delete(file(s, key));
+      } else if (bos.size() == 0) {
+        continue; // retry when the next access window ends
+      } else {
+        Long checksum = s.checksums.get(key);
+        if (checksum == null || checksum != checksum(bos)) {
+          write(s, file(s, key), bos);
+        }
+      }
+      s.checksums.remove(key);
+      it.remove();
+    }
+  }
+
+  private static void writeOrKeepOnHeap(Scope s, String key, Object value) {
+    ByteArrayOutputStream bos = serialize(value);
+    if (bos == null || bos.size() == 0) {
+      s.heapOnly.put(key, value);
+      delete(file(s, key));
+    } else {
+      write(s, file(s, key), bos);
+    }
+  }
+
+  private static Path file(Scope s, String key) {
+    return s.dir.resolve(hash(key) + SUFFIX);
+  }
+
+  private static String hash(String s) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    byte[] digest = md.digest(s.getBytes(StandardCharsets.UTF_8));
+    StringBuilder sb = new StringBuilder(digest.length * 2);
+    for (byte b : digest) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  @SuppressFBWarnings("OBJECT_DESERIALIZATION")
+  private static Object read(Path file, CRC32 crc) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) {
+        return null;
+      }
+      ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      crc.update(buf.duplicate());
+      try (ObjectInputStream in = new ContextObjectInputStream(new ByteBufferInputStream(buf))) {
+        return in.readObject();
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      LOG.warn("Cannot read attribute from {}", file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Serializes the given value.
+   *
+   * @param value The value.
+   * @return The serialized form, {@code null} if the value is not serializable, or an empty stream
+   *         if serialization failed otherwise (e.g., because another thread modified the value
+   *         concurrently), in which case the previously written value should be kept.
+   */
+  private static ByteArrayOutputStream serialize(Object value) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+      out.writeObject(value);
+    } catch (NotSerializableException e) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Keeping attribute on heap: " + e);
+      }
+      return null;
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Cannot serialize attribute of type {}", value.getClass(), e);
+      bos.reset();
+    }
+    return bos;
+  }
+
+  private static long checksum(ByteArrayOutputStream bos) {
+    CRC32 crc = new CRC32();
+    crc.update(bos.toByteArray());
+    return crc.getValue();
+  }
+
+  private static void write(Scope s, Path file, ByteArrayOutputStream bos) {
+    Path tmp = null;
+    try {
+      Files.createDirectories(s.dir);
+      tmp = Files.createTempFile(s.dir, null, ".tmp");
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        bos.writeTo(out);
+      }
+      Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      tmp = null;
+    } catch (IOException e) {
+      LOG.warn("Cannot write attribute to {}", file, e);
+    } finally {
+      if (tmp != null) {
+        delete(tmp);
+      }
+    }
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOG.warn("Cannot delete {}", file, e);
+    }
+  }
+
+  private static void deleteScopeDirectory(Path dir) {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (Path f : files) {
+        delete(f);
+      }
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      LOG.warn("Cannot access {}", dir, e);
+    }
+    delete(dir);
+  }
+
+  private void pruneExpired() throws IOException {
+    if (MAX_AGE_MILLIS <= 0) {
+      return;
+    }
+    long cutoff = System.currentTimeMillis() - MAX_AGE_MILLIS;
+    int pruned = 0;
+    try (DirectoryStream<Path> dirs = Files.newDirectoryStream(directory, Files::isDirectory)) {
+      for (Path dir : dirs) {
+        if (Files.getLastModifiedTime(dir).toMillis() < cutoff) {
+          deleteScopeDirectory(dir);
+          pruned++;
+        }
+      }
+    }
+    if (pruned > 0 && LOG.isInfoEnabled()) {
+      LOG.info("Removed " + pruned + " expired scopes from " + directory);
+    }
+  }
+
+  /**
+   * Resolves classes via the thread's context classloader (usually the webapp's) first.
+   */
+  private static final class ContextObjectInputStream extends ObjectInputStream {
+    ContextObjectInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+        ClassNotFoundException {
+      ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      if (cl != null) {
+        try {
+          return Class.forName(desc.getName(), false, cl);
+        } catch (ClassNotFoundException e) {
+          // try default
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buf;
+
+    ByteBufferInputStream(ByteBuffer buf) {
+      super();
+      this.buf = buf;
+    }
+
+    @Override
+    public int read() {
+      return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      } else if (!buf.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buf.remaining();
+    }
+  }
+}
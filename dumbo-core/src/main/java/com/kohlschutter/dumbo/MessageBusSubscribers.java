@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.dumbo.api.DumboMessageBus;
+
+/**
+ * Keeps track of the local subscribers of a {@link DumboMessageBus}.
+ *
+ * @author Christian Kohlschütter
+ */
+final class MessageBusSubscribers {
+  private static final Logger LOG = LoggerFactory.getLogger(MessageBusSubscribers.class);
+
+  private final Map<String, List<Consumer<byte[]>>> subscribers = new ConcurrentHashMap<>();
+
+  MessageBusSubscribers() {
+  }
+
+  /**
+   * Adds a subscriber.
+   *
+   * @param topic The topic.
+   * @param listener The listener.
+   * @return The subscription.
+   */
+  DumboMessageBus.Subscription subscribe(String topic, Consumer<byte[]> listener) {
+    subscribers.compute(topic, (k, list) -> {
+      List<Consumer<byte[]>> l = list == null ? new CopyOnWriteArrayList<>() : list;
+      l.add(listener);
+      return l;
+    });
+    return () -> subscribers.computeIfPresent(topic, (k, list) -> {
+      list.remove(listener);
+      return list.isEmpty() ? null : list;
+    });
+  }
+
+  /**
+   * Delivers a message to all subscribers of the given topic.
+   *
+   * @param topic The topic.
+   * @param message The message.
+   */
+  void dispatch(String topic, byte[] message) {
+    List<Consumer<byte[]>> list = subscribers.get(topic);
+    if (list == null) {
+      return;
+    }
+    for (Consumer<byte[]> listener : list) {
+      try {
+        listener.accept(message);
+      } catch (RuntimeException e) {
+        LOG.warn("Message listener failed for topic {}", topic, e);
+      }
+    }
+  }
+}
@@ -16,12 +16,16 @@
  */
 package com.kohlschutter.dumbo;
 
+import java.io.Serializable;
+
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 
 /**
  * A series of chunks, encapsulated into one.
  */
-public final class MultipleChunks {
+public final class MultipleChunks implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private final Object[] chunks;
 
   @SuppressWarnings("PMD.ArrayIsStoredDirectly")
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+/**
+ * A single-file, indexed archive of static content, served via memory-mapping.
+ *
+ * The archive layout is:
+ * <ol>
+ * <li>8 bytes magic {@code DUMBOPK1}, followed by the 8-byte offset of the index.</li>
+ * <li>The raw data of all entries (and their gzip-compressed variants, where worthwhile).</li>
+ * <li>The index: the number of entries, followed by (path, ETag, offset, length, gzip offset, gzip
+ * length) for each entry; gzip length is {@code -1} if there is no compressed variant.</li>
+ * </ol>
+ *
+ * Entries are served as read-only {@link ByteBuffer} slices of the mapped file, so no
+ * {@code open()} is necessary per request, and the content does not need to be copied into the
+ * heap.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PackedContent {
+  private static final Logger LOG = LoggerFactory.getLogger(PackedContent.class);
+
+  /**
+   * The file name of the packed archive, relative to the content base path.
+   */
+  static final String ARCHIVE_FILENAME = "static.dumbopack";
+
+  private static final byte[] MAGIC = "DUMBOPK1".getBytes(StandardCharsets.US_ASCII);
+  private static final int HEADER_LENGTH = MAGIC.length + Long.BYTES;
+  private static final int MIN_COMPRESS_LENGTH = 256;
+
+  /**
+   * The suffix appended to an entry's ETag (within the quotes) to identify its gzip-compressed
+   * representation, matching Jetty's own convention for precompressed content.
+   */
+  private static final String GZIP_ETAG_SUFFIX = "--gzip";
+
+  private static final Set<String> COMPRESSIBLE_SUFFIXES = Set.of("html", "htm", "css", "js",
+      "mjs", "json", "map", "svg", "txt", "xml", "wasm", "md", "csv", "ico");
+
+  private final Map<String, Entry> entries;
+
+  private PackedContent(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * An entry in the archive.
+   */
+  static final class Entry {
+    private final String contentType;
+    private final String etag;
+    private final String gzipEtag;
+    private final ByteBuffer content;
+    private final ByteBuffer gzipContent;
+
+    Entry(String contentType, String etag, ByteBuffer content, ByteBuffer gzipContent) {
+      this.contentType = contentType;
+      this.etag = etag;
+      this.gzipEtag = gzipContent == null ? null : gzipETag(etag);
+      this.content = content;
+      this.gzipContent = gzipContent;
+    }
+
+    String getContentType() {
+      return contentType;
+    }
+
+    String getETag() {
+      return etag;
+    }
+
+    /**
+     * Returns the ETag of the gzip-compressed representation, or {@code null} if there is no
+     * compressed variant.
+     *
+     * @return The ETag, or {@code null}.
+     */
+    String getGzipETag() {
+      return gzipEtag;
+    }
+
+    /**
+     * Returns a new read-only view of the uncompressed content.
+     *
+     * @return The content.
+     */
+    ByteBuffer getContent() {
+      return content.slice();
+    }
+
+    /**
+     * Returns a new read-only view of the gzip-compressed content, or {@code null} if there is no
+     * compressed variant.
+     *
+     * @return The compressed content, or {@code null}.
+     */
+    ByteBuffer getGzipContent() {
+      return gzipContent == null ? null : gzipContent.slice();
+    }
+
+    int getContentLength() {
+      return content.remaining();
+    }
+  }
+
+  /**
+   * Returns the entry for the given path (relative to the content root, without leading slash).
+   *
+   * @param relativePath The relative path.
+   * @return The entry, or {@code null} if not found.
+   */
+  Entry get(String relativePath) {
+    return entries.get(relativePath);
+  }
+
+  boolean contains(String relativePath) {
+    return entries.containsKey(relativePath);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Opens an existing archive, memory-mapping its contents.
+   *
+   * @param archive The archive file.
+   * @param contentTypeFunction Resolves the content type for a given path.
+   * @return The archive.
+   * @throws IOException on error.
+   */
+  static PackedContent open(Path archive, Function<String, String> contentTypeFunction)
+      throws IOException {
+    MappedByteBuffer mapped;
+    try (FileChannel fc = FileChannel.open(archive, StandardOpenOption.READ)) {
+      long size = fc.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Archive too large to be mapped: " + archive);
+      }
+      mapped = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    ByteBuffer buf = mapped.asReadOnlyBuffer();
+
+    byte[] magic = new byte[MAGIC.length];
+    if (buf.remaining() < HEADER_LENGTH) {
+      throw new IOException("Not a packed content archive: " + archive);
+    }
+    buf.get(magic);
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IOException("Not a packed content archive: " + archive);
+    }
+    long indexOffset = buf.getLong();
+    if (indexOffset < HEADER_LENGTH || indexOffset > buf.limit()) {
+      throw new IOException("Corrupt packed content archive: " + archive);
+    }
+
+    byte[] index = new byte[buf.limit() - (int) indexOffset];
+    buf.position((int) indexOffset);
+    buf.get(index);
+
+    Map<String, Entry> entries = new HashMap<>();
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index))) {
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        String etag = in.readUTF();
+        long offset = in.readLong();
+        int length = in.readInt();
+        long gzOffset = in.readLong();
+        int gzLength = in.readInt();
+
+        ByteBuffer content = slice(buf, offset, length);
+        ByteBuffer gzipContent = gzLength < 0 ? null : slice(buf, gzOffset, gzLength);
+
+        entries.put(path, new Entry(contentTypeFunction.apply(path), etag, content,
+            gzipContent));
+      }
+    }
+
+    LOG.info("Opened packed content archive {} with {} entries", archive, entries.size());
+    return new PackedContent(Collections.unmodifiableMap(entries));
+  }
+
+  private static ByteBuffer slice(ByteBuffer buf, long offset, int length) throws IOException {
+    if (offset < HEADER_LENGTH || offset + length > buf.limit()) {
+      throw new IOException("Corrupt packed content archive: Entry out of bounds");
+    }
+    ByteBuffer dup = buf.duplicate();
+    dup.position((int) offset);
+    dup.limit((int) offset + length);
+    return dup.slice();
+  }
+
+  /**
+   * Writes an archive containing all regular files below the given directory.
+   *
+   * @param contentDir The content directory.
+   * @param archive The target archive file.
+   * @throws IOException on error.
+   */
+  @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+  static void write(Path contentDir, Path archive) throws IOException {
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(contentDir)) {
+      files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+
+    ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    try (FileChannel out = FileChannel.open(archive, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        DataOutputStream index = new DataOutputStream(indexBytes)) {
+      out.position(HEADER_LENGTH);
+
+      index.writeInt(files.size());
+      for (Path f : files) {
+        String relativePath = contentDir.relativize(f).toString().replace(f.getFileSystem()
+            .getSeparator(), "/");
+        byte[] data = Files.readAllBytes(f);
+
+        long offset = writeFully(out, ByteBuffer.wrap(data));
+
+        byte[] gzData = isCompressible(relativePath, data.length) ? gzip(data) : null;
+        long gzOffset = -1;
+        int gzLength = -1;
+        if (gzData != null && gzData.length < data.length * 9L / 10) {
+          gzOffset = writeFully(out, ByteBuffer.wrap(gzData));
+          gzLength = gzData.length;
+        }
+
+        index.writeUTF(relativePath);
+        index.writeUTF(etag(data));
+        index.writeLong(offset);
+        index.writeInt(data.length);
+        index.writeLong(gzOffset);
+        index.writeInt(gzLength);
+      }
+      index.flush();
+
+      long indexOffset = writeFully(out, ByteBuffer.wrap(indexBytes.toByteArray()));
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      header.put(MAGIC);
+      header.putLong(indexOffset);
+      header.flip();
+      out.position(0);
+      writeFully(out, header);
+    }
+
+    LOG.info("Wrote packed content archive {} with {} entries", archive, files.size());
+  }
+
+  private static long writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+    long pos = out.position();
+    while (buf.hasRemaining()) {
+      out.write(buf);
+    }
+    return pos;
+  }
+
+  private static boolean isCompressible(String path, int length) {
+    if (length < MIN_COMPRESS_LENGTH) {
+      return false;
+    }
+    int lastDot = path.lastIndexOf('.');
+    if (lastDot == -1) {
+      return false;
+    }
+    return COMPRESSIBLE_SUFFIXES.contains(path.substring(lastDot + 1).toLowerCase(Locale.ENGLISH));
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2);
+    try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+      gz.write(data);
+    }
+    return bos.toByteArray();
+  }
+
+  private static String gzipETag(String etag) {
+    if (etag.endsWith("\"")) {
+      return etag.substring(0, etag.length() - 1) + GZIP_ETAG_SUFFIX + "\"";
+    } else {
+      return etag + GZIP_ETAG_SUFFIX;
+    }
+  }
+
+  private static String etag(byte[] data) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest(data)).substring(
+        0, 22) + "\"";
+  }
+}
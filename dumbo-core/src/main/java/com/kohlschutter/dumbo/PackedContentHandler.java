@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * Serves static content directly from a memory-mapped {@link PackedContent} archive, and delegates
+ * all other requests to the wrapped handler.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PackedContentHandler extends Handler.Wrapper {
+  private static final HttpField VARY_ACCEPT_ENCODING = new HttpField(HttpHeader.VARY,
+      HttpHeader.ACCEPT_ENCODING.asString());
+  private static final HttpField CONTENT_ENCODING_GZIP = new HttpField(
+      HttpHeader.CONTENT_ENCODING, "gzip");
+  private static final HttpField CACHE_CONTROL_REVALIDATE = new HttpField(HttpHeader.CACHE_CONTROL,
+      "no-cache");
+  private static final HttpField CACHE_CONTROL_IMMUTABLE = new HttpField(HttpHeader.CACHE_CONTROL,
+      ImmutableCacheFilter.CACHE_CONTROL_IMMUTABLE);
+
+  private final DumboServerImpl server;
+  private final PackedContent content;
+  private final List<String> contextPaths;
+
+  /**
+   * Creates a new {@link PackedContentHandler}.
+   *
+   * @param server The server.
+   * @param content The archive.
+   * @param contextPaths The context paths of the apps the archive's root is served for.
+   * @param delegate The handler for any other requests.
+   */
+  PackedContentHandler(DumboServerImpl server, PackedContent content,
+      Collection<String> contextPaths, Handler delegate) {
+    super(delegate);
+    this.server = server;
+    this.content = content;
+    this.contextPaths = new ArrayList<>(contextPaths);
+    this.contextPaths.sort((a, b) -> b.length() - a.length());
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    String method = request.getMethod();
+    boolean head = HttpMethod.HEAD.is(method);
+    if (!head && !HttpMethod.GET.is(method)) {
+      return super.handle(request, response, callback);
+    }
+
+    String path = Request.getPathInContext(request);
+    String relativePath = lookup(path);
+    if (relativePath == null) {
+      return super.handle(request, response, callback);
+    }
+    PackedContent.Entry entry = content.get(relativePath);
+
+    HttpFields requestHeaders = request.getHeaders();
+    HttpFields.Mutable headers = response.getHeaders();
+
+    ByteBuffer body;
+    String etag;
+    ByteBuffer gzip = entry.getGzipContent();
+    if (gzip != null) {
+      // both representations vary by Accept-Encoding, and each has its own (strong) ETag
+      headers.put(VARY_ACCEPT_ENCODING);
+    }
+    if (gzip != null && requestHeaders.getQualityCSV(HttpHeader.ACCEPT_ENCODING).contains(
+        "gzip")) {
+      body = gzip;
+      etag = entry.getGzipETag();
+      headers.put(CONTENT_ENCODING_GZIP);
+    } else {
+      body = entry.getContent();
+      etag = entry.getETag();
+    }
+
+    headers.put(HttpHeader.ETAG, etag);
+    // bundles in the archive have been created by the server that generated it
+    if (ImmutableCacheFilter.isBundlePath("/" + relativePath) || ImmutableCacheFilter.isImmutable(
+        server, path, "/" + relativePath, request.getHttpURI().getQuery())) {
+      headers.put(CACHE_CONTROL_IMMUTABLE);
+    } else {
+      headers.put(CACHE_CONTROL_REVALIDATE);
+    }
+
+    String ifNoneMatch = requestHeaders.get(HttpHeader.IF_NONE_MATCH);
+    if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+      response.setStatus(HttpStatus.NOT_MODIFIED_304);
+      response.write(true, null, callback);
+      return true;
+    }
+
+    response.setStatus(HttpStatus.OK_200);
+    String contentType = entry.getContentType();
+    if (contentType != null) {
+      headers.put(HttpHeader.CONTENT_TYPE, contentType);
+    }
+    headers.put(HttpHeader.CONTENT_LENGTH, body.remaining());
+
+    response.write(true, head ? null : body, callback);
+    return true;
+  }
+
+  /**
+   * Returns the path of the archive entry for the given request path.
+   *
+   * @param path The request path.
+   * @return The entry's path, relative to the archive root, or {@code null} if not found.
+   */
+  private String lookup(String path) {
+    if (path == null || path.contains("..")) {
+      return null;
+    }
+    for (String cp : contextPaths) {
+      String relativePath;
+      if ("/".equals(cp) || cp.isEmpty()) {
+        relativePath = path;
+      } else if (path.startsWith(cp) && (path.length() == cp.length() || path.charAt(cp
+          .length()) == '/')) {
+        relativePath = path.substring(cp.length());
+      } else {
+        continue;
+      }
+      relativePath = relativePath.replaceFirst("^/+", "");
+      if (relativePath.isEmpty() || relativePath.endsWith("/")) {
+        relativePath += "index.html";
+      }
+      if (content.contains(relativePath)) {
+        return relativePath;
+      }
+    }
+    return null;
+  }
+}
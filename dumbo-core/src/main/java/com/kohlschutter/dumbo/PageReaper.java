@@ -0,0 +1,180 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Periodically removes pages whose browser stopped polling (e.g., abandoned tabs), shutting down
+ * their consoles and releasing their page state, rather than keeping them until they're evicted by
+ * the per-session page limit or the HTTP session expires.
+ *
+ * Pages that never polled their console (e.g., apps without console support) are not reaped, since
+ * there is no way to tell whether they are still open.
+ *
+ * Optionally (see {@code dumbo.reaper.invalidate-sessions}), HTTP sessions whose last page has been
+ * removed are invalidated after the same grace period, unless a new page has been created in the
+ * meantime. This is disabled by default, since the HTTP session may carry state beyond Dumbo's
+ * pages (e.g., a login) that should survive closing the last tab.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PageReaper extends AbstractLifeCycle {
+  private static final Logger LOG = LoggerFactory.getLogger(PageReaper.class);
+
+  /**
+   * The time (in milliseconds) after the last request from a page until the page is considered
+   * abandoned, or {@code 0} to disable reaping. Values shorter than two long-poll cycles are
+   * extended accordingly, so pages with a parked long-poll are never reaped.
+   */
+  static final long GRACE_PERIOD_MILLIS = Long.getLong("dumbo.reaper.grace-period", 120 * 1000);
+
+  /**
+   * The interval (in milliseconds) between two scans for abandoned pages.
+   */
+  private static final long INTERVAL_MILLIS = Math.max(1000, Long.getLong(
+      "dumbo.reaper.interval", 30 * 1000));
+
+  /**
+   * Whether HTTP sessions without any remaining pages should be invalidated.
+   */
+  private static final boolean INVALIDATE_SESSIONS = Boolean.getBoolean(
+      "dumbo.reaper.invalidate-sessions");
+
+  private final Scheduler scheduler;
+  private final ServerStats stats;
+  private final long gracePeriodMillis;
+  private Scheduler.Task task;
+
+  /**
+   * Creates a new {@link PageReaper}.
+   *
+   * @param scheduler The scheduler used to run the scans.
+   * @param stats The server statistics, which keep track of all active pages.
+   */
+  PageReaper(Scheduler scheduler, ServerStats stats) {
+    super();
+    this.scheduler = scheduler;
+    this.stats = stats;
+    this.gracePeriodMillis = GRACE_PERIOD_MILLIS <= 0 ? 0 : Math.max(GRACE_PERIOD_MILLIS,
+        2 * ConsoleImpl.MAX_WAIT_NEXT_CHUNK_MILLIS);
+  }
+
+  /**
+   * Checks whether reaping is enabled.
+   *
+   * @return {@code true} if enabled.
+   */
+  boolean isEnabled() {
+    return gracePeriodMillis > 0;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    super.doStart();
+    if (isEnabled()) {
+      scheduleScan();
+    }
+  }
+
+  @Override
+  protected synchronized void doStop() throws Exception {
+    if (task != null) {
+      task.cancel();
+      task = null;
+    }
+    super.doStop();
+  }
+
+  private synchronized void scheduleScan() {
+    if (isRunning() || isStarting()) {
+      task = scheduler.schedule(this::scan, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void scan() {
+    try {
+      reapIdlePages(System.currentTimeMillis());
+    } catch (RuntimeException e) {
+      LOG.warn("Error while reaping idle pages", e);
+    } finally {
+      scheduleScan();
+    }
+  }
+
+  /**
+   * Reaps all pages that have polled their console, but have been idle for longer than the grace
+   * period since.
+   *
+   * @param now The current time, in milliseconds since the epoch.
+   * @return The number of reaped pages.
+   */
+  int reapIdlePages(long now) {
+    int reaped = 0;
+    for (DumboSessionImpl page : stats.getPages()) {
+      if (page.hasPolled() && now - page.getLastAccessMillis() > gracePeriodMillis) {
+        page.reap();
+        stats.pageReaped();
+        reaped++;
+      }
+    }
+    if (reaped > 0 && LOG.isDebugEnabled()) {
+      LOG.debug("Reaped " + reaped + " idle pages");
+    }
+    return reaped;
+  }
+
+  /**
+   * Called when the last page of an HTTP session has been removed; the session is invalidated after
+   * the grace period unless it has a page again by then (if enabled, see
+   * {@code dumbo.reaper.invalidate-sessions}).
+   *
+   * @param weakSession A weak reference to the HTTP session.
+   * @return {@code true} if the session is going to be invalidated.
+   */
+  boolean onSessionEmpty(WeakReference<HttpSession> weakSession) {
+    if (!INVALIDATE_SESSIONS || !isEnabled() || !isRunning()) {
+      return false;
+    }
+    scheduler.schedule(() -> invalidateIfEmpty(weakSession), gracePeriodMillis,
+        TimeUnit.MILLISECONDS);
+    return true;
+  }
+
+  private void invalidateIfEmpty(WeakReference<HttpSession> weakSession) {
+    HttpSession session = weakSession.get();
+    if (session == null) {
+      return;
+    }
+    try {
+      if (DumboSessionImpl.getDumboSessionPageIds(session).isEmpty()) {
+        session.invalidate();
+        stats.sessionReaped();
+      }
+    } catch (IllegalStateException e) {
+      // session has already been invalidated
+    }
+  }
+}
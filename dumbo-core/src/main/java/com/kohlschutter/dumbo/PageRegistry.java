@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the pages (and their {@link DumboSessionImpl}s) of a single HTTP session.
+ *
+ * Lookups are lock-free, so concurrent RPC calls from multiple tabs of the same user do not
+ * serialize on the {@code HttpSession} monitor. Page IDs are additionally kept in creation order,
+ * so the oldest pages can be evicted once the per-session maximum is reached.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PageRegistry {
+  private final Map<String, DumboSessionImpl> pages = new ConcurrentHashMap<>();
+  private final Set<String> pageIds = Collections.unmodifiableSet(pages.keySet());
+  private final ConcurrentLinkedDeque<String> evictionQueue = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger size = new AtomicInteger();
+
+  PageRegistry() {
+  }
+
+  /**
+   * Registers a new page, unless a page with the same ID is already registered.
+   *
+   * @param session The page's session.
+   * @return The registered session for that page ID.
+   */
+  DumboSessionImpl add(DumboSessionImpl session) {
+    String pageId = session.getPageId();
+    DumboSessionImpl existing = pages.putIfAbsent(pageId, session);
+    if (existing != null) {
+      return existing;
+    }
+    size.incrementAndGet();
+    evictionQueue.addLast(pageId);
+    return session;
+  }
+
+  /**
+   * Returns the session for the given page ID.
+   *
+   * @param pageId The page ID.
+   * @return The session, or {@code null} if not found.
+   */
+  DumboSessionImpl get(String pageId) {
+    return pages.get(pageId);
+  }
+
+  /**
+   * Removes the given page.
+   *
+   * @param pageId The page ID.
+   * @param onEmpty Called (exactly once) if this removal left the registry empty.
+   * @return The removed session, or {@code null} if the page was not registered.
+   */
+  DumboSessionImpl remove(String pageId, Runnable onEmpty) {
+    DumboSessionImpl session = pages.remove(pageId);
+    if (session != null) {
+      evictionQueue.remove(pageId);
+      if (size.decrementAndGet() == 0) {
+        onEmpty.run();
+      }
+    }
+    return session;
+  }
+
+  /**
+   * Returns the ID of the oldest page that should be evicted so that a new page can be added
+   * without exceeding the given maximum, or {@code null} if no eviction is necessary.
+   *
+   * @param max The maximum number of pages.
+   * @return The page ID to evict, or {@code null}.
+   */
+  String pollEvictionCandidate(int max) {
+    while (size.get() >= max) {
+      String pageId = evictionQueue.pollFirst();
+      if (pageId == null) {
+        return null;
+      } else if (pages.containsKey(pageId)) {
+        return pageId;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether adding a new page would require evicting an existing one.
+   *
+   * @param max The maximum number of pages, or {@code 0} for unlimited.
+   * @return {@code true} if the maximum is reached.
+   */
+  boolean isFull(int max) {
+    return max > 0 && size.get() >= max;
+  }
+
+  /**
+   * Returns an unmodifiable live view of the registered page IDs.
+   *
+   * @return The page IDs.
+   */
+  Set<String> pageIds() {
+    return pageIds;
+  }
+
+  /**
+   * Checks whether no pages are registered.
+   *
+   * @return {@code true} if empty.
+   */
+  boolean isEmpty() {
+    return size.get() <= 0;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.session.DefaultSessionIdManager;
+
+import com.kohlschutter.dumbo.api.DumboStateStore;
+
+/**
+ * A session ID manager that accepts the session IDs of HTTP sessions whose state is kept
+ * in a persistent {@link DumboStateStore}, so that a browser keeps its session ID (and with it,
+ * its pages) across a server restart.
+ *
+ * Only session IDs that have been issued by this server before are accepted this way.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PersistentSessionIdManager extends DefaultSessionIdManager {
+  private final DumboStateStore store;
+
+  PersistentSessionIdManager(Server server, DumboStateStore store) {
+    super(server);
+    this.store = store;
+  }
+
+  @Override
+  public boolean isIdInUse(String id) {
+    return super.isIdInUse(id) || DumboSessionImpl.hasPersistentState(store, id);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jasper.Constants;
+import org.apache.jasper.compiler.JspUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+
+import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+
+/**
+ * Loads JSP servlet classes that have been compiled at build time (see
+ * {@code DumboContentBuilder#withJspClassOutputPath(Path)}), so they can be served without
+ * invoking Jasper's compiler at runtime.
+ *
+ * Class names are derived from the JSP path the same way Jasper does, so the class directory is
+ * expected to mirror the layout of Jasper's scratch directory.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PrecompiledJsp {
+  private static final Logger LOG = LoggerFactory.getLogger(PrecompiledJsp.class);
+
+  /**
+   * If {@code true}, JSPs without a precompiled class are not compiled at runtime; requesting them
+   * results in an error instead.
+   */
+  static final boolean STRICT = Boolean.parseBoolean(System.getProperty(
+      "dumbo.jsp.precompiled-only", "false"));
+
+  private final URLClassLoader classLoader;
+  private final ServletConfig config;
+  private final Map<String, Optional<Servlet>> servlets = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new instance.
+   *
+   * @param classesDir The directory containing the precompiled classes.
+   * @param parent The parent classloader (usually the webapp's).
+   * @param config The servlet configuration used to initialize the JSP servlets.
+   * @throws IOException on error.
+   */
+  @SuppressFBWarnings("DP_CREATE_CLASSLOADER_INSIDE_DO_PRIVILEGED")
+  PrecompiledJsp(Path classesDir, ClassLoader parent, ServletConfig config) throws IOException {
+    this.classLoader = new URLClassLoader(new URL[] {classesDir.toUri().toURL()}, parent);
+    this.config = config;
+  }
+
+  /**
+   * Returns the initialized servlet for the given JSP path, or {@code null} if there is no
+   * precompiled class for it.
+   *
+   * @param jspUri The JSP path, relative to the context.
+   * @return The servlet, or {@code null}.
+   * @throws ServletException on error.
+   */
+  Servlet get(String jspUri) throws ServletException {
+    Optional<Servlet> servlet = servlets.get(jspUri);
+    if (servlet == null) {
+      synchronized (this) {
+        servlet = servlets.get(jspUri);
+        if (servlet == null) {
+          servlet = Optional.ofNullable(load(jspUri));
+          servlets.put(jspUri, servlet);
+        }
+      }
+    }
+    return servlet.orElse(null);
+  }
+
+  private Servlet load(String jspUri) throws ServletException {
+    String className = className(jspUri);
+    Class<?> klazz;
+    try {
+      klazz = Class.forName(className, true, classLoader);
+    } catch (ClassNotFoundException e) {
+      LOG.warn("No precompiled class for JSP {}: {}", jspUri, className);
+      return null;
+    }
+
+    Servlet servlet;
+    try {
+      servlet = (Servlet) klazz.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      throw new ServletException("Cannot instantiate precompiled JSP " + className, e);
+    }
+    servlet.init(config);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Loaded precompiled JSP " + jspUri + ": " + className);
+    }
+    return servlet;
+  }
+
+  /**
+   * Returns the fully qualified name of the class Jasper generates for the given JSP path.
+   *
+   * @param jspUri The JSP path, relative to the context.
+   * @return The class name.
+   */
+  static String className(String jspUri) {
+    int iSep = jspUri.lastIndexOf('/');
+    StringBuilder sb = new StringBuilder(Constants.JSP_PACKAGE_NAME);
+    if (iSep > 0) {
+      sb.append('.');
+      sb.append(JspUtil.makeJavaPackage(jspUri.substring(1, iSep)));
+    }
+    sb.append('.');
+    sb.append(JspUtil.makeJavaIdentifier(jspUri.substring(iSep + 1)));
+    return sb.toString();
+  }
+
+  /**
+   * Destroys all loaded servlets and closes the classloader.
+   */
+  synchronized void destroy() {
+    for (Optional<Servlet> servlet : servlets.values()) {
+      servlet.ifPresent(Servlet::destroy);
+    }
+    servlets.clear();
+    try {
+      classLoader.close();
+    } catch (IOException e) {
+      LOG.warn("Cannot close classloader", e);
+    }
+  }
+}
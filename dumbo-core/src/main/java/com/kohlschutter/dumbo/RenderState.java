@@ -16,9 +16,10 @@
  */
 package com.kohlschutter.dumbo;
 
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 import com.kohlschutter.dumbo.api.DumboComponent;
@@ -33,11 +34,20 @@ public final class RenderState {
   private static final ThreadLocal<RenderState> THREADLOCAL = SuppliedThreadLocal.of(
       () -> new RenderState());
 
+  private static final AtomicInteger NEXT_BIT_INDEX = new AtomicInteger();
+  private static final ClassValue<Integer> BIT_INDEX = new ClassValue<Integer>() {
+    @Override
+    protected Integer computeValue(Class<?> type) {
+      return NEXT_BIT_INDEX.getAndIncrement();
+    }
+  };
+
   private ServerApp app;
   private boolean componentsMarkedUseAll = false;
-  private final Set<Class<? extends DumboComponent>> componentsMarkedUsed = new HashSet<>();
+  private final BitSet componentsMarkedUsed = new BitSet();
   private final Set<String> included = new LinkedHashSet<>();
   private String relativePath;
+  private String htmlHeadPreloadLinks;
 
   @SuppressFBWarnings("MS_EXPOSE_REP")
   public static ThreadLocal<RenderState> getThreadLocal() {
@@ -61,12 +71,38 @@ public final class RenderState {
     this.relativePath = relativePath;
   }
 
+  /**
+   * Returns the bit index assigned to the given component class, which is used to represent the
+   * set of components marked as used.
+   *
+   * @param componentClass The component class.
+   * @return The bit index.
+   */
+  static int componentBitIndex(Class<? extends DumboComponent> componentClass) {
+    return BIT_INDEX.get(componentClass);
+  }
+
   public boolean isMarkedUsed(Class<? extends DumboComponent> componentClass) {
-    return componentsMarkedUseAll || componentsMarkedUsed.contains(componentClass);
+    return componentsMarkedUseAll || componentsMarkedUsed.get(componentBitIndex(componentClass));
   }
 
   public void setMarkedUsed(Class<? extends DumboComponent> componentClass) {
-    componentsMarkedUsed.add(componentClass);
+    componentsMarkedUsed.set(componentBitIndex(componentClass));
+  }
+
+  /**
+   * Returns the set of components marked as used, as a {@link BitSet} of
+   * {@link #componentBitIndex(Class)}es. The returned instance must not be modified.
+   *
+   * @return The bit set.
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP")
+  BitSet getComponentsMarkedUsed() {
+    return componentsMarkedUsed;
+  }
+
+  boolean isMarkedUsedAllComponents() {
+    return componentsMarkedUseAll;
   }
 
   /**
@@ -76,6 +112,21 @@ public final class RenderState {
     this.componentsMarkedUseAll = allUsed;
   }
 
+  /**
+   * Returns the preload links for the resources referenced by the HEAD section rendered since the
+   * last call to {@link #setHtmlHeadPreloadLinks(String)}.
+   *
+   * @return The link header value (possibly empty), or {@code null} if no HEAD section has been
+   *         rendered.
+   */
+  String getHtmlHeadPreloadLinks() {
+    return htmlHeadPreloadLinks;
+  }
+
+  void setHtmlHeadPreloadLinks(String links) {
+    this.htmlHeadPreloadLinks = links;
+  }
+
   @SuppressFBWarnings("EI_EXPOSE_REP")
   public ServerApp getApp() {
     return app;
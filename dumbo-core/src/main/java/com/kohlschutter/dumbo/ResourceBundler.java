@@ -0,0 +1,414 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+import com.kohlschutter.dumbo.api.DumboComponent;
+
+/**
+ * Concatenates the plain (non-async, non-deferred, non-module) JavaScript and CSS resources of all
+ * extensions of an app into one file per type, served from the app's webapp work directory under a
+ * content-hashed URL.
+ *
+ * Bundling is opt-in, via {@code dumbo.bundle.resources=true}. Since bundles are written to the
+ * webapp work directory, they are also included when generating static content.
+ *
+ * Resources are offered in the order the extensions emit them. Once a resource that cannot be
+ * bundled (e.g., a remote URL) needs to keep its position relative to later resources, no further
+ * resources of that type are accepted, so the effective evaluation order is preserved.
+ *
+ * Inline HEAD content (see {@link com.kohlschutter.dumbo.annotations.HTMLResource}) may depend on
+ * earlier resources, and later resources may depend on it. Such content therefore ends the current
+ * bundle segment; each segment is emitted at the position of its first resource (see
+ * {@link ExtensionResourceHelper#htmlHead(ServerApp)}).
+ *
+ * @author Christian Kohlschütter
+ */
+final class ResourceBundler {
+  private static final Logger LOG = LoggerFactory.getLogger(ResourceBundler.class);
+
+  /**
+   * Whether resource bundling is enabled.
+   */
+  static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("dumbo.bundle.resources",
+      "false"));
+
+  static final String BUNDLE_DIR = "bundle_";
+  private static final int MAX_BUNDLES = 64;
+  private static final int HASH_LENGTH = 16;
+
+  private static final Pattern CSS_URL = Pattern.compile(
+      "url\\(\\s*(['\"]?)([^'\"\\)]+)\\1\\s*\\)");
+  private static final Pattern CSS_CHARSET = Pattern.compile("^@charset\\s+[^;]+;\\s*");
+  private static final Pattern SOURCE_MAPPING_URL = Pattern.compile(
+      "(?m)^[ \\t]*(//[#@] sourceMappingURL=.*|/\\*[#@] sourceMappingURL=.*?\\*/)[ \\t]*$");
+
+  private final ServerApp app;
+  private final DumboServerImpl server;
+  private final List<Item> cssItems = new ArrayList<>();
+  private final List<Item> jsItems = new ArrayList<>();
+  private boolean cssClosed;
+  private boolean jsClosed;
+  private int segment;
+  private boolean segmentUsed;
+
+  private final Map<BitSet, Bundles> tagsCache = new ConcurrentHashMap<>();
+
+  private static final class Bundles {
+    private static final Bundles NONE = new Bundles("", List.of());
+
+    private final String tags;
+    private final List<String> preloadLinks;
+
+    Bundles(String tags, List<String> preloadLinks) {
+      this.tags = tags;
+      this.preloadLinks = preloadLinks;
+    }
+  }
+
+  private static final class Item {
+    private final Class<? extends DumboComponent> componentClass;
+    private final boolean optional;
+    private final String url;
+    private final int segment;
+
+    Item(Class<? extends DumboComponent> componentClass, boolean optional, String url,
+        int segment) {
+      this.componentClass = componentClass;
+      this.optional = optional;
+      this.url = url;
+      this.segment = segment;
+    }
+
+    boolean isIncluded(RenderState rs) {
+      return !optional || rs.isMarkedUsed(componentClass);
+    }
+  }
+
+  ResourceBundler(ServerApp app, DumboServerImpl server) {
+    this.app = app;
+    this.server = server;
+  }
+
+  /**
+   * Offers a CSS resource for bundling.
+   *
+   * @param componentClass The component providing the resource.
+   * @param url The absolute URL path of the resource.
+   * @param optional Whether the resource is optional.
+   * @return The bundle segment the resource was added to, or {@code -1} if it is not bundled,
+   *         i.e., a separate tag must be emitted.
+   */
+  synchronized int offerCSS(Class<? extends DumboComponent> componentClass, String url,
+      boolean optional) {
+    if (cssClosed) {
+      return -1;
+    }
+    String content = read(url);
+    if (content == null || content.contains("@import")) {
+      // @import rules are only valid at the top of a stylesheet
+      cssClosed = true;
+      return -1;
+    }
+    cssItems.add(new Item(componentClass, optional, url, segment));
+    segmentUsed = true;
+    return segment;
+  }
+
+  /**
+   * Offers a JavaScript resource for bundling.
+   *
+   * @param componentClass The component providing the resource.
+   * @param url The absolute URL path of the resource.
+   * @param optional Whether the resource is optional.
+   * @param orderedExecution {@code true} if the script is neither async, deferred, nor a module.
+   * @return The bundle segment the resource was added to, or {@code -1} if it is not bundled,
+   *         i.e., a separate tag must be emitted.
+   */
+  synchronized int offerJavaScript(Class<? extends DumboComponent> componentClass, String url,
+      boolean optional, boolean orderedExecution) {
+    if (jsClosed || !orderedExecution) {
+      // async/deferred/module scripts are evaluated independently from the bundle anyways
+      return -1;
+    }
+    if (read(url) == null) {
+      jsClosed = true;
+      return -1;
+    }
+    jsItems.add(new Item(componentClass, optional, url, segment));
+    segmentUsed = true;
+    return segment;
+  }
+
+  /**
+   * Marks a position in the HEAD section (e.g., inline HTML content) that bundled resources must
+   * not be moved across. Resources offered afterwards go into a new bundle segment.
+   */
+  synchronized void markBoundary() {
+    if (segmentUsed) {
+      segment++;
+      segmentUsed = false;
+    }
+  }
+
+  private String read(String url) {
+    if (url.contains("://")) {
+      return null;
+    }
+    try {
+      byte[] bytes = server.readResource(url);
+      return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      LOG.warn("Cannot read resource for bundling: {}", url, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the HTML HEAD tags referencing the bundles of the given segment for the given render
+   * state, creating the bundles if necessary.
+   *
+   * @param rs The render state.
+   * @param bundleSegment The bundle segment, as returned by
+   *          {@link #offerCSS(Class, String, boolean)} or
+   *          {@link #offerJavaScript(Class, String, boolean, boolean)}.
+   * @return The HTML string.
+   */
+  String htmlHead(RenderState rs, int bundleSegment) {
+    int numCss;
+    int numJs;
+    synchronized (this) {
+      numCss = cssItems.size();
+      numJs = jsItems.size();
+    }
+
+    BitSet included = included(rs, bundleSegment, numCss, numJs);
+    if (included.isEmpty()) {
+      return Bundles.NONE.tags;
+    }
+    return tagsCache.computeIfAbsent(included, (k) -> createBundles(k, numCss, numJs)).tags;
+  }
+
+  /**
+   * Returns the values for HTTP {@code Link} headers that allow the browser to preload the bundles
+   * referenced by {@link #htmlHead(RenderState, int)} for the given render state.
+   *
+   * Bundles depend on the components used by a page, so this is only known once the page's HEAD
+   * section has been rendered.
+   *
+   * @param rs The render state.
+   * @return The link values (possibly empty).
+   */
+  List<String> getPreloadLinks(RenderState rs) {
+    int numCss;
+    int numJs;
+    int numSegments;
+    synchronized (this) {
+      numCss = cssItems.size();
+      numJs = jsItems.size();
+      numSegments = segment + 1;
+    }
+
+    List<String> links = new ArrayList<>();
+    for (int s = 0; s < numSegments; s++) {
+      BitSet included = included(rs, s, numCss, numJs);
+      Bundles bundles = included.isEmpty() ? null : tagsCache.get(included);
+      if (bundles != null) {
+        links.addAll(bundles.preloadLinks);
+      }
+    }
+    return links;
+  }
+
+  private BitSet included(RenderState rs, int bundleSegment, int numCss, int numJs) {
+    // including an optional resource that is not used is safe; excluding a used one is not
+    boolean all = rs.isMarkedUsedAllComponents() || tagsCache.size() >= MAX_BUNDLES;
+
+    // the items of different segments are disjoint, so the set of items identifies the segment
+    BitSet included = new BitSet(numCss + numJs);
+    for (int i = 0; i < numCss; i++) {
+      Item item = cssItems.get(i);
+      included.set(i, item.segment == bundleSegment && (all || item.isIncluded(rs)));
+    }
+    for (int i = 0; i < numJs; i++) {
+      Item item = jsItems.get(i);
+      included.set(numCss + i, item.segment == bundleSegment && (all || item.isIncluded(rs)));
+    }
+    return included;
+  }
+
+  private Bundles createBundles(BitSet included, int numCss, int numJs) {
+    List<Item> css = new ArrayList<>();
+    List<Item> js = new ArrayList<>();
+    for (int i = 0; i < numCss; i++) {
+      if (included.get(i)) {
+        css.add(cssItems.get(i));
+      }
+    }
+    for (int i = 0; i < numJs; i++) {
+      if (included.get(numCss + i)) {
+        js.add(jsItems.get(i));
+      }
+    }
+
+    StringBuilder sb = new StringBuilder();
+    List<String> preloadLinks = new ArrayList<>(2);
+    try {
+      if (!css.isEmpty()) {
+        String url = writeBundle(css, "css");
+        sb.append("<link rel=\"stylesheet\" href=\"" + ExtensionImpl.xmlEntities(url) + "\" />\n");
+        preloadLinks.add("<" + url + ">; rel=preload; as=style");
+      }
+      if (!js.isEmpty()) {
+        String url = writeBundle(js, "js");
+        sb.append("<script type=\"text/javascript\" src=\"" + ExtensionImpl.xmlEntities(url)
+            + "\"></script>\n");
+        preloadLinks.add("<" + url + ">; rel=preload; as=script");
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not create resource bundle; falling back to individual resources", e);
+      sb.setLength(0);
+      preloadLinks.clear();
+      for (Item item : css) {
+        sb.append("<link rel=\"stylesheet\" href=\"" + ExtensionImpl.xmlEntities(item.url)
+            + "\" />\n");
+      }
+      for (Item item : js) {
+        sb.append("<script type=\"text/javascript\" src=\"" + ExtensionImpl.xmlEntities(item.url)
+            + "\"></script>\n");
+      }
+    }
+    return new Bundles(sb.toString(), preloadLinks);
+  }
+
+  @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+  private String writeBundle(List<Item> items, String suffix) throws IOException {
+    boolean css = "css".equals(suffix);
+
+    StringBuilder sb = new StringBuilder();
+    for (Item item : items) {
+      byte[] bytes = server.readResource(item.url);
+      if (bytes == null) {
+        throw new IOException("Resource vanished: " + item.url);
+      }
+      String content = new String(bytes, StandardCharsets.UTF_8);
+      if (!content.isEmpty() && content.charAt(0) == '\uFEFF') {
+        content = content.substring(1);
+      }
+      content = SOURCE_MAPPING_URL.matcher(content).replaceAll("");
+      if (css) {
+        content = rewriteCssUrls(CSS_CHARSET.matcher(content).replaceFirst(""), item.url);
+      }
+
+      sb.append("/* ").append(item.url.replace("*/", "*\\/")).append(" */\n");
+      sb.append(content);
+      // guard against files that do not end with a newline (or a semicolon)
+      sb.append(css ? "\n" : "\n;\n");
+    }
+    byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    String name = contentHash(data) + "." + suffix;
+    Path dir = app.getWebappWorkDir().toPath().resolve(BUNDLE_DIR);
+    Path file = dir.resolve(name);
+    if (!Files.exists(file)) {
+      Files.createDirectories(dir);
+      Path tmp = Files.createTempFile(dir, ".bundle", ".tmp");
+      try {
+        Files.write(tmp, data);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Created bundle " + file + " from " + items.size() + " resources");
+      }
+    }
+
+    String url = app.getContextPath().replaceFirst("/$", "") + "/" + BUNDLE_DIR + "/" + name;
+    server.registerBundle(url);
+    return url;
+  }
+
+  /**
+   * Rewrites relative {@code url(...)} references, which are otherwise resolved relative to the
+   * bundle's location, not the original stylesheet's.
+   *
+   * @param content The CSS content.
+   * @param url The original URL of the stylesheet.
+   * @return The rewritten content.
+   */
+  private static String rewriteCssUrls(String content, String url) {
+    URI base = URI.create(url);
+    Matcher m = CSS_URL.matcher(content);
+    StringBuffer sb = new StringBuffer(content.length()); // NOPMD
+    while (m.find()) {
+      String ref = m.group(2).trim();
+      String replacement;
+      if (ref.startsWith("/") || ref.startsWith("#") || ref.startsWith("data:") || ref.contains(
+          "://")) {
+        replacement = m.group();
+      } else {
+        try {
+          replacement = "url(" + m.group(1) + base.resolve(ref) + m.group(1) + ")";
+        } catch (IllegalArgumentException e) {
+          replacement = m.group();
+        }
+      }
+      m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+    }
+    m.appendTail(sb);
+    return sb.toString();
+  }
+
+  /**
+   * Returns a short, URL-safe hash of the given data.
+   *
+   * @param data The data.
+   * @return The hash.
+   */
+  static String contentHash(byte[] data) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest(data)).substring(0,
+        HASH_LENGTH);
+  }
+}
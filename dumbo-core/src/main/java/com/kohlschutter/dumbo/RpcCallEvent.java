@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for a JSON-RPC call handled by {@link JsonRpcServlet}.
+ *
+ * Disabled by default; enable it via a JFR settings file, or {@code Recording#enable(String)}.
+ *
+ * @author Christian Kohlschütter
+ */
+@Name("com.kohlschutter.dumbo.RpcCall")
+@Label("RPC Call")
+@Category({"Dumbo", "Requests"})
+@Description("A JSON-RPC call handled by JsonRpcServlet")
+@Enabled(false)
+@Threshold("20 ms")
+@StackTrace(false)
+final class RpcCallEvent extends Event {
+  @Label("Method")
+  String method;
+
+  @Label("Page ID")
+  String pageId;
+
+  @Label("Request Size")
+  @DataAmount
+  long requestBytes;
+
+  @Label("Response Size")
+  @DataAmount
+  long responseBytes;
+}
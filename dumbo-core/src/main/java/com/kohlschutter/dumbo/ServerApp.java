@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -45,7 +46,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+import com.kohlschutter.dumbo.annotations.ConsoleChunkTypes;
 import com.kohlschutter.dumbo.annotations.EventHandlers;
+import com.kohlschutter.dumbo.annotations.MaximumPagesPerSession;
 import com.kohlschutter.dumbo.annotations.Services;
 import com.kohlschutter.dumbo.api.DumboApplication;
 import com.kohlschutter.dumbo.api.DumboComponent;
@@ -62,6 +65,13 @@ import com.kohlschutter.dumbo.exceptions.ExtensionDependencyException;
 public final class ServerApp implements Closeable, DumboServiceProvider {
   private static final Logger LOG = LoggerFactory.getLogger(ServerApp.class);
 
+  /**
+   * The maximum number of pages per HTTP session, unless specified via
+   * {@link MaximumPagesPerSession}.
+   */
+  private static final int DEFAULT_MAXIMUM_PAGES_PER_SESSION = Integer.getInteger(
+      "dumbo.pages-per-session", 16);
+
   @SuppressWarnings("PMD.LooseCoupling")
   private final LinkedHashMap<Class<?>, ExtensionImpl> extensions = new LinkedHashMap<>();
   private final Map<Class<?>, Object> instances = new HashMap<>();
@@ -77,6 +87,8 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
   private boolean staticDesignMode = false;
 
   private final Class<? extends DumboApplication> applicationClass;
+  private final int maximumPagesPerSession;
+  private final ConsoleChunkFilter consoleChunkFilter;
   private final ExtensionImpl applicationExtensionImpl;
 
   private final Map<Class<? extends DumboComponent>, Set<Class<? extends DumboComponent>>> componentToSubComponentMap =
@@ -99,6 +111,12 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
 
   private final JsonRpcServlet jsonRpc = new JsonRpcServlet();
 
+  private final HtmlFragmentCache htmlHeadCache = new HtmlFragmentCache();
+  private final HtmlFragmentCache htmlBodyTopCache = new HtmlFragmentCache();
+  private ResourceBundler resourceBundler;
+  private String preloadLinks;
+  private final Map<String, String> pagePreloadLinks = new ConcurrentHashMap<>();
+
   public ServerApp(String prefix, Class<? extends DumboApplication> applicationClass,
       Supplier<URL> webappBaseURLsupplier) {
     prefix = sanitzePrefix(prefix);
@@ -108,7 +126,15 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
 
     this.applicationClass = applicationClass;
 
+    MaximumPagesPerSession maxPages = applicationClass.getAnnotation(
+        MaximumPagesPerSession.class);
+    this.maximumPagesPerSession = maxPages == null ? DEFAULT_MAXIMUM_PAGES_PER_SESSION : maxPages
+        .value();
+
     this.applicationExtensionImpl = new ExtensionImpl(applicationClass, true);
+    this.consoleChunkFilter = new ConsoleChunkFilter(applicationExtensionImpl.getAnnotations(
+        ConsoleChunkTypes.class).stream().map((c) -> c.value()).flatMap(Stream::of).distinct()
+        .collect(Collectors.toList()));
 
     resolveExtensions();
     initEventHandlers();
@@ -194,6 +220,9 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
       throw new IllegalStateException("Already initialized");
     }
     appServer = server;
+    if (ResourceBundler.ENABLED) {
+      resourceBundler = new ResourceBundler(this, server);
+    }
 
     // also see AppHTTPServer
     File dir = Files.createTempDirectory("dumbo-workdir").toRealPath().toFile();
@@ -227,7 +256,12 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
       }
     });
     this.webappWorkDir = new File(this.workDir, "webapp");
-    this.jspWorkDir = new File(this.workDir, "jsp");
+    if (JspWorkDir.CACHE_DIR == null) {
+      this.jspWorkDir = new File(this.workDir, "jsp");
+    } else {
+      // survives restarts; see JspWorkDir
+      this.jspWorkDir = JspWorkDir.forApp(this, server);
+    }
     Files.createDirectories(webappWorkDir.toPath());
 
     LOG.info("Workdir: {}", workDir);
@@ -246,6 +280,12 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
         }).addAll(v);
       });
     }
+
+    List<String> links = new ArrayList<>();
+    for (ExtensionImpl ext : extensions.values()) {
+      links.addAll(ext.getPreloadLinks());
+    }
+    preloadLinks = links.isEmpty() ? null : String.join(", ", links);
   }
 
   /**
@@ -378,12 +418,23 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
    * Returns how many concurrent pageIds should be maintained per HTTP session; use {@code -1} for
    * "unlimited", {@code 0} for "none" (which is probably not what you want).
    *
-   * By default, a sensible limit is returned.
+   * The limit can be specified per application via {@link MaximumPagesPerSession}; by default, a
+   * sensible limit is returned.
    *
    * @return The maximum, {@code -1} for unlimited, {@code 0} for none
    */
   public int getMaximumPagesPerSession() {
-    return 16;
+    return maximumPagesPerSession;
+  }
+
+  /**
+   * Returns the filter of console chunks that may be exchanged with other nodes, as declared via
+   * {@link ConsoleChunkTypes}.
+   *
+   * @return The filter.
+   */
+  ConsoleChunkFilter getConsoleChunkFilter() {
+    return consoleChunkFilter;
   }
 
   public Class<? extends DumboApplication> getApplicationClass() {
@@ -506,4 +557,69 @@ public final class ServerApp implements Closeable, DumboServiceProvider {
   JsonRpcServlet getJsonRpc() {
     return jsonRpc;
   }
+
+  HtmlFragmentCache getHtmlHeadCache() {
+    return htmlHeadCache;
+  }
+
+  HtmlFragmentCache getHtmlBodyTopCache() {
+    return htmlBodyTopCache;
+  }
+
+  /**
+   * Returns the value of an HTTP {@code Link} header that lets the browser preload all resources
+   * unconditionally referenced by the app's extensions in the HEAD section rendered for the given
+   * render state (including resource bundles, see
+   * {@link ResourceBundler#getPreloadLinks(RenderState)}).
+   *
+   * @param rs The render state.
+   * @return The header value (possibly empty).
+   */
+  String getPreloadLinks(RenderState rs) {
+    List<String> links = new ArrayList<>();
+    if (resourceBundler != null) {
+      links.addAll(resourceBundler.getPreloadLinks(rs));
+    }
+    if (preloadLinks != null) {
+      links.add(preloadLinks);
+    }
+    return String.join(", ", links);
+  }
+
+  /**
+   * Returns the value of an HTTP {@code Link} header that lets the browser preload the resources
+   * referenced by the HEAD section of the given page, as last rendered, or {@code null} if none
+   * (e.g., the page hasn't been rendered yet, or it doesn't render the HEAD section).
+   *
+   * @param pagePath The page's servlet path.
+   * @return The header value, or {@code null}.
+   * @see #pageRendered(String, RenderState)
+   */
+  String getPagePreloadLinks(String pagePath) {
+    String links = pagePreloadLinks.get(pagePath);
+    return links == null || links.isEmpty() ? null : links;
+  }
+
+  /**
+   * Remembers the resources referenced by the HEAD section of the given page, if it rendered one.
+   *
+   * @param pagePath The page's servlet path.
+   * @param rs The render state after rendering the page.
+   * @see #getPagePreloadLinks(String)
+   */
+  void pageRendered(String pagePath, RenderState rs) {
+    String links = rs.getHtmlHeadPreloadLinks();
+    if (links != null) {
+      pagePreloadLinks.put(pagePath, links);
+    }
+  }
+
+  /**
+   * Returns the {@link ResourceBundler} for this app, or {@code null} if bundling is disabled.
+   *
+   * @return The bundler, or {@code null}.
+   */
+  ResourceBundler getResourceBundler() {
+    return resourceBundler;
+  }
 }
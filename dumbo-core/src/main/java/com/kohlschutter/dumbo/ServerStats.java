@@ -0,0 +1,434 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import com.kohlschutter.dumbo.api.DumboServerStats;
+
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+
+/**
+ * Collects the runtime statistics of a {@link DumboServerImpl}.
+ *
+ * @author Christian Kohlschütter
+ * @see DumboServerImpl#getStats()
+ */
+final class ServerStats {
+  private static final int RATE_WINDOW_SECONDS = 60;
+
+  private final AtomicInteger httpSessions = new AtomicInteger();
+  private final Set<DumboSessionImpl> pages = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger pageSlots = new AtomicInteger();
+  private final AtomicInteger parkedLongPolls = new AtomicInteger();
+  private final LongAdder reapedPages = new LongAdder();
+  private final LongAdder reapedSessions = new LongAdder();
+  private final LongAdder rejectedPages = new LongAdder();
+
+  private final LongAdder jspCacheHits = new LongAdder();
+  private final LongAdder jspCacheMisses = new LongAdder();
+  private final LongAdder jspUncached = new LongAdder();
+
+  private final LongAdder rpcCalls = new LongAdder();
+  private final LongAdder rpcErrors = new LongAdder();
+  private final AtomicLongArray rpcCallsPerSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+  private final AtomicLongArray rpcBucketSecond = new AtomicLongArray(RATE_WINDOW_SECONDS);
+
+  private final HttpSessionListener sessionListener = new HttpSessionListener() {
+    @Override
+    public void sessionCreated(HttpSessionEvent se) {
+      httpSessions.incrementAndGet();
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+      httpSessions.decrementAndGet();
+      HttpSession session = se.getSession();
+      for (String pageId : DumboSessionImpl.getDumboSessionPageIds(session)) {
+        DumboSessionImpl page = DumboSessionImpl.getDumboSession(session, pageId);
+        if (page != null) {
+          pageRemoved(page);
+        }
+      }
+    }
+  };
+
+  ServerStats() {
+  }
+
+  /**
+   * Returns the listener that keeps track of HTTP sessions; it needs to be registered with every
+   * context that creates sessions.
+   *
+   * @return The listener.
+   */
+  HttpSessionListener getSessionListener() {
+    return sessionListener;
+  }
+
+  /**
+   * Atomically reserves a slot for a new page, unless the given maximum number of slots is reached.
+   * The slot is then taken by the page passed to the next call of {@link #pageCreated}, or must be
+   * returned via {@link #releasePageSlot()}.
+   *
+   * @param max The maximum number of slots, or {@code 0} for unlimited.
+   * @return {@code true} if reserved.
+   */
+  boolean reservePageSlot(int max) {
+    if (max <= 0) {
+      pageSlots.incrementAndGet();
+      return true;
+    }
+    int n;
+    do {
+      n = pageSlots.get();
+      if (n >= max) {
+        return false;
+      }
+    } while (!pageSlots.compareAndSet(n, n + 1));
+    return true;
+  }
+
+  void releasePageSlot() {
+    pageSlots.decrementAndGet();
+  }
+
+  /**
+   * Registers a new page, which takes a previously reserved slot.
+   *
+   * @param page The page.
+   * @see #reservePageSlot(int)
+   */
+  void pageCreated(DumboSessionImpl page) {
+    pages.add(page);
+  }
+
+  void pageRemoved(DumboSessionImpl page) {
+    if (pages.remove(page)) {
+      releasePageSlot();
+    }
+  }
+
+  /**
+   * Returns a live view of all active pages.
+   *
+   * @return The pages.
+   */
+  Set<DumboSessionImpl> getPages() {
+    return Collections.unmodifiableSet(pages);
+  }
+
+  void pageReaped() {
+    reapedPages.increment();
+  }
+
+  void sessionReaped() {
+    reapedSessions.increment();
+  }
+
+  void pageRejected() {
+    rejectedPages.increment();
+  }
+
+  int getActivePages() {
+    return pages.size();
+  }
+
+  int getParkedLongPolls() {
+    return parkedLongPolls.get();
+  }
+
+  void longPollParked() {
+    parkedLongPolls.incrementAndGet();
+  }
+
+  void longPollUnparked() {
+    parkedLongPolls.decrementAndGet();
+  }
+
+  void jspCacheHit() {
+    jspCacheHits.increment();
+  }
+
+  void jspCacheMiss() {
+    jspCacheMisses.increment();
+  }
+
+  void jspUncached() {
+    jspUncached.increment();
+  }
+
+  void rpcCall() {
+    rpcCalls.increment();
+
+    long second = System.currentTimeMillis() / 1000;
+    int bucket = (int) (second % RATE_WINDOW_SECONDS);
+    long bucketSecond = rpcBucketSecond.get(bucket);
+    if (bucketSecond != second && rpcBucketSecond.compareAndSet(bucket, bucketSecond, second)) {
+      rpcCallsPerSecond.set(bucket, 0);
+    }
+    rpcCallsPerSecond.incrementAndGet(bucket);
+  }
+
+  void rpcError() {
+    rpcErrors.increment();
+  }
+
+  private double rpcRate() {
+    long now = System.currentTimeMillis() / 1000;
+    long sum = 0;
+    for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+      long second = rpcBucketSecond.get(i);
+      // only consider completed seconds
+      if (second < now && second >= now - RATE_WINDOW_SECONDS) {
+        sum += rpcCallsPerSecond.get(i);
+      }
+    }
+    return sum / (double) RATE_WINDOW_SECONDS;
+  }
+
+  /**
+   * Takes a snapshot of the current statistics.
+   *
+   * @param threadPool The server's thread pool.
+   * @return The snapshot.
+   */
+  DumboServerStats snapshot(ThreadPool threadPool) {
+    int openConsoles = 0;
+    int queueDepth = 0;
+    int maxQueueDepth = 0;
+    for (DumboSessionImpl page : pages) {
+      ConsoleImpl console = page.getConsoleImpl();
+      if (console.isClosed()) {
+        continue;
+      }
+      openConsoles++;
+      int depth = console.getQueueDepth();
+      queueDepth += depth;
+      maxQueueDepth = Math.max(maxQueueDepth, depth);
+    }
+
+    int threads = threadPool == null ? 0 : threadPool.getThreads();
+    int idleThreads = threadPool == null ? 0 : threadPool.getIdleThreads();
+    int maxThreads;
+    int queueSize;
+    if (threadPool instanceof QueuedThreadPool) {
+      QueuedThreadPool qtp = (QueuedThreadPool) threadPool;
+      maxThreads = qtp.getMaxThreads();
+      queueSize = qtp.getQueueSize();
+    } else {
+      maxThreads = threads;
+      queueSize = 0;
+    }
+
+    return new Snapshot(httpSessions.get(), pages.size(), openConsoles, queueDepth, maxQueueDepth,
+        parkedLongPolls.get(), reapedPages.sum(), reapedSessions.sum(), rejectedPages.sum(),
+        threads, threads - idleThreads, maxThreads, queueSize, jspCacheHits.sum(), jspCacheMisses
+            .sum(), jspUncached.sum(), rpcCalls.sum(), rpcErrors.sum(), rpcRate());
+  }
+
+  /**
+   * Converts the given statistics to a map, e.g., for JSON serialization.
+   *
+   * @param stats The statistics.
+   * @param map The target map.
+   * @return The map.
+   */
+  static Map<String, Object> toMap(DumboServerStats stats, Map<String, Object> map) {
+    map.put("activeHttpSessions", stats.getActiveHttpSessions());
+    map.put("activePages", stats.getActivePages());
+    map.put("openConsoles", stats.getOpenConsoles());
+    map.put("consoleQueueDepth", stats.getConsoleQueueDepth());
+    map.put("maxConsoleQueueDepth", stats.getMaxConsoleQueueDepth());
+    map.put("parkedLongPolls", stats.getParkedLongPolls());
+    map.put("reapedPages", stats.getReapedPages());
+    map.put("reapedSessions", stats.getReapedSessions());
+    map.put("rejectedPages", stats.getRejectedPages());
+    map.put("threads", stats.getThreads());
+    map.put("busyThreads", stats.getBusyThreads());
+    map.put("maxThreads", stats.getMaxThreads());
+    map.put("threadPoolQueueSize", stats.getThreadPoolQueueSize());
+    map.put("jspCacheHits", stats.getJspCacheHits());
+    map.put("jspCacheMisses", stats.getJspCacheMisses());
+    map.put("jspUncached", stats.getJspUncached());
+    map.put("rpcCalls", stats.getRpcCalls());
+    map.put("rpcErrors", stats.getRpcErrors());
+    map.put("rpcCallsPerSecond", stats.getRpcCallsPerSecond());
+    return map;
+  }
+
+  private static final class Snapshot implements DumboServerStats {
+    private final int activeHttpSessions;
+    private final int activePages;
+    private final int openConsoles;
+    private final int consoleQueueDepth;
+    private final int maxConsoleQueueDepth;
+    private final int parkedLongPolls;
+    private final long reapedPages;
+    private final long reapedSessions;
+    private final long rejectedPages;
+    private final int threads;
+    private final int busyThreads;
+    private final int maxThreads;
+    private final int threadPoolQueueSize;
+    private final long jspCacheHits;
+    private final long jspCacheMisses;
+    private final long jspUncached;
+    private final long rpcCalls;
+    private final long rpcErrors;
+    private final double rpcCallsPerSecond;
+
+    @SuppressWarnings("PMD.ExcessiveParameterList")
+    Snapshot(int activeHttpSessions, int activePages, int openConsoles, int consoleQueueDepth,
+        int maxConsoleQueueDepth, int parkedLongPolls, long reapedPages, long reapedSessions,
+        long rejectedPages, int threads, int busyThreads, int maxThreads, int threadPoolQueueSize,
+        long jspCacheHits, long jspCacheMisses, long jspUncached, long rpcCalls, long rpcErrors,
+        double rpcCallsPerSecond) {
+      this.activeHttpSessions = activeHttpSessions;
+      this.activePages = activePages;
+      this.openConsoles = openConsoles;
+      this.consoleQueueDepth = consoleQueueDepth;
+      this.maxConsoleQueueDepth = maxConsoleQueueDepth;
+      this.parkedLongPolls = parkedLongPolls;
+      this.reapedPages = reapedPages;
+      this.reapedSessions = reapedSessions;
+      this.rejectedPages = rejectedPages;
+      this.threads = threads;
+      this.busyThreads = busyThreads;
+      this.maxThreads = maxThreads;
+      this.threadPoolQueueSize = threadPoolQueueSize;
+      this.jspCacheHits = jspCacheHits;
+      this.jspCacheMisses = jspCacheMisses;
+      this.jspUncached = jspUncached;
+      this.rpcCalls = rpcCalls;
+      this.rpcErrors = rpcErrors;
+      this.rpcCallsPerSecond = rpcCallsPerSecond;
+    }
+
+    @Override
+    public int getActiveHttpSessions() {
+      return activeHttpSessions;
+    }
+
+    @Override
+    public int getActivePages() {
+      return activePages;
+    }
+
+    @Override
+    public int getOpenConsoles() {
+      return openConsoles;
+    }
+
+    @Override
+    public int getConsoleQueueDepth() {
+      return consoleQueueDepth;
+    }
+
+    @Override
+    public int getMaxConsoleQueueDepth() {
+      return maxConsoleQueueDepth;
+    }
+
+    @Override
+    public int getParkedLongPolls() {
+      return parkedLongPolls;
+    }
+
+    @Override
+    public long getReapedPages() {
+      return reapedPages;
+    }
+
+    @Override
+    public long getReapedSessions() {
+      return reapedSessions;
+    }
+
+    @Override
+    public long getRejectedPages() {
+      return rejectedPages;
+    }
+
+    @Override
+    public int getThreads() {
+      return threads;
+    }
+
+    @Override
+    public int getBusyThreads() {
+      return busyThreads;
+    }
+
+    @Override
+    public int getMaxThreads() {
+      return maxThreads;
+    }
+
+    @Override
+    public int getThreadPoolQueueSize() {
+      return threadPoolQueueSize;
+    }
+
+    @Override
+    public long getJspCacheHits() {
+      return jspCacheHits;
+    }
+
+    @Override
+    public long getJspCacheMisses() {
+      return jspCacheMisses;
+    }
+
+    @Override
+    public long getJspUncached() {
+      return jspUncached;
+    }
+
+    @Override
+    public long getRpcCalls() {
+      return rpcCalls;
+    }
+
+    @Override
+    public long getRpcErrors() {
+      return rpcErrors;
+    }
+
+    @Override
+    public double getRpcCallsPerSecond() {
+      return rpcCallsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+      return "DumboServerStats" + toMap(this, new LinkedHashMap<>());
+    }
+  }
+}
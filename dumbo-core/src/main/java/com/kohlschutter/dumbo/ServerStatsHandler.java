@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.json.JSONObject;
+
+/**
+ * Serves the server's statistics as JSON at a configurable admin path, and delegates all other
+ * requests to the wrapped handler.
+ *
+ * @author Christian Kohlschütter
+ * @see DumboServerImpl#getStats()
+ */
+final class ServerStatsHandler extends Handler.Wrapper {
+  private static final HttpField CONTENT_TYPE_JSON = new HttpField(HttpHeader.CONTENT_TYPE,
+      "application/json;charset=utf-8");
+  private static final HttpField CACHE_CONTROL_NO_STORE = new HttpField(HttpHeader.CACHE_CONTROL,
+      "no-store");
+
+  private final String path;
+  private final DumboServerImpl server;
+
+  /**
+   * Creates a new {@link ServerStatsHandler}.
+   *
+   * @param path The absolute URL path to serve the statistics at.
+   * @param server The server.
+   * @param delegate The handler for any other requests.
+   */
+  ServerStatsHandler(String path, DumboServerImpl server, Handler delegate) {
+    super(delegate);
+    this.path = path.startsWith("/") ? path : "/" + path;
+    this.server = server;
+  }
+
+  @Override
+  public boolean handle(Request request, Response response, Callback callback) throws Exception {
+    if (!path.equals(Request.getPathInContext(request))) {
+      return super.handle(request, response, callback);
+    }
+    String method = request.getMethod();
+    boolean head = HttpMethod.HEAD.is(method);
+    if (!head && !HttpMethod.GET.is(method)) {
+      Response.writeError(request, response, callback, HttpStatus.METHOD_NOT_ALLOWED_405);
+      return true;
+    }
+
+    ByteBuffer body = StandardCharsets.UTF_8.encode(new JSONObject(ServerStats.toMap(server
+        .getStats(), new LinkedHashMap<>())).toString());
+
+    response.setStatus(HttpStatus.OK_200);
+    response.getHeaders().put(CONTENT_TYPE_JSON);
+    response.getHeaders().put(CACHE_CONTROL_NO_STORE);
+    response.getHeaders().put(HttpHeader.CONTENT_LENGTH, body.remaining());
+    response.write(true, head ? null : body, callback);
+    return true;
+  }
+}
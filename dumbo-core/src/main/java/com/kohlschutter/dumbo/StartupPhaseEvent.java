@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a phase of a Dumbo server's startup.
+ *
+ * @author Christian Kohlschütter
+ * @see StartupTimeline
+ */
+@Name("com.kohlschutter.dumbo.StartupPhase")
+@Label("Startup Phase")
+@Category({"Dumbo", "Startup"})
+@Description("A phase of a Dumbo server's startup")
+@StackTrace(false)
+final class StartupPhaseEvent extends Event {
+  @Label("Phase")
+  String phase;
+
+  @Label("Context")
+  String context;
+
+  @Label("Path")
+  String path;
+}
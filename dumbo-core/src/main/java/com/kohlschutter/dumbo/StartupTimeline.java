@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.dumbo.api.DumboStartupPhase;
+
+/**
+ * Records the phases of a Dumbo server's startup, both as {@link StartupPhaseEvent} JFR events and
+ * as a timeline that can be retrieved via {@link DumboServerImpl#getStartupTimeline()}.
+ *
+ * @author Christian Kohlschütter
+ */
+final class StartupTimeline {
+  private static final Logger LOG = LoggerFactory.getLogger(StartupTimeline.class);
+
+  private final long originNanos = System.nanoTime();
+  private final List<DumboStartupPhase> phases = new ArrayList<>();
+
+  /**
+   * A phase that is in progress until {@link #close()} is called.
+   */
+  final class Phase implements DumboStartupPhase, AutoCloseable {
+    private final String name;
+    private final String context;
+    private final String path;
+    private final long startNanos;
+    private final StartupPhaseEvent event;
+    private long durationNanos = -1;
+
+    private Phase(String name, String context, String path) {
+      this.name = name;
+      this.context = context;
+      this.path = path;
+      this.event = new StartupPhaseEvent();
+      event.begin();
+      this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+      synchronized (this) {
+        if (durationNanos >= 0) {
+          return;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.phase = name;
+        event.context = context;
+        event.path = path;
+        event.commit();
+      }
+      synchronized (phases) {
+        phases.add(this);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public String getContext() {
+      return context;
+    }
+
+    @Override
+    public String getPath() {
+      return path;
+    }
+
+    @Override
+    public Duration getStart() {
+      return Duration.ofNanos(startNanos - originNanos);
+    }
+
+    @Override
+    public synchronized Duration getDuration() {
+      return Duration.ofNanos(Math.max(0, durationNanos));
+    }
+
+    @Override
+    public String toString() {
+      return name + (context == null ? "" : "[" + context + "]") + (path == null ? "" : "(" + path
+          + ")") + "@" + getStart().toMillis() + "ms+" + getDuration().toMillis() + "ms";
+    }
+  }
+
+  StartupTimeline() {
+  }
+
+  /**
+   * Begins a new phase; call {@link Phase#close()} to end it (e.g., via try-with-resources).
+   *
+   * @param name The phase name.
+   * @param context The context path, or {@code null}.
+   * @param path The resource or URL path, or {@code null}.
+   * @return The phase.
+   */
+  Phase begin(String name, String context, String path) {
+    return new Phase(name, context, path);
+  }
+
+  /**
+   * Returns the phases completed so far, in order of completion.
+   *
+   * @return The phases.
+   */
+  List<DumboStartupPhase> getPhases() {
+    synchronized (phases) {
+      return Collections.unmodifiableList(new ArrayList<>(phases));
+    }
+  }
+
+  /**
+   * Logs a single summary line, with the total time per phase name (nested phases are included in
+   * their parent's time as well).
+   */
+  void logSummary() {
+    if (!LOG.isInfoEnabled()) {
+      return;
+    }
+    Map<String, long[]> totals = new LinkedHashMap<>();
+    for (DumboStartupPhase p : getPhases()) {
+      long[] t = totals.computeIfAbsent(p.getName(), (k) -> new long[2]);
+      t[0] += p.getDuration().toNanos();
+      t[1]++;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("Startup completed after ").append(Duration.ofNanos(System.nanoTime() - originNanos)
+        .toMillis()).append("ms:");
+    for (Map.Entry<String, long[]> en : totals.entrySet()) {
+      long[] t = en.getValue();
+      sb.append(' ').append(en.getKey()).append('=').append(Duration.ofNanos(t[0]).toMillis())
+          .append("ms");
+      if (t[1] > 1) {
+        sb.append("/").append(t[1]);
+      }
+    }
+    LOG.info(sb.toString());
+  }
+}
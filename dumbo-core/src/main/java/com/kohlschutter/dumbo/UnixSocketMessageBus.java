@@ -0,0 +1,464 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.newsclub.net.unix.AFUNIXServerSocket;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.AFUNIXSocketCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
+import com.kohlschutter.dumbo.api.DumboMessageBus;
+
+/**
+ * A {@link DumboMessageBus} that connects server processes on the same host via UNIX domain
+ * sockets.
+ *
+ * Every process binds its own socket in a shared directory, and connects to the sockets of all
+ * other processes found there, before the constructor returns. The directory is rescanned
+ * periodically, and whenever another process connects (i.e., has just started), so new peers are
+ * picked up right away; sockets left behind by terminated processes are removed.
+ *
+ * Publishing never blocks: messages are queued for every peer, and sent by a separate thread per
+ * peer. A peer whose queue is full, or that hasn't accepted data for a while (see
+ * {@code dumbo.message-bus.write-timeout}), is disconnected (and reconnected upon the next scan),
+ * and publishing fails with an {@link IOException}.
+ *
+ * The directory is created with permissions restricted to the current user, and connections
+ * (incoming and outgoing) are only accepted if the peer process runs as the same user.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class UnixSocketMessageBus implements DumboMessageBus {
+  private static final Logger LOG = LoggerFactory.getLogger(UnixSocketMessageBus.class);
+
+  /**
+   * The interval (in milliseconds) between two scans of the socket directory for new peers.
+   */
+  private static final long SCAN_INTERVAL_MILLIS = Math.max(100, Long.getLong(
+      "dumbo.message-bus.scan-interval", 1000));
+
+  /**
+   * The maximum number of messages waiting to be sent to a peer.
+   */
+  private static final int QUEUE_SIZE = Integer.getInteger("dumbo.message-bus.queue-size", 4096);
+
+  /**
+   * The time (in milliseconds) after which a peer that doesn't accept data is disconnected.
+   */
+  private static final long WRITE_TIMEOUT_MILLIS = Math.max(100, Long.getLong(
+      "dumbo.message-bus.write-timeout", 5000));
+
+  private static final int MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+  private static final String SUFFIX = ".sock";
+
+  private final Path directory;
+  private final File socketFile;
+  private final long uid;
+  private final AFUNIXServerSocket serverSocket;
+  private final MessageBusSubscribers subscribers = new MessageBusSubscribers();
+  private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+  private final Map<Path, Peer> peers = new ConcurrentHashMap<>();
+  private final Set<Path> untrusted = new HashSet<>(); // scanner thread only
+  private final Object scanLock = new Object();
+  private final Thread acceptor;
+  private final Thread scanner;
+  private boolean rescanRequested; // guarded by scanLock
+  private volatile boolean closed;
+
+  /**
+   * Creates a new {@link UnixSocketMessageBus}, binding a new socket in the given directory.
+   *
+   * @param directory The socket directory shared by all processes.
+   * @throws IOException on error.
+   */
+  @SuppressFBWarnings({"PATH_TRAVERSAL_IN", "CT_CONSTRUCTOR_THROW"})
+  public UnixSocketMessageBus(Path directory) throws IOException {
+    this.directory = createPrivateDirectory(directory);
+    this.socketFile = directory.resolve(UUID.randomUUID() + SUFFIX).toFile();
+    this.serverSocket = AFUNIXServerSocket.newInstance();
+    serverSocket.bind(AFUNIXSocketAddress.of(socketFile));
+    this.uid = ownerUid(socketFile.toPath());
+
+    // connect to existing peers before anything can be published
+    scanPeers();
+
+    this.acceptor = new Thread(this::acceptLoop, "UnixSocketMessageBus-acceptor");
+    acceptor.setDaemon(true);
+    this.scanner = new Thread(this::scanLoop, "UnixSocketMessageBus-scanner");
+    scanner.setDaemon(true);
+    acceptor.start();
+    scanner.start();
+
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Message bus listening on " + socketFile);
+    }
+  }
+
+  private static Path createPrivateDirectory(Path directory) throws IOException {
+    if (Files.isDirectory(directory)) {
+      try {
+        Set<PosixFilePermission> perms = Files.getPosixFilePermissions(directory);
+        if (!PosixFilePermissions.fromString("rwx------").containsAll(perms)) {
+          LOG.warn("Message bus directory {} is accessible by other users: {}", directory,
+              PosixFilePermissions.toString(perms));
+        }
+      } catch (UnsupportedOperationException e) {
+        // not a POSIX file system
+      }
+      return directory;
+    }
+    try {
+      return Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(
+          PosixFilePermissions.fromString("rwx------")));
+    } catch (UnsupportedOperationException e) {
+      return Files.createDirectories(directory);
+    }
+  }
+
+  private static long ownerUid(Path file) {
+    try {
+      return ((Number) Files.getAttribute(file, "unix:uid")).longValue();
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Cannot determine the owner of {}; peers cannot be verified", file, e);
+      return -1;
+    }
+  }
+
+  /**
+   * Checks whether the process at the other end of the given socket runs as the same user as this
+   * process.
+   *
+   * @param socket The socket.
+   * @return {@code true} if so.
+   */
+  private boolean isTrustedPeer(AFUNIXSocket socket) {
+    long peerUid;
+    try {
+      AFUNIXSocketCredentials creds = socket.getPeerCredentials();
+      peerUid = creds == null ? -1 : creds.getUid();
+    } catch (IOException e) {
+      peerUid = -1;
+    }
+    if (uid == -1 || peerUid != uid) {
+      LOG.warn("Rejecting message bus peer with uid {} (expected: {})", peerUid, uid);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * A connection to another process, with its own queue and writer thread, so a peer that stops
+   * reading cannot hold up the others.
+   */
+  private final class Peer {
+    private final Path path;
+    private final Socket socket;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread writer;
+    private volatile long writeStartedNanos; // 0 if not writing
+
+    Peer(Path path, Socket socket) {
+      this.path = path;
+      this.socket = socket;
+      this.writer = new Thread(this::writeLoop, "UnixSocketMessageBus-writer");
+      writer.setDaemon(true);
+    }
+
+    void start() {
+      writer.start();
+    }
+
+    boolean offer(byte[] frame) {
+      if (queue.offer(frame)) {
+        return true;
+      }
+      disconnect("queue is full");
+      return false;
+    }
+
+    boolean isStalled(long now) {
+      long started = writeStartedNanos;
+      return started != 0 && now - started > TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MILLIS);
+    }
+
+    private void writeLoop() {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket
+          .getOutputStream()))) {
+        while (!closed) {
+          byte[] frame = queue.take();
+          writeStartedNanos = System.nanoTime();
+          out.write(frame);
+          if (queue.isEmpty()) {
+            out.flush();
+          }
+          writeStartedNanos = 0;
+        }
+      } catch (InterruptedException e) {
+        // disconnected
+      } catch (IOException e) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Disconnecting from peer: " + e);
+        }
+      } finally {
+        close();
+      }
+    }
+
+    void disconnect(String reason) {
+      LOG.warn("Disconnecting from message bus peer {}: {}", path, reason);
+      close();
+    }
+
+    void close() {
+      peers.remove(path, this);
+      closeQuietly(socket);
+      writer.interrupt();
+    }
+  }
+
+  @Override
+  public void publish(String topic, byte[] message) throws IOException {
+    if (closed) {
+      throw new IOException("Message bus is closed");
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(message.length + topic.length() + 8);
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeUTF(topic);
+      out.writeInt(message.length);
+      out.write(message);
+    }
+    byte[] frame = bos.toByteArray();
+    int dropped = 0;
+    for (Peer peer : peers.values()) {
+      if (!peer.offer(frame)) {
+        dropped++;
+      }
+    }
+    if (dropped > 0) {
+      throw new IOException("Message dropped for " + dropped + " disconnected peer(s)");
+    }
+  }
+
+  /**
+   * Returns the number of peers this bus currently sends messages to.
+   *
+   * @return The number of peers.
+   */
+  int getPeerCount() {
+    return peers.size();
+  }
+
+  @Override
+  public Subscription subscribe(String topic, Consumer<byte[]> listener) {
+    return subscribers.subscribe(topic, listener);
+  }
+
+  private void acceptLoop() {
+    while (!closed) {
+      AFUNIXSocket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        if (!closed) {
+          LOG.warn("Cannot accept connection", e);
+        }
+        return;
+      }
+      if (!isTrustedPeer(socket)) {
+        closeQuietly(socket);
+        continue;
+      }
+      inbound.add(socket);
+      Thread reader = new Thread(() -> readLoop(socket), "UnixSocketMessageBus-reader");
+      reader.setDaemon(true);
+      reader.start();
+
+      // a new process has started; connect to it, too
+      synchronized (scanLock) {
+        rescanRequested = true;
+        scanLock.notifyAll();
+      }
+    }
+  }
+
+  private void readLoop(Socket socket) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket
+        .getInputStream()))) {
+      while (!closed) {
+        String topic = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_MESSAGE_LENGTH) {
+          throw new IOException("Illegal message length: " + length);
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        subscribers.dispatch(topic, message);
+      }
+    } catch (EOFException e) {
+      // peer disconnected
+    } catch (IOException e) {
+      if (!closed) {
+        LOG.warn("Error reading from peer", e);
+      }
+    } finally {
+      inbound.remove(socket);
+      closeQuietly(socket);
+    }
+  }
+
+  private void scanLoop() {
+    long nextScan = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SCAN_INTERVAL_MILLIS);
+    try {
+      while (!closed) {
+        boolean rescan;
+        synchronized (scanLock) {
+          if (!rescanRequested) {
+            scanLock.wait(Math.min(SCAN_INTERVAL_MILLIS, WRITE_TIMEOUT_MILLIS));
+          }
+          rescan = rescanRequested;
+          rescanRequested = false;
+        }
+
+        long now = System.nanoTime();
+        for (Peer peer : peers.values()) {
+          if (peer.isStalled(now)) {
+            peer.disconnect("write timeout");
+          }
+        }
+
+        if (rescan || now - nextScan >= 0) {
+          scanPeers();
+          nextScan = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SCAN_INTERVAL_MILLIS);
+        }
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } finally {
+      for (Peer peer : peers.values()) {
+        peer.close();
+      }
+    }
+  }
+
+  private void scanPeers() {
+    Set<Path> found = new HashSet<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path f : files) {
+        if (!f.toFile().equals(socketFile)) {
+          found.add(f);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot scan {}", directory, e);
+      return;
+    }
+
+    for (Peer peer : peers.values()) {
+      if (!found.contains(peer.path)) {
+        peer.close();
+      }
+    }
+
+    untrusted.retainAll(found);
+
+    for (Path f : found) {
+      if (peers.containsKey(f) || untrusted.contains(f)) {
+        continue;
+      }
+      try {
+        AFUNIXSocket socket = AFUNIXSocket.connectTo(AFUNIXSocketAddress.of(f.toFile()));
+        if (isTrustedPeer(socket)) {
+          Peer peer = new Peer(f, socket);
+          peers.put(f, peer);
+          peer.start();
+        } else {
+          untrusted.add(f);
+          closeQuietly(socket);
+        }
+      } catch (ConnectException e) {
+        // nobody listening; left behind by a terminated process
+        deleteStaleSocket(f);
+      } catch (IOException e) {
+        LOG.warn("Cannot connect to peer {}", f, e);
+      }
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private static void deleteStaleSocket(Path f) {
+    try {
+      Files.deleteIfExists(f);
+    } catch (IOException e) {
+      LOG.warn("Cannot delete stale socket {}", f, e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    scanner.interrupt();
+    try {
+      serverSocket.close();
+    } finally {
+      for (Peer peer : peers.values()) {
+        peer.close();
+      }
+      for (Socket socket : inbound) {
+        closeQuietly(socket);
+      }
+      Files.deleteIfExists(socketFile.toPath());
+    }
+  }
+}
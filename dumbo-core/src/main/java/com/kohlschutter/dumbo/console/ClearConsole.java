@@ -16,10 +16,14 @@
  */
 package com.kohlschutter.dumbo.console;
 
+import java.io.Serializable;
+
 /**
  * Message to tell the app to clear the console.
  */
-public class ClearConsole {
+public class ClearConsole implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public String get_() { // NOPMD.MethodNamingConventions
     return "ClearConsole";
   }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AdmissionControlTest {
+  private final ServerStats stats = new ServerStats();
+
+  @Test
+  void testDisabled() {
+    AdmissionControl ac = new AdmissionControl(stats, 0, 0);
+    assertFalse(ac.isEnabled());
+    for (int i = 0; i < 10; i++) {
+      assertTrue(ac.admitNewPage(false));
+    }
+  }
+
+  @Test
+  void testMaxPages() {
+    AdmissionControl ac = new AdmissionControl(stats, 2, 0);
+    assertTrue(ac.isEnabled());
+    assertTrue(ac.admitNewPage(false));
+    assertTrue(ac.admitNewPage(false));
+
+    // rejected right away, without waiting for capacity
+    long time = System.currentTimeMillis();
+    assertFalse(ac.admitNewPage(false));
+    assertTrue(System.currentTimeMillis() - time < 1000);
+
+    // replacing a page of the same session doesn't need a new slot
+    assertTrue(ac.admitNewPage(true));
+
+    stats.releasePageSlot();
+    stats.releasePageSlot();
+    assertTrue(ac.admitNewPage(false));
+  }
+
+  @Test
+  void testMaxParkedPolls() {
+    AdmissionControl ac = new AdmissionControl(stats, 0, 1);
+    assertTrue(ac.admitNewPage(false));
+
+    stats.longPollParked();
+    assertFalse(ac.admitNewPage(false));
+
+    stats.longPollUnparked();
+    assertTrue(ac.admitNewPage(false));
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.dumbo.api.DumboMessageBus;
+
+class ConsoleBusTest {
+  private static final String PAGE_ID = "page";
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  private final LoopbackMessageBus bus = new LoopbackMessageBus();
+  private final ConsoleChunkFilter filter = new ConsoleChunkFilter(List.of(Color.class));
+
+  private ConsoleImpl consoleA;
+  private ConsoleImpl consoleB;
+
+  @BeforeEach
+  void setUp() {
+    consoleA = new ConsoleImpl(null, PAGE_ID, null, new ConsoleBus(bus), filter);
+    consoleB = new ConsoleImpl(null, PAGE_ID, null, new ConsoleBus(bus), filter);
+  }
+
+  @AfterEach
+  void tearDown() {
+    consoleA.close();
+    consoleB.close();
+  }
+
+  @Test
+  void testFanOutAndDelivered() throws Exception {
+    consoleA.add("hello");
+    assertEquals(1, consoleA.getQueueDepth());
+    awaitQueueDepth(consoleB::getQueueDepth, 1);
+
+    assertEquals("hello", consoleB.getConsoleService().requestNextChunk());
+
+    // the "delivered" notice drops the copy on node A
+    awaitQueueDepth(consoleA::getQueueDepth, 0);
+  }
+
+  @Test
+  void testMultipleChunks() throws Exception {
+    consoleA.add("a", new Color("red"));
+    awaitQueueDepth(consoleB::getQueueDepth, 1);
+
+    Object chunk = consoleB.getConsoleService().requestNextChunk();
+    assertInstanceOf(MultipleChunks.class, chunk);
+    assertArrayEquals(new Object[] {"a", new Color("red")}, ((MultipleChunks) chunk).getChunks());
+    awaitQueueDepth(consoleA::getQueueDepth, 0);
+  }
+
+  @Test
+  void testUndeclaredTypeStaysLocal() throws Exception {
+    Date date = new Date();
+    consoleA.add(date);
+    consoleA.add("after");
+
+    // messages are delivered in order, so the date would have arrived first
+    awaitQueueDepth(consoleB::getQueueDepth, 1);
+    assertEquals("after", consoleB.getConsoleService().requestNextChunk());
+
+    awaitQueueDepth(consoleA::getQueueDepth, 1);
+    assertEquals(date, consoleA.getConsoleService().requestNextChunk());
+  }
+
+  @Test
+  void testDeclaredType() throws Exception {
+    consoleA.add(new Color("blue"));
+    awaitQueueDepth(consoleB::getQueueDepth, 1);
+    assertEquals(new Color("blue"), consoleB.getConsoleService().requestNextChunk());
+  }
+
+  @Test
+  void testPublishFailureKeepsChunkLocal() throws Exception {
+    ConsoleImpl console = new ConsoleImpl(null, PAGE_ID, null, new ConsoleBus(
+        new FailingMessageBus()), filter);
+    try {
+      console.add("hello");
+      assertEquals(1, console.getQueueDepth());
+      assertEquals("hello", console.getConsoleService().requestNextChunk());
+      assertEquals(0, console.getQueueDepth());
+    } finally {
+      console.close();
+    }
+  }
+
+  @Test
+  void testPublishOutsideConsoleLock() throws Exception {
+    BlockingMessageBus blockingBus = new BlockingMessageBus();
+    ConsoleImpl console = new ConsoleImpl(null, PAGE_ID, null, new ConsoleBus(blockingBus), filter);
+    Thread producer = new Thread(() -> console.add("hello"));
+    try {
+      producer.start();
+      assertTrue(blockingBus.publishing.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+      // the producer is stuck in the bus, but the console remains usable
+      assertEquals(1, console.getQueueDepth());
+      assertEquals("hello", console.getConsoleService().requestNextChunk());
+    } finally {
+      blockingBus.release.countDown();
+      producer.join(TIMEOUT_MILLIS);
+      console.close();
+    }
+  }
+
+  private static void awaitQueueDepth(IntSupplier depth, int expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (depth.getAsInt() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, depth.getAsInt());
+  }
+
+  private static final class Color implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+
+    Color(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Color && name.equals(((Color) obj).name);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+  }
+
+  private static final class BlockingMessageBus implements DumboMessageBus {
+    private final CountDownLatch publishing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public void publish(String topic, byte[] message) throws IOException {
+      publishing.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public Subscription subscribe(String topic, Consumer<byte[]> listener) {
+      return () -> {
+      };
+    }
+  }
+
+  private static final class FailingMessageBus implements DumboMessageBus {
+    @Override
+    public void publish(String topic, byte[] message) throws IOException {
+      throw new IOException("Message bus queue is full");
+    }
+
+    @Override
+    public Subscription subscribe(String topic, Consumer<byte[]> listener) {
+      return () -> {
+      };
+    }
+  }
+}
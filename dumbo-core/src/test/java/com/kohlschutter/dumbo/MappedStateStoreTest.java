@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedStateStoreTest {
+  private static final String SCOPE = "page:1";
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testPutGet() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "key", "value");
+      assertEquals("value", store.get(SCOPE, "key"));
+      assertTrue(store.containsScope(SCOPE));
+
+      store.put(SCOPE, "key", null);
+      assertNull(store.get(SCOPE, "key"));
+      assertFalse(store.containsScope(SCOPE));
+    }
+  }
+
+  @Test
+  void testIdentityWithinAccessWindow() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "list", new ArrayList<>(List.of("a")));
+
+      store.beginAccess(SCOPE);
+      @SuppressWarnings("unchecked")
+      List<String> list = (List<String>) store.get(SCOPE, "list");
+      assertSame(list, store.get(SCOPE, "list"));
+      list.add("b");
+      store.endAccess(SCOPE);
+
+      // evicted from the heap, but the in-place modification was written back
+      Object copy = store.get(SCOPE, "list");
+      assertNotSame(list, copy);
+      assertEquals(List.of("a", "b"), copy);
+    }
+  }
+
+  @Test
+  void testUnmodifiedValuesAreNotWritten() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "a", "value");
+      store.put(SCOPE, "b", new ArrayList<>(List.of("x")));
+      Map<Path, Object> before = fileKeys();
+
+      store.beginAccess(SCOPE);
+      store.get(SCOPE, "a");
+      store.get(SCOPE, "b");
+      store.endAccess(SCOPE);
+      assertEquals(before, fileKeys());
+
+      store.beginAccess(SCOPE);
+      store.put(SCOPE, "a", "changed");
+      store.endAccess(SCOPE);
+      assertEquals(before.keySet(), fileKeys().keySet());
+      assertFalse(before.equals(fileKeys()));
+    }
+  }
+
+  @Test
+  void testNonSerializableValuesStayOnHeap() throws Exception {
+    Object value = new Object();
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "key", value);
+      assertSame(value, store.get(SCOPE, "key"));
+      assertTrue(fileKeys().isEmpty());
+    }
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      assertNull(store.get(SCOPE, "key"));
+    }
+  }
+
+  @Test
+  void testSerializationFailure() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      Flaky flaky = new Flaky();
+      store.put(SCOPE, "key", flaky);
+
+      store.beginAccess(SCOPE);
+      Flaky value = (Flaky) store.get(SCOPE, "key");
+      value.fail = true;
+      store.endAccess(SCOPE); // does not throw
+
+      // kept on the heap, and retried later
+      assertSame(value, store.get(SCOPE, "key"));
+      value.fail = false;
+      value.count = 42;
+      store.beginAccess(SCOPE);
+      store.endAccess(SCOPE);
+      assertEquals(42, ((Flaky) store.get(SCOPE, "key")).count);
+    }
+  }
+
+  @Test
+  void testRenameScope() throws Exception {
+    Object heapValue = new Object();
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "serialized", "value");
+      store.put(SCOPE, "heap", heapValue);
+
+      store.renameScope(SCOPE, "page:2");
+      assertFalse(store.containsScope(SCOPE));
+      assertNull(store.get(SCOPE, "serialized"));
+      assertEquals("value", store.get("page:2", "serialized"));
+      assertSame(heapValue, store.get("page:2", "heap"));
+    }
+  }
+
+  @Test
+  void testRemoveScope() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "key", "value");
+      store.put("page:2", "key", "other");
+      store.removeScope(SCOPE);
+      assertFalse(store.containsScope(SCOPE));
+      assertEquals("other", store.get("page:2", "key"));
+    }
+  }
+
+  @Test
+  void testCloseAndReopen() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      store.put(SCOPE, "key", "value");
+      store.beginAccess(SCOPE);
+      store.put(SCOPE, "pending", "written upon close");
+    }
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      assertTrue(store.containsScope(SCOPE));
+      assertEquals("value", store.get(SCOPE, "key"));
+      assertEquals("written upon close", store.get(SCOPE, "pending"));
+    }
+  }
+
+  @Test
+  void testDirectoryIsExclusive() throws Exception {
+    try (MappedStateStore store = new MappedStateStore(tempDir)) {
+      assertThrows(IOException.class, () -> new MappedStateStore(tempDir, 0).close());
+    }
+    new MappedStateStore(tempDir, 0).close();
+  }
+
+  private Map<Path, Object> fileKeys() throws IOException {
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(tempDir)) {
+      files = stream.filter((p) -> p.toString().endsWith(".ser")).collect(Collectors.toList());
+    }
+    Map<Path, Object> map = new HashMap<>();
+    for (Path f : files) {
+      // a new file key means the file has been rewritten
+      map.put(f, Files.readAttributes(f, BasicFileAttributes.class).fileKey());
+    }
+    return map;
+  }
+
+  private static final class Flaky implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private transient boolean fail;
+    private int count;
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      if (fail) {
+        throw new ConcurrentModificationException();
+      }
+      out.defaultWriteObject();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.dumbo.exceptions.InvalidSessionException;
+
+import jakarta.servlet.http.HttpSession;
+
+class PageReaperTest {
+  private final ServerStats stats = new ServerStats();
+  private final HttpSession httpSession = TestHttpSession.create();
+
+  private String newPage() {
+    assertTrue(stats.reservePageSlot(0));
+    return DumboSessionImpl.newPageId(httpSession, 0, stats);
+  }
+
+  private DumboSessionImpl poll(String pageId) {
+    DumboSessionImpl page = DumboSessionImpl.getDumboSession(httpSession, pageId);
+    page.getConsoleImpl().add("chunk");
+    assertEquals("chunk", page.getConsoleImpl().getConsoleService().requestNextChunk());
+    return page;
+  }
+
+  @Test
+  void testReapIdlePages() {
+    PageReaper reaper = new PageReaper(null, stats);
+    assertTrue(reaper.isEnabled());
+
+    DumboSessionImpl polled = poll(newPage());
+    String neverPolled = newPage();
+
+    long now = System.currentTimeMillis();
+    assertEquals(0, reaper.reapIdlePages(now));
+
+    long later = now + Math.max(PageReaper.GRACE_PERIOD_MILLIS, 2
+        * ConsoleImpl.MAX_WAIT_NEXT_CHUNK_MILLIS) + 1000;
+    assertEquals(1, reaper.reapIdlePages(later));
+
+    // pages that never polled can't be detected as abandoned
+    assertEquals(Set.of(neverPolled), DumboSessionImpl.getDumboSessionPageIds(httpSession));
+    assertEquals(1, stats.getActivePages());
+    assertThrows(InvalidSessionException.class, polled::getConsole);
+
+    assertEquals(0, reaper.reapIdlePages(later));
+  }
+
+  @Test
+  void testSessionsAreNotInvalidatedByDefault() throws Exception {
+    ScheduledExecutorScheduler scheduler = new ScheduledExecutorScheduler();
+    scheduler.start();
+    PageReaper reaper = new PageReaper(scheduler, stats);
+    reaper.start();
+    try {
+      DumboSessionImpl.removePageId(httpSession, poll(newPage()).getPageId());
+      assertTrue(DumboSessionImpl.getDumboSessionPageIds(httpSession).isEmpty());
+
+      assertFalse(reaper.onSessionEmpty(new WeakReference<>(httpSession)));
+      httpSession.getAttribute("still valid");
+    } finally {
+      reaper.stop();
+      scheduler.stop();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpSession;
+
+class PageRegistryTest {
+  private final HttpSession httpSession = TestHttpSession.create();
+  private final PageRegistry registry = new PageRegistry();
+
+  private DumboSessionImpl newPage(String pageId) {
+    return new DumboSessionImpl(pageId, httpSession, null);
+  }
+
+  @Test
+  void testAddGetRemove() {
+    DumboSessionImpl page = newPage("a");
+    assertSame(page, registry.add(page));
+    assertSame(page, registry.add(newPage("a")));
+    assertSame(page, registry.get("a"));
+    assertEquals(Set.of("a"), registry.pageIds());
+
+    AtomicInteger emptied = new AtomicInteger();
+    assertNull(registry.remove("b", emptied::incrementAndGet));
+    assertSame(page, registry.remove("a", emptied::incrementAndGet));
+    assertNull(registry.remove("a", emptied::incrementAndGet));
+
+    assertEquals(1, emptied.get());
+    assertTrue(registry.isEmpty());
+    assertNull(registry.get("a"));
+  }
+
+  @Test
+  void testEvictionOrder() {
+    registry.add(newPage("a"));
+    registry.add(newPage("b"));
+    registry.add(newPage("c"));
+
+    assertTrue(registry.isFull(3));
+    assertFalse(registry.isFull(4));
+    assertFalse(registry.isFull(0));
+    assertNull(registry.pollEvictionCandidate(4));
+
+    assertEquals("a", registry.pollEvictionCandidate(3));
+    registry.remove("a", () -> {
+    });
+
+    // pages removed otherwise are no longer candidates
+    registry.remove("b", () -> {
+    });
+    registry.add(newPage("d"));
+    assertEquals("c", registry.pollEvictionCandidate(2));
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpSession;
+
+class ServerStatsTest {
+  private final ServerStats stats = new ServerStats();
+
+  @Test
+  void testReservePageSlot() {
+    assertTrue(stats.reservePageSlot(2));
+    assertTrue(stats.reservePageSlot(2));
+    assertFalse(stats.reservePageSlot(2));
+
+    // unlimited
+    assertTrue(stats.reservePageSlot(0));
+    assertFalse(stats.reservePageSlot(3));
+
+    stats.releasePageSlot();
+    assertTrue(stats.reservePageSlot(3));
+  }
+
+  @Test
+  void testPageRemovedReleasesSlotOnce() {
+    DumboSessionImpl page = new DumboSessionImpl("page", TestHttpSession.create(), stats);
+    assertTrue(stats.reservePageSlot(1));
+    stats.pageCreated(page);
+    assertEquals(1, stats.getActivePages());
+    assertFalse(stats.reservePageSlot(1));
+
+    stats.pageRemoved(page);
+    stats.pageRemoved(page);
+    assertEquals(0, stats.getActivePages());
+
+    assertTrue(stats.reservePageSlot(1));
+    assertFalse(stats.reservePageSlot(1));
+  }
+
+  @Test
+  void testNewPageTakesSlot() {
+    HttpSession httpSession = TestHttpSession.create();
+    assertTrue(stats.reservePageSlot(1));
+    String pageId = DumboSessionImpl.newPageId(httpSession, 0, stats);
+    assertEquals(1, stats.getActivePages());
+    assertFalse(stats.reservePageSlot(1));
+
+    DumboSessionImpl.getDumboSession(httpSession, pageId).invalidate();
+    assertEquals(0, stats.getActivePages());
+    assertTrue(stats.reservePageSlot(1));
+  }
+
+  @Test
+  void testFailedNewPageReleasesSlot() {
+    HttpSession httpSession = TestHttpSession.create();
+    httpSession.invalidate();
+
+    assertTrue(stats.reservePageSlot(1));
+    assertThrows(IllegalStateException.class, () -> DumboSessionImpl.newPageId(httpSession, 0,
+        stats));
+    assertEquals(0, stats.getActivePages());
+
+    assertTrue(stats.reservePageSlot(1));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Creates in-memory {@link HttpSession}s, without a {@link DumboServerImpl} behind them.
+ *
+ * @author Christian Kohlschütter
+ */
+final class TestHttpSession {
+  private TestHttpSession() {
+    throw new IllegalStateException("No instances");
+  }
+
+  /**
+   * Creates a new, valid {@link HttpSession}, whose {@link ServletContext} has no attributes.
+   *
+   * @return The session.
+   */
+  static HttpSession create() {
+    String id = UUID.randomUUID().toString();
+    Map<String, Object> attributes = new ConcurrentHashMap<>();
+    AtomicBoolean valid = new AtomicBoolean(true);
+    ServletContext servletContext = proxy(ServletContext.class, (m, args) -> null);
+
+    return proxy(HttpSession.class, (m, args) -> {
+      switch (m.getName()) {
+        case "getId":
+          return id;
+        case "getServletContext":
+          return servletContext;
+        default:
+          break;
+      }
+      if (!valid.get()) {
+        throw new IllegalStateException("Session invalidated: " + id);
+      }
+      switch (m.getName()) {
+        case "getAttribute":
+          return attributes.get((String) args[0]);
+        case "getAttributeNames":
+          return Collections.enumeration(attributes.keySet());
+        case "setAttribute":
+          if (args[1] == null) {
+            attributes.remove((String) args[0]);
+          } else {
+            attributes.put((String) args[0], args[1]);
+          }
+          return null;
+        case "removeAttribute":
+          attributes.remove((String) args[0]);
+          return null;
+        case "invalidate":
+          valid.set(false);
+          return null;
+        default:
+          return null;
+      }
+    });
+  }
+
+  @FunctionalInterface
+  private interface Handler {
+    Object invoke(Method m, Object[] args);
+  }
+
+  private static <T> T proxy(Class<T> iface, Handler handler) {
+    ClassLoader cl = TestHttpSession.class.getClassLoader();
+    return iface.cast(Proxy.newProxyInstance(cl, new Class<?>[] {iface}, (proxy, m, args) -> {
+          switch (m.getName()) {
+            case "equals":
+              return proxy == args[0];
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "toString":
+              return iface.getSimpleName() + "@" + System.identityHashCode(proxy);
+            default:
+              break;
+          }
+          Object ret = handler.invoke(m, args);
+          if (ret == null && m.getReturnType().isPrimitive() && m.getReturnType() != void.class) {
+            ret = m.getReturnType() == boolean.class ? Boolean.FALSE : Integer.valueOf(0);
+          }
+          return ret;
+        }));
+  }
+}
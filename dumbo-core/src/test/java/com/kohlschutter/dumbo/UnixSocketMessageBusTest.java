@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.newsclub.net.unix.AFUNIXServerSocket;
+import org.newsclub.net.unix.AFUNIXSocket;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+
+class UnixSocketMessageBusTest {
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  @TempDir
+  Path tempDir;
+
+  @BeforeAll
+  static void checkSupported() {
+    assumeTrue(AFUNIXSocket.isSupported());
+  }
+
+  @Test
+  void testPublishRightAfterStart() throws Exception {
+    Path dir = tempDir.resolve("bus");
+    try (UnixSocketMessageBus busA = new UnixSocketMessageBus(dir)) {
+      BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+      busA.subscribe("topic", received::add);
+
+      // existing peers are connected to synchronously, so nothing is lost
+      try (UnixSocketMessageBus busB = new UnixSocketMessageBus(dir)) {
+        assertEquals(1, busB.getPeerCount());
+        busB.publish("topic", bytes("hello"));
+        assertArrayEquals(bytes("hello"), received.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+      }
+    }
+  }
+
+  @Test
+  void testNewPeerIsDiscovered() throws Exception {
+    Path dir = tempDir.resolve("bus");
+    try (UnixSocketMessageBus busA = new UnixSocketMessageBus(dir);
+        UnixSocketMessageBus busB = new UnixSocketMessageBus(dir)) {
+      BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+      busB.subscribe("topic", received::add);
+
+      // busA connects to busB once busB has connected to busA
+      awaitPeerCount(busA, 1);
+
+      busA.publish("topic", bytes("hello"));
+      assertArrayEquals(bytes("hello"), received.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  void testStalledPeerDoesNotHoldUpOthers() throws Exception {
+    Path dir = tempDir.resolve("bus");
+    Files.createDirectories(dir);
+
+    // a "peer" that accepts connections, but never reads
+    List<Socket> stalled = new CopyOnWriteArrayList<>();
+    try (AFUNIXServerSocket stalledServer = AFUNIXServerSocket.newInstance()) {
+      stalledServer.bind(AFUNIXSocketAddress.of(dir.resolve("stalled.sock").toFile()));
+      Thread acceptor = new Thread(() -> {
+        try {
+          while (true) {
+            stalled.add(stalledServer.accept());
+          }
+        } catch (IOException e) {
+          // closed
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+
+      try (UnixSocketMessageBus busA = new UnixSocketMessageBus(dir);
+          UnixSocketMessageBus busB = new UnixSocketMessageBus(dir)) {
+        BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        busB.subscribe("topic", received::add);
+        awaitPeerCount(busA, 2);
+
+        // more than the stalled peer's socket buffer can take
+        byte[] message = new byte[256 * 1024];
+        int numMessages = 64;
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < numMessages; i++) {
+          busA.publish("topic", message);
+        }
+        assertTrue(System.currentTimeMillis() - time < TIMEOUT_MILLIS, "publish must not block");
+
+        for (int i = 0; i < numMessages; i++) {
+          assertNotNull(received.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "message " + i);
+        }
+      } finally {
+        for (Socket socket : stalled) {
+          socket.close();
+        }
+      }
+    }
+  }
+
+  @Test
+  void testPrivateDirectory() throws Exception {
+    Path dir = tempDir.resolve("private");
+    try (UnixSocketMessageBus bus = new UnixSocketMessageBus(dir)) {
+      assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+      assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(
+          dir)));
+    }
+  }
+
+  private static void awaitPeerCount(UnixSocketMessageBus bus, int expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (bus.getPeerCount() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, bus.getPeerCount());
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 
 import com.kohlschutter.dumbo.ConsoleSupport;
+import com.kohlschutter.dumbo.annotations.ConsoleChunkTypes;
 import com.kohlschutter.dumbo.annotations.Services;
 import com.kohlschutter.dumbo.api.Console;
 import com.kohlschutter.dumbo.api.DumboApplication;
@@ -34,6 +35,7 @@ import com.kohlschutter.dumbo.util.DevTools;
  * This demo shows how one can use the Console.
  */
 @Services(CommandLineServiceImpl.class)
+@ConsoleChunkTypes({ColorMessage.class, UserInputException.class})
 public class ConsoleDemoApp implements DumboApplication, BootstrapSupport, ConsoleSupport,
     EventHandler {
   public static void main(String[] args) throws IOException, InterruptedException {
@@ -11,11 +11,11 @@ com.kohlschutter.dumbo.JSPSupport.markComponentUsed(session,
 <meta http-equiv="X-UA-Compatible" content="IE=edge" />
 <meta name="viewport" content="width=device-width, initial-scale=1" />
 <title>AppServer Demo</title>
-<%=com.kohlschutter.dumbo.JSPSupport.htmlHead(session)%>
+<% com.kohlschutter.dumbo.JSPSupport.writeHtmlHead(session, out); %>
 <link rel="stylesheet" href="/css/consoleDemo.css" />
 </head>
 <body>
-	<%=com.kohlschutter.dumbo.JSPSupport.htmlBodyTop(session)%>
+	<% com.kohlschutter.dumbo.JSPSupport.writeHtmlBodyTop(session, out); %>
 	<div class="container" style="padding-top: 20pt">
 
 		<div class="page-header">
@@ -9,10 +9,10 @@ com.kohlschutter.dumbo.JSPSupport.markComponentUsed(session,
 <meta http-equiv="Content-Type" content="text/html; charset=UTF-8" />
 <meta name="robots" content="noindex, nofollow" />
 <title>AppServer Demo</title>
-<%=com.kohlschutter.dumbo.JSPSupport.htmlHead(session)%>
+<% com.kohlschutter.dumbo.JSPSupport.writeHtmlHead(session, out); %>
 </head>
 <body>
-	<%=com.kohlschutter.dumbo.JSPSupport.htmlBodyTop(session)%>
+	<% com.kohlschutter.dumbo.JSPSupport.writeHtmlBodyTop(session, out); %>
 	Hello
 	<span id="rpcResponse"></span>
 	<p>Check the source code (and play with the JavaScript developer
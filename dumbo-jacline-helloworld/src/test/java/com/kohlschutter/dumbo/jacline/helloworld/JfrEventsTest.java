@@ -0,0 +1,112 @@
+/*
+ * dumbo-jacline-helloworld
+ *
+ * Copyright 2023 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.jacline.helloworld;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.dumbo.DumboServerImplBuilder;
+import com.kohlschutter.dumbo.service.TestingDumboServerService;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Verifies that Dumbo's request-level JFR events fire when enabled.
+ */
+class JfrEventsTest {
+  private static final String RPC_CALL = "com.kohlschutter.dumbo.RpcCall";
+  private static final String JSP_RENDER = "com.kohlschutter.dumbo.JspRender";
+
+  @Test
+  void testEventsFire() throws Exception {
+    assumeTrue(FlightRecorder.isAvailable());
+
+    List<RecordedEvent> events;
+    Path file = Files.createTempFile("dumbo-jfr", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(RPC_CALL).withThreshold(Duration.ZERO);
+      recording.enable(JSP_RENDER).withThreshold(Duration.ZERO);
+      recording.start();
+
+      // use a dedicated server (not the one shared via SPI), so we can stop it afterwards
+      DedicatedService service = new DedicatedService();
+      try {
+        for (DemoService demoService : service.getDumboServices(DemoService.class)) {
+          assertEquals("world", demoService.hello(false));
+        }
+
+        load(service.getDumboServer().getLocalURI().resolve("index.html.jsp?reload=true"));
+      } finally {
+        service.shutdown();
+      }
+
+      recording.stop();
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    assertTrue(events.stream().anyMatch((e) -> RPC_CALL.equals(e.getEventType().getName()) && e
+        .getString("method").endsWith("DemoService.hello")), "RpcCall event missing");
+    assertTrue(events.stream().anyMatch((e) -> JSP_RENDER.equals(e.getEventType().getName()) && e
+        .getString("path").endsWith("index.html.jsp")), "JspRender event missing");
+  }
+
+  private static final class DedicatedService extends TestingDumboServerService {
+    DedicatedService() throws IOException, InterruptedException {
+      super(HelloWorldApp.class);
+    }
+
+    @Override
+    protected void configureNewServerImpl(DumboServerImplBuilder builder) {
+      super.configureNewServerImpl(builder);
+      try (ServerSocket ss = new ServerSocket(0)) {
+        builder.withPort(ss.getLocalPort());
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    void shutdown() {
+      getDumboServerImpl().shutdown();
+    }
+  }
+
+  private static void load(URI uri) throws IOException {
+    try (InputStream in = uri.toURL().openConnection().getInputStream()) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records request latencies for one kind of request, and computes percentiles from them.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LatencyRecorder {
+  private final String name;
+  private long[] values = new long[1024];
+  private int size = 0;
+  private int errors = 0;
+
+  LatencyRecorder(String name) {
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Records a successful request.
+   *
+   * @param nanos The latency, in nanoseconds.
+   */
+  synchronized void record(long nanos) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size++] = nanos;
+  }
+
+  /**
+   * Records a failed request.
+   */
+  synchronized void recordError() {
+    errors++;
+  }
+
+  synchronized int getCount() {
+    return size;
+  }
+
+  synchronized int getErrors() {
+    return errors;
+  }
+
+  /**
+   * Returns the given percentile, in milliseconds.
+   *
+   * @param sorted The sorted latencies, see {@link #sortedValues()}.
+   * @param percentile The percentile, e.g., {@code 99.9}.
+   * @return The latency in milliseconds, or {@code NaN} if no values were recorded.
+   */
+  static double percentileMillis(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return Double.NaN;
+    }
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+    index = Math.max(0, Math.min(sorted.length - 1, index));
+    return sorted[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  synchronized long[] sortedValues() {
+    long[] sorted = Arrays.copyOf(values, size);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.transport.HttpClientTransportDynamic;
+import org.eclipse.jetty.http.HttpCookieStore;
+import org.newsclub.net.unix.AFUNIXSocketAddress;
+import org.newsclub.net.unix.jetty.AFSocketClientConnector;
+
+import com.kohlschutter.dumbo.DumboServerImpl;
+import com.kohlschutter.dumbo.api.DumboServerBuilder;
+import com.kohlschutter.dumbo.helloworld.console.ConsoleDemoApp;
+
+/**
+ * A load generator that drives a Dumbo app the way real pages do.
+ *
+ * Each simulated session loads the page and its {@code /app_/} extension assets, allocates a
+ * pageId, keeps a {@code ConsoleService.requestNextChunk} long-poll open, and fires RPCs against
+ * {@link ConsoleDemoApp}'s {@code CommandLineService}. At the end, throughput
+ * and p50/p99/p99.9 latencies are reported per request type, along with thread and heap usage if
+ * the server runs in-process.
+ *
+ * Configuration is done via system properties:
+ * <ul>
+ * <li>{@code dumbo.loadtest.sessions}: Number of concurrent sessions (default: 10)</li>
+ * <li>{@code dumbo.loadtest.duration}: Measurement duration in seconds (default: 30)</li>
+ * <li>{@code dumbo.loadtest.warmup}: Warmup duration in seconds (default: 5)</li>
+ * <li>{@code dumbo.loadtest.think-time}: Milliseconds between RPCs per session (default: 100)</li>
+ * <li>{@code dumbo.loadtest.reload-after}: Number of RPCs after which a session reloads the page,
+ * allocating a new pageId (default: 50; 0 to never reload)</li>
+ * <li>{@code dumbo.loadtest.page}: The page to load, relative to the app (default:
+ * {@code consoleDemo.jsp})</li>
+ * <li>{@code dumbo.loadtest.target}: The base URL of an already running app; if not set,
+ * {@link ConsoleDemoApp} is started in-process</li>
+ * <li>{@code dumbo.loadtest.socket}: Connect via the given AF_UNIX socket path instead of TCP
+ * ({@code auto} picks a temporary path for the in-process server)</li>
+ * </ul>
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LoadTest {
+  private final int numSessions = Integer.getInteger("dumbo.loadtest.sessions", 10);
+  private final int durationSeconds = Integer.getInteger("dumbo.loadtest.duration", 30);
+  private final int warmupSeconds = Integer.getInteger("dumbo.loadtest.warmup", 5);
+  private final int thinkTimeMillis = Integer.getInteger("dumbo.loadtest.think-time", 100);
+  private final int reloadAfter = Integer.getInteger("dumbo.loadtest.reload-after", 50);
+  private final String page = System.getProperty("dumbo.loadtest.page", "consoleDemo.jsp");
+
+  private final LatencyRecorder pageRecorder = new LatencyRecorder("page");
+  private final LatencyRecorder assetRecorder = new LatencyRecorder("asset");
+  private final LatencyRecorder rpcRecorder = new LatencyRecorder("rpc");
+  private final LatencyRecorder pollRecorder = new LatencyRecorder("long-poll");
+
+  private URI baseURI;
+  private volatile boolean running = true;
+  private volatile boolean measuring = false;
+
+  private LoadTest() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    new LoadTest().run();
+    System.exit(0);
+  }
+
+  @SuppressWarnings("PMD.CognitiveComplexity")
+  private void run() throws Exception {
+    String target = System.getProperty("dumbo.loadtest.target");
+    String socketPath = System.getProperty("dumbo.loadtest.socket");
+
+    DumboServerImpl server = null;
+    if (target == null || target.isEmpty()) {
+      if ("auto".equals(socketPath)) {
+        File dir = Files.createTempDirectory("dumbo-loadtest").toFile();
+        dir.deleteOnExit();
+        socketPath = new File(dir, "dumbo.sock").getPath();
+      }
+      DumboServerBuilder builder = DumboServerBuilder.begin() //
+          .withMainApplication(ConsoleDemoApp.class) //
+          .withWebapp(ConsoleDemoApp.class.getResource(
+              "/com/kohlschutter/dumbo/helloworld/webapp/")) //
+          .withPort(0);
+      if (socketPath != null && !socketPath.isEmpty()) {
+        builder.withSocketPath(socketPath);
+      }
+      server = (DumboServerImpl) builder.build();
+      server.start();
+      server.awaitIdle();
+      baseURI = server.getLocalURI().resolve((server.getMainApplication().getContextPath() + "/")
+          .replaceAll("//+", "/"));
+    } else {
+      baseURI = URI.create(target.endsWith("/") ? target : target + "/");
+    }
+
+    HttpClient client = newHttpClient(socketPath);
+    client.setHttpCookieStore(new HttpCookieStore.Empty());
+    client.setMaxConnectionsPerDestination(numSessions * 4);
+    client.start();
+
+    System.out.println("Running " + numSessions + " sessions against " + baseURI + (socketPath
+        == null || socketPath.isEmpty() ? "" : " via " + socketPath) + " for " + durationSeconds
+        + "s (after " + warmupSeconds + "s warmup)");
+
+    List<Thread> threads = new ArrayList<>(numSessions);
+    try {
+      for (int i = 0; i < numSessions; i++) {
+        Thread t = new Thread(new LoadTestSession(this, client, i), "LoadTestSession-" + i);
+        t.setDaemon(true);
+        threads.add(t);
+        t.start();
+      }
+
+      Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+      ServerUsageSampler usage = server == null ? null : new ServerUsageSampler();
+      measuring = true;
+      long start = System.nanoTime();
+      Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+      measuring = false;
+      long elapsed = System.nanoTime() - start;
+      if (usage != null) {
+        usage.close();
+      }
+
+      running = false;
+      for (Thread t : threads) {
+        t.join(TimeUnit.SECONDS.toMillis(10));
+      }
+
+      report(elapsed, usage);
+    } finally {
+      client.stop();
+      if (server != null) {
+        server.shutdown();
+      }
+    }
+  }
+
+  private static HttpClient newHttpClient(String socketPath) throws IOException {
+    if (socketPath == null || socketPath.isEmpty()) {
+      return new HttpClient();
+    }
+    return new HttpClient(new HttpClientTransportDynamic(AFSocketClientConnector
+        .withSocketAddress(AFUNIXSocketAddress.of(new File(socketPath)))));
+  }
+
+  private void report(long elapsedNanos, ServerUsageSampler usage) {
+    double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+    System.out.println();
+    System.out.println(String.format(Locale.ENGLISH, "%-10s %10s %10s %10s %10s %10s %10s %8s",
+        "request", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors"));
+    for (LatencyRecorder rec : new LatencyRecorder[] {
+        pageRecorder, assetRecorder, rpcRecorder, pollRecorder}) {
+      long[] sorted = rec.sortedValues();
+      System.out.println(String.format(Locale.ENGLISH,
+          "%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d", rec.getName(), sorted.length,
+          sorted.length / seconds, LatencyRecorder.percentileMillis(sorted, 50),
+          LatencyRecorder.percentileMillis(sorted, 99), LatencyRecorder.percentileMillis(sorted,
+              99.9), LatencyRecorder.percentileMillis(sorted, 100), rec.getErrors()));
+    }
+
+    System.out.println();
+    if (usage == null) {
+      System.out.println("Server thread/heap usage: n/a (server not running in-process)");
+    } else {
+      System.out.println(String.format(Locale.ENGLISH,
+          "Threads: avg %d, peak %d; Heap used: avg %.1f MB, max %.1f MB", usage
+              .getAverageThreads(), usage.getPeakThreads(), usage.getAverageHeapBytes() / 1048576.0,
+          usage.getMaxHeapBytes() / 1048576.0));
+    }
+  }
+
+  boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Records a request latency, unless we're still warming up (or already winding down).
+   *
+   * @param recorder The recorder.
+   * @param nanos The latency, in nanoseconds.
+   */
+  void record(LatencyRecorder recorder, long nanos) {
+    if (measuring) {
+      recorder.record(nanos);
+    }
+  }
+
+  /**
+   * Records a failed request, unless we're still warming up (or already winding down).
+   *
+   * @param recorder The recorder.
+   */
+  void recordError(LatencyRecorder recorder) {
+    if (measuring) {
+      recorder.recordError();
+    }
+  }
+
+  int getReloadAfter() {
+    return reloadAfter;
+  }
+
+  int getThinkTimeMillis() {
+    return thinkTimeMillis;
+  }
+
+  URI getPageURI() {
+    return baseURI.resolve(page);
+  }
+
+  URI getJsonURI() {
+    return baseURI.resolve("json");
+  }
+
+  LatencyRecorder getPageRecorder() {
+    return pageRecorder;
+  }
+
+  LatencyRecorder getAssetRecorder() {
+    return assetRecorder;
+  }
+
+  LatencyRecorder getRpcRecorder() {
+    return rpcRecorder;
+  }
+
+  LatencyRecorder getPollRecorder() {
+    return pollRecorder;
+  }
+}
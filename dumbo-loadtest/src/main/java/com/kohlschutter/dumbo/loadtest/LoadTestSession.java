@@ -0,0 +1,243 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jetty.client.BufferingResponseListener;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.Response;
+import org.eclipse.jetty.client.Result;
+import org.eclipse.jetty.client.StringRequestContent;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.json.JSONObject;
+
+/**
+ * Simulates one browser page: loads the page and the same-origin resources referenced by its
+ * {@code script}, {@code img} and {@code link} tags (extension assets as well as bundles),
+ * allocates a pageId, keeps a {@code ConsoleService.requestNextChunk} long-poll open, and fires
+ * RPCs.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LoadTestSession implements Runnable {
+  private static final Pattern ASSET_PATTERN = Pattern.compile(
+      "<(?:script|img|link)\\b[^>]*?\\s(?:src|href)=\"([^\"#]+)[^\"]*\"",
+      Pattern.CASE_INSENSITIVE);
+  private static final String SEND_LINE =
+      "com.kohlschutter.dumbo.helloworld.console.CommandLineService.sendLine";
+  private static final String CONTENT_TYPE_JSON = "application/json;charset=utf-8";
+  private static final long TIMEOUT_SECONDS = 60;
+
+  private final LoadTest test;
+  private final HttpClient client;
+  private final int sessionNumber;
+  private final Map<String, String> cookies = new ConcurrentHashMap<>();
+  private volatile URI jsonUri;
+
+  LoadTestSession(LoadTest test, HttpClient client, int sessionNumber) {
+    this.test = test;
+    this.client = client;
+    this.sessionNumber = sessionNumber;
+  }
+
+  @Override
+  public void run() {
+    try {
+      openPage();
+
+      int n = 0;
+      int reloadAfter = test.getReloadAfter();
+      while (test.isRunning()) {
+        Thread.sleep(test.getThinkTimeMillis());
+        if (reloadAfter > 0 && n > 0 && n % reloadAfter == 0) {
+          try {
+            openPage();
+          } catch (IOException e) {
+            // already counted as an error
+            continue;
+          }
+        }
+        try {
+          rpc(test.getRpcRecorder(), jsonUri, SEND_LINE, "[\"Hello from session " + sessionNumber
+              + " #" + (++n) + "\"]");
+        } catch (IOException e) {
+          // already counted as an error
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | RuntimeException e) {
+      if (test.isRunning()) {
+        System.err.println("Session " + sessionNumber + " failed: " + e);
+      }
+    }
+  }
+
+  private void openPage() throws IOException, InterruptedException {
+    URI pageUri = test.getPageURI();
+    String page = send(client.newRequest(pageUri), test.getPageRecorder()).getContentAsString();
+
+    Set<URI> assets = new LinkedHashSet<>();
+    Matcher m = ASSET_PATTERN.matcher(page);
+    while (m.find()) {
+      URI asset;
+      try {
+        asset = pageUri.resolve(m.group(1).replace("&amp;", "&"));
+      } catch (IllegalArgumentException e) {
+        continue;
+      }
+      if (isSameOrigin(pageUri, asset) && !asset.equals(pageUri)) {
+        assets.add(asset);
+      }
+    }
+    for (URI asset : assets) {
+      try {
+        send(client.newRequest(asset), test.getAssetRecorder());
+      } catch (IOException e) {
+        // already counted as an error
+      }
+    }
+
+    // The first RPC allocates a pageId; subsequent calls must use the returned URL
+    URI uri = test.getJsonURI();
+    String serverURL = rpc(test.getRpcRecorder(), uri, "system.listMethods", "[]").optString(
+        "serverURL", null);
+    if (serverURL != null) {
+      uri = uri.resolve(serverURL);
+    }
+    jsonUri = uri;
+
+    poll(uri);
+  }
+
+  private static boolean isSameOrigin(URI a, URI b) {
+    return Objects.equals(a.getScheme(), b.getScheme()) && Objects.equals(a.getHost(), b
+        .getHost()) && a.getPort() == b.getPort();
+  }
+
+  /**
+   * Issues long-poll requests for the given page, until the page is replaced by a reload, the
+   * console is closed, or the test is over.
+   *
+   * @param pageJsonUri The JSON-RPC URL of the page.
+   */
+  private void poll(URI pageJsonUri) {
+    if (!test.isRunning() || !pageJsonUri.equals(jsonUri)) {
+      return;
+    }
+    long time = System.nanoTime();
+    Request req = rpcRequest(pageJsonUri, "ConsoleService.requestNextChunk", "[]");
+    req.send(new BufferingResponseListener() {
+      @Override
+      public void onComplete(Result result) {
+        if (result.isFailed() || result.getResponse().getStatus() != 200) {
+          test.recordError(test.getPollRecorder());
+          return;
+        }
+        test.record(test.getPollRecorder(), System.nanoTime() - time);
+
+        Object chunk = new JSONObject(getContentAsString()).opt("result");
+        if (chunk != null && chunk != JSONObject.NULL) {
+          poll(pageJsonUri);
+        }
+      }
+    });
+  }
+
+  private JSONObject rpc(LatencyRecorder recorder, URI uri, String method, String params)
+      throws IOException, InterruptedException {
+    JSONObject result = new JSONObject(send(rpcRequest(uri, method, params), recorder)
+        .getContentAsString());
+    if (result.has("error")) {
+      throw new IOException("RPC error for " + method + ": " + result.get("error"));
+    }
+    return result;
+  }
+
+  private Request rpcRequest(URI uri, String method, String params) {
+    return withCookies(client.newRequest(uri)) //
+        .method(HttpMethod.POST) //
+        .timeout(TIMEOUT_SECONDS, TimeUnit.SECONDS) //
+        .body(new StringRequestContent(CONTENT_TYPE_JSON, "{\"id\":1,\"method\":\"" + method
+            + "\",\"params\":" + params + "}")) //
+        .onResponseHeaders(this::storeCookies);
+  }
+
+  private ContentResponse send(Request req, LatencyRecorder recorder) throws IOException,
+      InterruptedException {
+    long time = System.nanoTime();
+    ContentResponse resp;
+    try {
+      resp = withCookies(req).timeout(TIMEOUT_SECONDS, TimeUnit.SECONDS).send();
+    } catch (TimeoutException | ExecutionException e) {
+      test.recordError(recorder);
+      throw new IOException("Request failed: " + req.getURI(), e);
+    }
+    storeCookies(resp);
+    if (resp.getStatus() != 200) {
+      test.recordError(recorder);
+      throw new IOException("HTTP " + resp.getStatus() + " for " + req.getURI());
+    }
+    test.record(recorder, System.nanoTime() - time);
+    return resp;
+  }
+
+  /**
+   * Adds this session's cookies to the request; the {@link HttpClient} is shared among all
+   * simulated sessions and does not keep cookies itself.
+   */
+  private Request withCookies(Request req) {
+    if (!cookies.isEmpty()) {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, String> en : cookies.entrySet()) {
+        if (sb.length() > 0) {
+          sb.append("; ");
+        }
+        sb.append(en.getKey()).append('=').append(en.getValue());
+      }
+      String cookieHeader = sb.toString();
+      req.headers((h) -> h.put(HttpHeader.COOKIE, cookieHeader));
+    }
+    return req;
+  }
+
+  private void storeCookies(Response resp) {
+    for (String setCookie : resp.getHeaders().getValuesList(HttpHeader.SET_COOKIE)) {
+      int semicolon = setCookie.indexOf(';');
+      String nameValue = semicolon == -1 ? setCookie : setCookie.substring(0, semicolon);
+      int eq = nameValue.indexOf('=');
+      if (eq > 0) {
+        cookies.put(nameValue.substring(0, eq).trim(), nameValue.substring(eq + 1).trim());
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically samples thread count and heap usage of the current JVM (i.e., of a server running
+ * in-process).
+ *
+ * @author Christian Kohlschütter
+ */
+final class ServerUsageSampler implements AutoCloseable {
+  private static final long INTERVAL_MILLIS = 100;
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      (r) -> {
+        Thread t = new Thread(r, "ServerUsageSampler");
+        t.setDaemon(true);
+        return t;
+      });
+
+  private long samples = 0;
+  private long threadSum = 0;
+  private long heapSum = 0;
+  private long heapMax = 0;
+
+  ServerUsageSampler() {
+    threads.resetPeakThreadCount();
+    executor.scheduleAtFixedRate(this::sample, 0, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void sample() {
+    long heap = memory.getHeapMemoryUsage().getUsed();
+    samples++;
+    threadSum += threads.getThreadCount();
+    heapSum += heap;
+    heapMax = Math.max(heapMax, heap);
+  }
+
+  synchronized long getAverageThreads() {
+    return samples == 0 ? 0 : threadSum / samples;
+  }
+
+  int getPeakThreads() {
+    return threads.getPeakThreadCount();
+  }
+
+  synchronized long getAverageHeapBytes() {
+    return samples == 0 ? 0 : heapSum / samples;
+  }
+
+  synchronized long getMaxHeapBytes() {
+    return heapMax;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
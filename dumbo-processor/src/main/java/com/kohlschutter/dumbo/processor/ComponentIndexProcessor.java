@@ -0,0 +1,425 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ * Copyright 2014,2015 Evernote Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Emits a precomputed component index for every {@code DumboComponent} type being compiled.
+ *
+ * The index contains the linearized component hierarchy (in the same order Dumbo computes it at
+ * runtime), the sub-components of each component, and which components carry which annotations
+ * (directly or via their superclass chain). At runtime, Dumbo uses the index where present, instead
+ * of walking class hierarchies and probing every reachable class for every annotation type.
+ *
+ * Since the index also describes classes from other jars (e.g., extensions), it records a
+ * fingerprint of each such class path entry. At runtime, the index is ignored if any of these
+ * fingerprints no longer match, e.g., after upgrading an extension jar without recompiling the app.
+ *
+ * Add this module to the {@code annotationProcessorPaths} of the maven-compiler-plugin to enable
+ * it (JDK 23+ no longer runs processors found on the class path by default).
+ *
+ * @author Christian Kohlschütter
+ */
+@SupportedAnnotationTypes("*")
+public final class ComponentIndexProcessor extends AbstractProcessor {
+  /**
+   * The path of the index resources (must match {@code ComponentIndex} in dumbo-core).
+   */
+  static final String INDEX_PATH = "META-INF/dumbo/components/";
+
+  /**
+   * The index format version (must match {@code ComponentIndex} in dumbo-core).
+   */
+  static final int VERSION = 2;
+
+  private static final String CLASS_SUFFIX = ".class";
+
+  private static final String DUMBO_COMPONENT = "com.kohlschutter.dumbo.api.DumboComponent";
+
+  private final Set<String> written = new HashSet<>();
+  private final Set<String> compiled = new HashSet<>();
+  private final Map<Path, String> fingerprints = new HashMap<>();
+  private Path classOutput;
+
+  private Elements elements;
+  private Types types;
+  private TypeElement dumboComponent;
+  private TypeMirror dumboComponentType;
+
+  public ComponentIndexProcessor() {
+    super();
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (elements == null) {
+      elements = processingEnv.getElementUtils();
+      types = processingEnv.getTypeUtils();
+      dumboComponent = elements.getTypeElement(DUMBO_COMPONENT);
+      if (dumboComponent != null) {
+        dumboComponentType = types.erasure(dumboComponent.asType());
+      }
+    }
+    if (dumboComponent == null) {
+      // dumbo-api is not on the classpath; nothing to do
+      return false;
+    }
+
+    List<TypeElement> typeElements = new ArrayList<>();
+    for (Element e : roundEnv.getRootElements()) {
+      collectTypes(e, typeElements);
+    }
+    for (TypeElement te : typeElements) {
+      compiled.add(binaryName(te));
+    }
+    for (TypeElement te : typeElements) {
+      if (isComponent(te)) {
+        try {
+          writeIndex(te);
+        } catch (IOException e) {
+          processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+              "Could not write Dumbo component index: " + e, te);
+        }
+      }
+    }
+
+    // don't claim any annotations
+    return false;
+  }
+
+  private static void collectTypes(Element e, List<TypeElement> out) {
+    ElementKind kind = e.getKind();
+    if ((kind.isClass() || kind.isInterface()) && kind != ElementKind.ANNOTATION_TYPE) {
+      out.add((TypeElement) e);
+      for (Element enclosed : e.getEnclosedElements()) {
+        collectTypes(enclosed, out);
+      }
+    }
+  }
+
+  private boolean isComponent(TypeElement te) {
+    return types.isAssignable(types.erasure(te.asType()), dumboComponentType);
+  }
+
+  private static TypeElement superclass(TypeElement te) {
+    TypeMirror sup = te.getSuperclass();
+    return sup.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) sup).asElement()
+        : null;
+  }
+
+  private String binaryName(TypeElement te) {
+    return elements.getBinaryName(te).toString();
+  }
+
+  private void writeIndex(TypeElement leaf) throws IOException {
+    String leafName = binaryName(leaf);
+    if (!written.add(leafName)) {
+      return;
+    }
+
+    Map<TypeElement, Set<TypeElement>> subComponents = new LinkedHashMap<>();
+    List<TypeElement> linearized = linearizeComponentHierarchy(leaf, subComponents);
+
+    Set<TypeElement> indexed = new LinkedHashSet<>();
+    indexed.add(leaf);
+    indexed.addAll(linearized);
+
+    Map<String, Set<String>> annotated = new TreeMap<>();
+    for (TypeElement te : indexed) {
+      String name = binaryName(te);
+      TypeElement candidate = te;
+      do {
+        for (AnnotationMirror am : candidate.getAnnotationMirrors()) {
+          TypeElement annType = (TypeElement) am.getAnnotationType().asElement();
+          annotated.computeIfAbsent(binaryName(annType), (k) -> new LinkedHashSet<>()).add(name);
+        }
+        if (candidate.equals(dumboComponent)) {
+          break;
+        }
+        candidate = superclass(candidate);
+      } while (candidate != null && !"java.lang.Object".equals(candidate.getQualifiedName()
+          .toString()));
+    }
+
+    // one class per class path entry other than the one being compiled
+    Map<Path, String> origins = new LinkedHashMap<>();
+    for (TypeElement te : indexed) {
+      Path location = classPathEntryOf(te);
+      if (location != null && !location.equals(classOutput())) {
+        origins.putIfAbsent(location, binaryName(te));
+      }
+    }
+
+    FileObject fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+        INDEX_PATH + leafName + ".properties", leaf);
+    try (Writer out = fo.openWriter()) {
+      out.write("# Dumbo component index for " + leafName + "\n");
+      out.write("version=" + VERSION + "\n");
+      out.write("components=" + join(linearized) + "\n");
+      out.write("indexed=" + join(indexed) + "\n");
+      for (Map.Entry<TypeElement, Set<TypeElement>> en : subComponents.entrySet()) {
+        out.write("sub." + binaryName(en.getKey()) + "=" + join(en.getValue()) + "\n");
+      }
+      for (Map.Entry<String, Set<String>> en : annotated.entrySet()) {
+        out.write("annotated." + en.getKey() + "=" + String.join(",", en.getValue()) + "\n");
+      }
+      for (Map.Entry<Path, String> en : origins.entrySet()) {
+        out.write("origin." + en.getValue() + "=" + fingerprints.computeIfAbsent(en.getKey(),
+            ComponentIndexProcessor::fingerprintOrEmpty) + "\n");
+      }
+    }
+  }
+
+  /**
+   * Returns the class path entry (jar file or class directory) the given type is read from, or
+   * {@code null} if it is being compiled, or cannot be determined.
+   *
+   * @param te The type.
+   * @return The class path entry, or {@code null}.
+   */
+  private Path classPathEntryOf(TypeElement te) {
+    TypeElement outermost = te;
+    while (outermost.getEnclosingElement() instanceof TypeElement) {
+      outermost = (TypeElement) outermost.getEnclosingElement();
+    }
+    String name = binaryName(outermost);
+    if (compiled.contains(name)) {
+      return null;
+    }
+
+    PackageElement pkg = elements.getPackageOf(outermost);
+    String pkgName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    String relativeName = name.substring(pkgName.isEmpty() ? 0 : pkgName.length() + 1) + ".class";
+
+    URI uri;
+    try {
+      uri = processingEnv.getFiler().getResource(StandardLocation.CLASS_PATH, pkgName,
+          relativeName).toUri();
+    } catch (IOException | IllegalArgumentException e) {
+      // e.g., from the module path, or the JDK
+      return null;
+    }
+
+    try {
+      if ("jar".equals(uri.getScheme())) {
+        String ssp = uri.getRawSchemeSpecificPart();
+        int sep = ssp.indexOf("!/");
+        return sep == -1 ? null : toPath(URI.create(ssp.substring(0, sep)));
+      } else if ("file".equals(uri.getScheme())) {
+        Path root = toPath(uri);
+        int levels = pkgName.isEmpty() ? 1 : pkgName.split("\\.").length + 1;
+        for (int i = 0; i < levels && root != null; i++) {
+          root = root.getParent();
+        }
+        return root;
+      }
+    } catch (IllegalArgumentException e) {
+      // not a local file
+    }
+    return null;
+  }
+
+  private Path classOutput() {
+    if (classOutput == null) {
+      try {
+        classOutput = toPath(processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT,
+            "", "dummy").toUri()).getParent();
+      } catch (IOException | RuntimeException e) {
+        classOutput = Paths.get("");
+      }
+    }
+    return classOutput;
+  }
+
+  private static Path toPath(URI uri) {
+    return Paths.get(uri).toAbsolutePath().normalize();
+  }
+
+  private static String fingerprintOrEmpty(Path path) {
+    try {
+      return fingerprint(path);
+    } catch (IOException e) {
+      return "";
+    }
+  }
+
+  /**
+   * Computes a fingerprint of the contents of the given jar file or class directory: a hash of the
+   * relative paths, CRC-32 checksums and sizes of all class files. For jar files, this only
+   * requires reading the central directory. Other files (e.g., the jar manifest) are ignored, so
+   * a class directory and the jar packaged from it have the same fingerprint.
+   *
+   * Must match {@code ComponentIndex#fingerprint} in dumbo-core.
+   *
+   * @param path The jar file or directory.
+   * @return The fingerprint.
+   * @throws IOException on error.
+   */
+  static String fingerprint(Path path) throws IOException {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    if (Files.isDirectory(path)) {
+      List<Path> files;
+      try (Stream<Path> stream = Files.walk(path)) {
+        files = stream.filter((f) -> f.getFileName().toString().endsWith(CLASS_SUFFIX)
+            && Files.isRegularFile(f)).collect(Collectors.toList());
+      }
+      Map<String, Path> sorted = new TreeMap<>();
+      for (Path f : files) {
+        sorted.put(path.relativize(f).toString().replace(f.getFileSystem().getSeparator(), "/"),
+            f);
+      }
+      for (Map.Entry<String, Path> en : sorted.entrySet()) {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(en.getValue())) {
+          byte[] buf = new byte[8192];
+          int read;
+          while ((read = in.read(buf)) != -1) {
+            crc.update(buf, 0, read);
+            size += read;
+          }
+        }
+        update(md, en.getKey(), crc.getValue(), size);
+      }
+    } else {
+      try (ZipFile zf = new ZipFile(path.toFile())) {
+        List<? extends ZipEntry> entries = zf.stream().filter((e) -> !e.isDirectory() && e
+            .getName().endsWith(CLASS_SUFFIX)).sorted(Comparator.comparing(ZipEntry::getName))
+            .collect(Collectors.toList());
+        for (ZipEntry e : entries) {
+          update(md, e.getName(), e.getCrc(), e.getSize());
+        }
+      }
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(md.digest()).substring(0, 22);
+  }
+
+  private static void update(MessageDigest md, String name, long crc, long size) {
+    md.update((name + ":" + Long.toHexString(crc) + ":" + size + "\n").getBytes(
+        StandardCharsets.UTF_8));
+  }
+
+  private String join(Iterable<TypeElement> elems) {
+    List<String> names = new ArrayList<>();
+    for (TypeElement te : elems) {
+      names.add(binaryName(te));
+    }
+    return String.join(",", names);
+  }
+
+  /**
+   * Mirrors {@code ComponentImpl#linearizeComponentHierarchy}.
+   */
+  private List<TypeElement> linearizeComponentHierarchy(TypeElement leaf,
+      Map<TypeElement, Set<TypeElement>> subComponents) {
+    LinkedHashMap<TypeElement, int[]> countMap = new LinkedHashMap<>();
+    traverseComponentHierarchy(leaf, countMap, subComponents);
+
+    List<Map.Entry<TypeElement, int[]>> list = new ArrayList<>(countMap.entrySet());
+    list.sort((a, b) -> b.getValue()[0] - a.getValue()[0]);
+    return list.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+  }
+
+  /**
+   * Mirrors {@code ComponentImpl#traverseComponentHierarchy}.
+   */
+  private void traverseComponentHierarchy(TypeElement te,
+      LinkedHashMap<TypeElement, int[]> countMap,
+      Map<TypeElement, Set<TypeElement>> subComponents) {
+    if (!isComponent(te)) {
+      return;
+    }
+
+    LinkedHashMap<TypeElement, int[]> componentCountMap = new LinkedHashMap<>();
+
+    TypeElement superClass = superclass(te);
+    if (superClass != null) {
+      traverseComponentHierarchy(superClass, countMap, subComponents);
+      traverseComponentHierarchy(superClass, componentCountMap, subComponents);
+    }
+
+    for (TypeMirror intf : te.getInterfaces()) {
+      TypeElement intfElement = (TypeElement) types.asElement(intf);
+      traverseComponentHierarchy(intfElement, countMap, subComponents);
+      traverseComponentHierarchy(intfElement, componentCountMap, subComponents);
+    }
+
+    countMap.computeIfAbsent(te, (k) -> new int[1])[0]++;
+    if (!te.equals(dumboComponent)) {
+      componentCountMap.computeIfAbsent(te, (k) -> new int[1])[0]++;
+    }
+
+    if (!componentCountMap.isEmpty()) {
+      subComponents.put(te, new LinkedHashSet<>(componentCountMap.keySet()));
+    }
+  }
+}
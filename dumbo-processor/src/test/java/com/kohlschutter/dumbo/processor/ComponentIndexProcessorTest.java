@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022-2025 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.dumbo.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ComponentIndexProcessorTest {
+  private static final Map<String, String> API = Map.of( //
+      "com/kohlschutter/dumbo/api/DumboComponent.java",
+      "package com.kohlschutter.dumbo.api; public interface DumboComponent {}");
+
+  private static final Map<String, String> LIB = Map.of( //
+      "lib/Marker.java", "package lib; @java.lang.annotation.Retention("
+          + "java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}", //
+      "lib/Extension.java", "package lib; @Marker public interface Extension extends "
+          + "com.kohlschutter.dumbo.api.DumboComponent {}");
+
+  private static final Map<String, String> APP = Map.of( //
+      "app/App.java", "package app; public class App implements lib.Extension {}", //
+      "app/NotAComponent.java", "package app; public class NotAComponent {}");
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testIndex() throws Exception {
+    Path out = compile("all", List.of(), API, LIB, APP);
+
+    Properties props = index(out, "app.App");
+    assertEquals(String.valueOf(ComponentIndexProcessor.VERSION), props.getProperty("version"));
+    assertEquals("com.kohlschutter.dumbo.api.DumboComponent,lib.Extension,app.App", props
+        .getProperty("components"));
+    assertEquals("com.kohlschutter.dumbo.api.DumboComponent,lib.Extension,app.App", props
+        .getProperty("sub.app.App"));
+    assertEquals("com.kohlschutter.dumbo.api.DumboComponent,lib.Extension", props.getProperty(
+        "sub.lib.Extension"));
+    assertEquals("lib.Extension", props.getProperty("annotated.lib.Marker"));
+
+    // everything was compiled together, so there is nothing to fingerprint
+    assertTrue(props.stringPropertyNames().stream().noneMatch((k) -> k.startsWith("origin.")));
+
+    assertFalse(Files.exists(out.resolve(ComponentIndexProcessor.INDEX_PATH
+        + "app.NotAComponent.properties")));
+  }
+
+  @Test
+  void testOriginFingerprint() throws Exception {
+    Path libClasses = compile("lib", List.of(), API, LIB);
+    Path libJar = jar(libClasses, tempDir.resolve("lib.jar"));
+
+    // the manifest is not part of the fingerprint
+    String fingerprint = ComponentIndexProcessor.fingerprint(libJar);
+    assertEquals(fingerprint, ComponentIndexProcessor.fingerprint(libClasses));
+
+    Path out = compile("app", List.of(libJar), APP);
+    Properties props = index(out, "app.App");
+
+    List<String> origins = props.stringPropertyNames().stream().filter((k) -> k.startsWith(
+        "origin.")).collect(Collectors.toList());
+    assertEquals(1, origins.size(), "one entry per class path entry: " + origins);
+    assertEquals(fingerprint, props.getProperty(origins.get(0)));
+
+    // changing any class changes the fingerprint
+    Files.write(libClasses.resolve("lib/Marker.class"), new byte[] {0},
+        StandardOpenOption.APPEND);
+    assertNotEquals(fingerprint, ComponentIndexProcessor.fingerprint(libClasses));
+  }
+
+  @SafeVarargs
+  private Path compile(String name, List<Path> classpath, Map<String, String>... sources)
+      throws IOException {
+    Path src = Files.createDirectories(tempDir.resolve(name + "-src"));
+    Path out = Files.createDirectories(tempDir.resolve(name + "-classes"));
+
+    List<Path> files = new ArrayList<>();
+    for (Map<String, String> map : sources) {
+      for (Map.Entry<String, String> en : map.entrySet()) {
+        Path f = src.resolve(en.getKey());
+        Files.createDirectories(f.getParent());
+        Files.write(f, en.getValue().getBytes(StandardCharsets.UTF_8));
+        files.add(f);
+      }
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null,
+        StandardCharsets.UTF_8)) {
+      Iterable<? extends JavaFileObject> units = fm.getJavaFileObjectsFromFiles(files.stream().map(
+          Path::toFile).collect(Collectors.toList()));
+
+      List<String> options = new ArrayList<>(Arrays.asList("-d", out.toString()));
+      if (!classpath.isEmpty()) {
+        options.add("-classpath");
+        options.add(classpath.stream().map(Path::toString).collect(Collectors.joining(
+            File.pathSeparator)));
+      }
+
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fm, null, options, null, units);
+      task.setProcessors(List.of(new ComponentIndexProcessor()));
+      assertTrue(task.call(), "compilation failed");
+    }
+    return out;
+  }
+
+  private static Path jar(Path classes, Path jarFile) throws IOException {
+    Manifest mf = new Manifest();
+    mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(classes)) {
+      files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    try (OutputStream fos = Files.newOutputStream(jarFile);
+        JarOutputStream jos = new JarOutputStream(fos, mf)) {
+      for (Path f : files) {
+        jos.putNextEntry(new JarEntry(classes.relativize(f).toString().replace('\\', '/')));
+        Files.copy(f, jos);
+        jos.closeEntry();
+      }
+    }
+    return jarFile;
+  }
+
+  private static Properties index(Path out, String component) throws IOException {
+    Path file = out.resolve(ComponentIndexProcessor.INDEX_PATH + component + ".properties");
+    assertTrue(Files.exists(file), "index not written: " + file);
+    Properties props = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      props.load(in);
+    }
+    return props;
+  }
+}